@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schema and queries of the application database. Statements are plain SQL
+ * without Android classes, so the benchmarks run the same statements through
+ * JDBC as the application runs on the device.
+ * <p/>
+ * Columns of the location queries are read in the order of LOCATION_COLUMNS,
+ * limits are given as the last argument, -1 for all locations.
+ */
+public class DatabaseSchema {
+    /**
+     * First version of the locations table, all later changes are migrations
+     */
+    public static final String CREATE_LOCATIONS_QUERY = "create table locations (_id integer primary key autoincrement, location_name text not null, latitude real not null, longitude real not null, last_access integer not null, map_type integer not null, camera_zoom real not null);";
+    private static final String CREATE_TIME_ZONES_QUERY = "create table time_zones (geohash text primary key, time_zone_id text not null, last_access integer not null);";
+    private static final String CREATE_GEOCODES_QUERY = "create table geocodes (query text primary key, latitude real not null, longitude real not null, created integer not null, last_access integer not null);";
+
+    /**
+     * Migrations, element i upgrades the schema from version i + 1 to i + 2
+     */
+    private static final String[][] MIGRATIONS = {
+            // 2: time zones of the map cells
+            {CREATE_TIME_ZONES_QUERY},
+            // 3: geocoding results
+            {CREATE_GEOCODES_QUERY},
+            // 4: location indexes and cached data of the locations
+            {
+                    // duplicated names are renamed by the database helper before the unique index
+                    "create unique index locations_location_name on locations (location_name);",
+                    "create index locations_last_access on locations (last_access);",
+                    "create table location_cache (location_id integer not null, cache_key text not null, value blob not null, created integer not null, primary key (location_id, cache_key));",
+                    "create trigger location_cache_delete after delete on locations begin delete from location_cache where location_id = old._id; end;",
+                    "create trigger location_cache_move after update of latitude, longitude on locations begin delete from location_cache where location_id = old._id; end;"
+            },
+            // 5: geohash of the locations for the viewport queries, filled by the database helper
+            {
+                    "alter table locations add column geohash text;",
+                    "create index locations_geohash on locations (geohash);"
+            },
+            // 6: full-text index of the location names, search names are filled by the database helper
+            {
+                    "alter table locations add column search_name text;",
+                    "create virtual table location_names using fts4 (search_name);",
+                    "create trigger location_names_insert after insert on locations begin insert into location_names (docid, search_name) values (new._id, new.search_name); end;",
+                    "create trigger location_names_update after update of search_name on locations begin delete from location_names where docid = old._id; insert into location_names (docid, search_name) values (new._id, new.search_name); end;",
+                    "create trigger location_names_delete after delete on locations begin delete from location_names where docid = old._id; end;"
+            }
+    };
+    /**
+     * Current schema version
+     */
+    public static final int VERSION = MIGRATIONS.length + 1;
+    /**
+     * Columns of the location queries, in the order of reading
+     */
+    public static final String LOCATION_COLUMNS = "_id, location_name, latitude, longitude, last_access, map_type, camera_zoom";
+    /**
+     * Order of the location lists, uses the index on last_access
+     */
+    public static final String ORDER_BY_ACCESS = "last_access desc, _id desc";
+    /**
+     * Locations, the most recently used first. Argument: limit
+     */
+    public static final String FETCH_LOCATIONS_QUERY = "select " + LOCATION_COLUMNS
+            + " from locations order by " + ORDER_BY_ACCESS + " limit ?;";
+    /**
+     * Id of the location, uses the unique index of the names. Argument:
+     * location name
+     */
+    public static final String FETCH_LOCATION_ID_QUERY = "select _id from locations where location_name = ?;";
+    /**
+     * Search by the words of the name, exact names are the first, then names
+     * starting with the query, then the most recently used. Arguments: match
+     * expression, search name, length of the search name, search name, limit
+     */
+    public static final String SEARCH_LOCATIONS_QUERY = "select " + LOCATION_COLUMNS
+            + " from locations where _id in (select docid from location_names where search_name match ?)"
+            + " order by search_name = ? desc, substr(search_name, 1, ?) = ? desc, " + ORDER_BY_ACCESS + " limit ?;";
+    /**
+     * Number of characters in the stored geohash, cells are about 5 m
+     */
+    public static final int GEOHASH_PRECISION = 9;
+    /**
+     * Maximum number of geohash ranges in the bounding box query
+     */
+    private static final int MAX_BOUNDS_CELLS = 8;
+
+    private DatabaseSchema() {
+    }
+
+    /**
+     * Gets statements of the migration
+     *
+     * @param version schema version created by the migration, from 2 to
+     *                VERSION
+     * @return statements in the order of execution
+     */
+    public static String[] getMigration(int version) {
+        return MIGRATIONS[version - 2].clone();
+    }
+
+    /**
+     * Gets geohash stored for the location
+     *
+     * @param latitude  location latitude
+     * @param longitude location longitude
+     * @return geohash
+     */
+    public static String getGeohash(double latitude, double longitude) {
+        return GeoHash.encode(latitude, longitude, GEOHASH_PRECISION);
+    }
+
+    /**
+     * Gets name prepared for the full-text search: normalized name with
+     * words separated by single spaces, the tokenizer of the index and the
+     * search query split it in the same words
+     *
+     * @param locationName location name or search query
+     * @return search name, empty if the name has no letters or digits
+     */
+    public static String getSearchName(String locationName) {
+        String normalized = PlaceNames.normalize(locationName);
+        StringBuilder searchName = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                searchName.append(c);
+            } else if (searchName.length() > 0 && searchName.charAt(searchName.length() - 1) != ' ') {
+                searchName.append(' ');
+            }
+        }
+
+        int length = searchName.length();
+        return length > 0 && searchName.charAt(length - 1) == ' '
+                ? searchName.substring(0, length - 1) : searchName.toString();
+    }
+
+    /**
+     * Gets full-text match expression of the search name, every word is a
+     * prefix query, words are joined by the implicit AND
+     *
+     * @param searchName search name, not empty
+     * @return match expression
+     */
+    public static String getMatch(String searchName) {
+        return searchName.replace(" ", "* ").concat("*");
+    }
+
+    /**
+     * Gets query of the locations inside the bounding box, the most recently
+     * used first. The box is covered by geohash cells, so only the locations
+     * of these cells are read by the geohash index
+     *
+     * @param south southern latitude
+     * @param west  western longitude, greater than east if the box crosses
+     *              the 180th meridian
+     * @param north northern latitude
+     * @param east  eastern longitude
+     * @param limit maximum number of locations
+     * @param args  list to add the arguments of the query
+     * @return query
+     */
+    public static String getBoundsQuery(double south, double west, double north, double east, int limit,
+                                        List<String> args) {
+        List<String> cells;
+        String longitudeWhere;
+        if (west <= east) {
+            cells = GeoHash.cover(south, west, north, east, GEOHASH_PRECISION, MAX_BOUNDS_CELLS);
+            longitudeWhere = "longitude between ? and ?";
+        } else {
+            cells = new ArrayList<String>(GeoHash.cover(south, west, north, 180, GEOHASH_PRECISION,
+                    MAX_BOUNDS_CELLS / 2));
+            cells.addAll(GeoHash.cover(south, -180, north, east, GEOHASH_PRECISION, MAX_BOUNDS_CELLS / 2));
+            longitudeWhere = "(longitude >= ? or longitude <= ?)";
+        }
+
+        // one flat list of ranges, SQLite uses the index for every range only in this form
+        StringBuilder query = new StringBuilder("select ").append(LOCATION_COLUMNS).append(" from locations where (");
+        for (int i = 0; i < cells.size(); i++) {
+            String cell = cells.get(i);
+            if (i > 0) {
+                query.append(" or ");
+            }
+            // hashes with the prefix are between the prefix and the prefix with the next last character
+            query.append("geohash >= ? and geohash < ?");
+            args.add(cell);
+            args.add(cell.substring(0, cell.length() - 1) + (char) (cell.charAt(cell.length() - 1) + 1));
+        }
+        // the unary plus keeps SQLite from walking the whole index on last_access for the order
+        // and checking every location, the locations of the ranges are few and sorted faster
+        query.append(") and latitude between ? and ? and ").append(longitudeWhere)
+                .append(" order by +").append(ORDER_BY_ACCESS).append(" limit ?;");
+        args.add(String.valueOf(south));
+        args.add(String.valueOf(north));
+        args.add(String.valueOf(west));
+        args.add(String.valueOf(east));
+        args.add(String.valueOf(limit));
+
+        return query.toString();
+    }
+}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Offline prefix search of place names. Keys are normalized names sorted by
+ * their UTF-8 bytes, a search is a binary search over the key positions and
+ * works directly on a memory mapped file. Places with the same prefix are
+ * ordered by population. The file is built by GazetteerBuilder.
+ * <p/>
+ * At most MAX_SCAN keys are looked at for a prefix. Short prefixes match
+ * more keys, so the builder stores the TOP_COUNT most populous places of
+ * every prefix matching more than MAX_SCAN keys, and searches for up to
+ * TOP_COUNT places with these prefixes are answered from the stored lists.
+ * <p/>
+ * Format, big endian:
+ * <pre>
+ * int     MAGIC
+ * int     number of keys
+ * int     number of top lists
+ * int[]   position of every key record from the start of the file
+ * int[]   position of every top list record, ordered by prefix like keys
+ * keys    for every key: int position of the place record, unsigned short
+ *         length and UTF-8 bytes of the normalized name
+ * tops    for every prefix matching more than MAX_SCAN keys: unsigned short
+ *         length and UTF-8 bytes of the prefix, unsigned short number of
+ *         places and int position of every place, the most populous first
+ * places  for every place: float latitude, float longitude, int
+ *         population, unsigned short length and UTF-8 bytes of the name
+ * </pre>
+ */
+public class Gazetteer {
+    /**
+     * First bytes of the gazetteer file, "GAZ2"
+     */
+    public static final int MAGIC = 0x47415a32;
+    /**
+     * Maximum number of keys with the prefix looked at, so short prefixes
+     * take bounded time
+     */
+    static final int MAX_SCAN = 2048;
+    /**
+     * Number of places stored for a prefix matching more than MAX_SCAN keys
+     */
+    static final int TOP_COUNT = 32;
+    /**
+     * Size of the header before the key positions
+     */
+    static final int HEADER_SIZE = 12;
+
+    private final ByteBuffer mBuffer;
+    private final int mKeyCount;
+    private final int mTopCount;
+    private final int mTopTable;
+
+    private Gazetteer(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (mBuffer.limit() < HEADER_SIZE || mBuffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a gazetteer");
+        }
+
+        mKeyCount = mBuffer.getInt(4);
+        mTopCount = mBuffer.getInt(8);
+        if (mKeyCount < 0 || mTopCount < 0
+                || HEADER_SIZE + ((long) mKeyCount + mTopCount) * 4 > mBuffer.limit()) {
+            throw new IOException("Wrong gazetteer header");
+        }
+        mTopTable = HEADER_SIZE + mKeyCount * 4;
+    }
+
+    /**
+     * Reads gazetteer from the buffer, the buffer is used for searches
+     * without copying
+     *
+     * @param buffer gazetteer file content, usually memory mapped
+     * @return gazetteer
+     * @throws IOException if the buffer is not a gazetteer
+     */
+    public static Gazetteer read(ByteBuffer buffer) throws IOException {
+        return new Gazetteer(buffer);
+    }
+
+    /**
+     * Finds places with the name starting with the prefix
+     *
+     * @param prefix normalized prefix, see PlaceNames.normalize
+     * @param limit  maximum number of places to add
+     * @param result list for found places, places are added in the
+     *               population order
+     */
+    public void find(String prefix, int limit, List<Place> result) {
+        if (limit <= 0) {
+            return;
+        }
+
+        byte[] key = toUtf8(prefix);
+        int start = lowerBound(key);
+        int last = start + MAX_SCAN;
+        boolean isLongRange = last < mKeyCount && compare(getKeyRecord(last) + 4, key, true) == 0;
+        if (isLongRange && limit <= TOP_COUNT && findTop(key, limit, result)) {
+            return;
+        }
+
+        int[] best = new int[limit];
+        int[] bestPopulation = new int[limit];
+        int found = 0;
+
+        int end = Math.min(mKeyCount, start + MAX_SCAN);
+        for (int index = start; index < end; index++) {
+            int record = getKeyRecord(index);
+            if (compare(record + 4, key, true) != 0) {
+                break;
+            }
+
+            int place = mBuffer.getInt(record);
+            int population = mBuffer.getInt(place + 8);
+            if (contains(best, found, place) || (found == limit && population <= bestPopulation[found - 1])) {
+                continue;
+            }
+
+            // insertion into the places sorted by population
+            int position = found < limit ? found++ : found - 1;
+            while (position > 0 && bestPopulation[position - 1] < population) {
+                best[position] = best[position - 1];
+                bestPopulation[position] = bestPopulation[position - 1];
+                position--;
+            }
+            best[position] = place;
+            bestPopulation[position] = population;
+        }
+
+        for (int i = 0; i < found; i++) {
+            result.add(readPlace(best[i]));
+        }
+    }
+
+    /**
+     * Adds places stored for the prefix
+     *
+     * @param prefix UTF-8 bytes of the normalized prefix
+     * @param limit  maximum number of places to add
+     * @param result list for found places
+     * @return false if no places are stored for the prefix
+     */
+    private boolean findTop(byte[] prefix, int limit, List<Place> result) {
+        int low = 0;
+        int high = mTopCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int record = mBuffer.getInt(mTopTable + middle * 4);
+            int difference = compare(record, prefix, false);
+            if (difference < 0) {
+                low = middle + 1;
+            } else if (difference > 0) {
+                high = middle;
+            } else {
+                int places = record + 2 + mBuffer.getChar(record);
+                int count = Math.min(limit, mBuffer.getChar(places));
+                for (int i = 0; i < count; i++) {
+                    result.add(readPlace(mBuffer.getInt(places + 2 + i * 4)));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getKeyRecord(int index) {
+        return mBuffer.getInt(HEADER_SIZE + index * 4);
+    }
+
+    /**
+     * @return number of keys in the gazetteer
+     */
+    public int getKeyCount() {
+        return mKeyCount;
+    }
+
+    private static boolean contains(int[] places, int count, int place) {
+        for (int i = 0; i < count; i++) {
+            if (places[i] == place) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] toUtf8(String text) {
+        try {
+            return text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Finds the first key not less than the prefix
+     */
+    private int lowerBound(byte[] prefix) {
+        int low = 0;
+        int high = mKeyCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(getKeyRecord(middle) + 4, prefix, false) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares stored string with the bytes as unsigned bytes
+     *
+     * @param position position of the length of the stored string
+     * @param bytes    bytes to compare with
+     * @param isPrefix true for comparing only the first bytes.length bytes
+     * @return negative, zero or positive as the stored string is less, equal
+     * or greater
+     */
+    private int compare(int position, byte[] bytes, boolean isPrefix) {
+        int length = mBuffer.getChar(position);
+        int count = Math.min(length, bytes.length);
+        for (int i = 0; i < count; i++) {
+            int difference = (mBuffer.get(position + 2 + i) & 0xFF) - (bytes[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+
+        if (isPrefix && length >= bytes.length) {
+            return 0;
+        }
+        return length - bytes.length;
+    }
+
+    private Place readPlace(int position) {
+        byte[] name = new byte[mBuffer.getChar(position + 12)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = mBuffer.get(position + 14 + i);
+        }
+
+        try {
+            return new Place(new String(name, "UTF-8"), mBuffer.getFloat(position),
+                    mBuffer.getFloat(position + 4), mBuffer.getInt(position + 8));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds Gazetteer from place names.
+ * <p/>
+ * Run main with a cities file of GeoNames
+ * (http://download.geonames.org/export/dump/, for example cities15000.zip)
+ * for regenerating the gazetteer shipped with the application:
+ * <pre>
+ * ./gradlew :azimuthCore:buildGazetteer -Pinput=cities15000.txt
+ * </pre>
+ */
+public class GazetteerBuilder {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int GEONAMES_NAME = 1;
+    private static final int GEONAMES_ASCII_NAME = 2;
+    private static final int GEONAMES_LATITUDE = 4;
+    private static final int GEONAMES_LONGITUDE = 5;
+    private static final int GEONAMES_COUNTRY = 8;
+    private static final int GEONAMES_POPULATION = 14;
+
+    private final List<PlaceRecord> mPlaces = new ArrayList<PlaceRecord>();
+    private final List<KeyRecord> mKeys = new ArrayList<KeyRecord>();
+
+    /**
+     * Adds place
+     *
+     * @param name       name for showing
+     * @param keys       names for searching, normalized by the builder
+     * @param latitude   latitude in degrees
+     * @param longitude  longitude in degrees
+     * @param population population, zero if unknown
+     */
+    public void addPlace(String name, String[] keys, double latitude, double longitude, int population) {
+        PlaceRecord place = new PlaceRecord(name.getBytes(UTF_8), latitude, longitude, population);
+        mPlaces.add(place);
+
+        List<String> added = new ArrayList<String>(keys.length);
+        for (String key : keys) {
+            String normalized = PlaceNames.normalize(key);
+            if (normalized.length() > 0 && !added.contains(normalized)) {
+                added.add(normalized);
+                mKeys.add(new KeyRecord(normalized.getBytes(UTF_8), place));
+            }
+        }
+    }
+
+    /**
+     * Adds all places of the GeoNames tab separated file. Places are shown
+     * as "name, country code" and are searched by the name and the ASCII name
+     *
+     * @param input GeoNames file, not closed
+     * @return number of places
+     * @throws IOException if reading fails or a line has wrong format
+     */
+    public int addGeoNames(Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length <= GEONAMES_POPULATION) {
+                throw new IOException("Wrong GeoNames line " + (count + 1));
+            }
+
+            try {
+                String name = fields[GEONAMES_NAME];
+                addPlace(name + ", " + fields[GEONAMES_COUNTRY],
+                        new String[]{name, fields[GEONAMES_ASCII_NAME]},
+                        Double.parseDouble(fields[GEONAMES_LATITUDE]),
+                        Double.parseDouble(fields[GEONAMES_LONGITUDE]),
+                        (int) Math.min(Integer.MAX_VALUE, Long.parseLong(fields[GEONAMES_POPULATION])));
+            } catch (NumberFormatException e) {
+                throw new IOException("Wrong GeoNames line " + (count + 1));
+            }
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes places in the Gazetteer format
+     *
+     * @param output stream for writing, not closed
+     * @return number of keys
+     * @throws IOException if writing fails
+     */
+    public int write(OutputStream output) throws IOException {
+        Collections.sort(mKeys, new Comparator<KeyRecord>() {
+            @Override
+            public int compare(KeyRecord lhs, KeyRecord rhs) {
+                int count = Math.min(lhs.mKey.length, rhs.mKey.length);
+                for (int i = 0; i < count; i++) {
+                    int difference = (lhs.mKey[i] & 0xFF) - (rhs.mKey[i] & 0xFF);
+                    if (difference != 0) {
+                        return difference;
+                    }
+                }
+                return lhs.mKey.length - rhs.mKey.length;
+            }
+        });
+
+        List<TopRecord> tops = new ArrayList<TopRecord>();
+        addTops(0, mKeys.size(), 0, tops);
+
+        int position = Gazetteer.HEADER_SIZE + (mKeys.size() + tops.size()) * 4;
+        int[] keyPositions = new int[mKeys.size()];
+        for (int i = 0; i < keyPositions.length; i++) {
+            keyPositions[i] = position;
+            position += 6 + mKeys.get(i).mKey.length;
+        }
+        int[] topPositions = new int[tops.size()];
+        for (int i = 0; i < topPositions.length; i++) {
+            topPositions[i] = position;
+            position += 4 + tops.get(i).mPrefix.length + tops.get(i).mPlaces.size() * 4;
+        }
+        for (PlaceRecord place : mPlaces) {
+            place.mPosition = position;
+            position += 14 + place.mName.length;
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(Gazetteer.MAGIC);
+        data.writeInt(mKeys.size());
+        data.writeInt(tops.size());
+        for (int keyPosition : keyPositions) {
+            data.writeInt(keyPosition);
+        }
+        for (int topPosition : topPositions) {
+            data.writeInt(topPosition);
+        }
+        for (KeyRecord key : mKeys) {
+            data.writeInt(key.mPlace.mPosition);
+            writeBytes(data, key.mKey);
+        }
+        for (TopRecord top : tops) {
+            writeBytes(data, top.mPrefix);
+            data.writeChar(top.mPlaces.size());
+            for (PlaceRecord place : top.mPlaces) {
+                data.writeInt(place.mPosition);
+            }
+        }
+        for (PlaceRecord place : mPlaces) {
+            data.writeFloat((float) place.mLatitude);
+            data.writeFloat((float) place.mLongitude);
+            data.writeInt(place.mPopulation);
+            writeBytes(data, place.mName);
+        }
+
+        data.flush();
+        return mKeys.size();
+    }
+
+    /**
+     * Adds top lists for the prefixes matching more than MAX_SCAN keys of
+     * the range. Keys of the range share the first depth bytes, prefixes are
+     * added in the order of the keys
+     *
+     * @param from  first key of the range
+     * @param to    key after the range
+     * @param depth length of the common prefix of the range
+     * @param tops  list for the top lists
+     */
+    private void addTops(int from, int to, int depth, List<TopRecord> tops) {
+        if (to - from <= Gazetteer.MAX_SCAN) {
+            return;
+        }
+
+        // the empty prefix is never searched
+        if (depth > 0) {
+            tops.add(createTop(from, to, depth));
+        }
+
+        // the key equal to the prefix is the first one and has no longer prefix
+        int index = from;
+        while (index < to && mKeys.get(index).mKey.length == depth) {
+            index++;
+        }
+        while (index < to) {
+            byte next = mKeys.get(index).mKey[depth];
+            int groupEnd = index + 1;
+            while (groupEnd < to && mKeys.get(groupEnd).mKey[depth] == next) {
+                groupEnd++;
+            }
+            addTops(index, groupEnd, depth + 1, tops);
+            index = groupEnd;
+        }
+    }
+
+    /**
+     * Creates top list of the range, places with the same population keep
+     * the order of their first keys like in the search by the keys
+     */
+    private TopRecord createTop(int from, int to, int depth) {
+        Set<PlaceRecord> added = new HashSet<PlaceRecord>();
+        List<PlaceRecord> places = new ArrayList<PlaceRecord>();
+        for (int i = from; i < to; i++) {
+            PlaceRecord place = mKeys.get(i).mPlace;
+            if (added.add(place)) {
+                places.add(place);
+            }
+        }
+
+        Collections.sort(places, new Comparator<PlaceRecord>() {
+            @Override
+            public int compare(PlaceRecord lhs, PlaceRecord rhs) {
+                return lhs.mPopulation < rhs.mPopulation ? 1 : (lhs.mPopulation == rhs.mPopulation ? 0 : -1);
+            }
+        });
+
+        byte[] prefix = new byte[depth];
+        System.arraycopy(mKeys.get(from).mKey, 0, prefix, 0, depth);
+        int count = Math.min(Gazetteer.TOP_COUNT, places.size());
+        return new TopRecord(prefix, new ArrayList<PlaceRecord>(places.subList(0, count)));
+    }
+
+    private static void writeBytes(DataOutputStream data, byte[] bytes) throws IOException {
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Too long name");
+        }
+        data.writeChar(bytes.length);
+        data.write(bytes);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GazetteerBuilder <cities.txt> <output>");
+            System.exit(1);
+        }
+
+        long start = System.currentTimeMillis();
+        GazetteerBuilder builder = new GazetteerBuilder();
+
+        int places;
+        Reader input = new InputStreamReader(new FileInputStream(args[0]), UTF_8);
+        try {
+            places = builder.addGeoNames(input);
+        } finally {
+            input.close();
+        }
+
+        int keys;
+        OutputStream output = new FileOutputStream(args[1]);
+        try {
+            keys = builder.write(output);
+        } finally {
+            output.close();
+        }
+
+        System.out.println(String.format("%d places, %d keys, %d ms", places, keys,
+                System.currentTimeMillis() - start));
+    }
+
+    private static class PlaceRecord {
+        private final byte[] mName;
+        private final double mLatitude;
+        private final double mLongitude;
+        private final int mPopulation;
+        private int mPosition;
+
+        private PlaceRecord(byte[] name, double latitude, double longitude, int population) {
+            mName = name;
+            mLatitude = latitude;
+            mLongitude = longitude;
+            mPopulation = population;
+        }
+    }
+
+    private static class TopRecord {
+        private final byte[] mPrefix;
+        private final List<PlaceRecord> mPlaces;
+
+        private TopRecord(byte[] prefix, List<PlaceRecord> places) {
+            mPrefix = prefix;
+            mPlaces = places;
+        }
+    }
+
+    private static class KeyRecord {
+        private final byte[] mKey;
+        private final PlaceRecord mPlace;
+
+        private KeyRecord(byte[] key, PlaceRecord place) {
+            mKey = key;
+            mPlace = place;
+        }
+    }
+}
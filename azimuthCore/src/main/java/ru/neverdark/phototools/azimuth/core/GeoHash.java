@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Geohash encoding of coordinates. Points in one cell share the hash, and
+ * cells of a hash prefix contain the cells of longer hashes
+ */
+public class GeoHash {
+    /**
+     * Maximum supported precision, 60 bits of the coordinates
+     */
+    public static final int MAX_PRECISION = 12;
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoHash() {
+    }
+
+    /**
+     * Encodes coordinates
+     *
+     * @param latitude  latitude in degrees
+     * @param longitude longitude in degrees
+     * @param precision number of characters in the hash, from 1 to
+     *                  MAX_PRECISION
+     * @return geohash of the cell containing the coordinates
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Unsupported precision " + precision);
+        }
+
+        double minLatitude = -90;
+        double maxLatitude = 90;
+        double minLongitude = -180;
+        double maxLongitude = 180;
+        boolean isLongitude = true;
+
+        char[] hash = new char[precision];
+        for (int i = 0; i < precision; i++) {
+            int index = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                index <<= 1;
+                if (isLongitude) {
+                    double middle = (minLongitude + maxLongitude) / 2;
+                    if (longitude >= middle) {
+                        index |= 1;
+                        minLongitude = middle;
+                    } else {
+                        maxLongitude = middle;
+                    }
+                } else {
+                    double middle = (minLatitude + maxLatitude) / 2;
+                    if (latitude >= middle) {
+                        index |= 1;
+                        minLatitude = middle;
+                    } else {
+                        maxLatitude = middle;
+                    }
+                }
+                isLongitude = !isLongitude;
+            }
+            hash[i] = BASE32[index];
+        }
+
+        return new String(hash);
+    }
+
+    /**
+     * Gets cells covering the bounding box. The longest hashes are used for
+     * which the number of cells does not exceed maxCells, points inside the
+     * box have one of the returned hashes as a prefix
+     *
+     * @param south        southern latitude
+     * @param west         western longitude, not greater than east
+     * @param north        northern latitude, not less than south
+     * @param east         eastern longitude
+     * @param maxPrecision maximum number of characters in the hashes, from 1
+     *                     to MAX_PRECISION
+     * @param maxCells     maximum number of cells, at least 32 cells of the
+     *                     first level may be returned for big boxes
+     * @return sorted hashes of the cells
+     */
+    public static List<String> cover(double south, double west, double north, double east, int maxPrecision,
+                                     int maxCells) {
+        if (maxPrecision < 1 || maxPrecision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Unsupported precision " + maxPrecision);
+        }
+        if (west > east || south > north) {
+            throw new IllegalArgumentException("Empty bounding box");
+        }
+
+        south = Math.max(south, -90);
+        north = Math.min(north, 90);
+        west = Math.max(west, -180);
+        east = Math.min(east, 180);
+
+        int precision = maxPrecision;
+        while (precision > 1 && countCells(south, west, north, east, precision) > maxCells) {
+            precision--;
+        }
+
+        double width = getCellWidth(precision);
+        double height = getCellHeight(precision);
+        int firstColumn = getCell(west + 180, width, 360);
+        int lastColumn = getCell(east + 180, width, 360);
+        int firstRow = getCell(south + 90, height, 180);
+        int lastRow = getCell(north + 90, height, 180);
+
+        List<String> cells = new ArrayList<String>((lastColumn - firstColumn + 1) * (lastRow - firstRow + 1));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                // the center of the cell is encoded to the hash of the cell
+                cells.add(encode((row + 0.5) * height - 90, (column + 0.5) * width - 180, precision));
+            }
+        }
+
+        Collections.sort(cells);
+        return cells;
+    }
+
+    private static long countCells(double south, double west, double north, double east, int precision) {
+        double width = getCellWidth(precision);
+        double height = getCellHeight(precision);
+        long columns = getCell(east + 180, width, 360) - getCell(west + 180, width, 360) + 1;
+        long rows = getCell(north + 90, height, 180) - getCell(south + 90, height, 180) + 1;
+        return columns * rows;
+    }
+
+    /**
+     * @return cell index of the offset from the grid origin, the last cell
+     * includes the edge of the grid
+     */
+    private static int getCell(double offset, double size, double span) {
+        int count = (int) Math.round(span / size);
+        return Math.min((int) Math.floor(offset / size), count - 1);
+    }
+
+    /**
+     * @return longitude size of the cells, longitude gets the odd bits
+     */
+    private static double getCellWidth(int precision) {
+        return 360 / Math.pow(2, (5 * precision + 1) / 2);
+    }
+
+    /**
+     * @return latitude size of the cells
+     */
+    private static double getCellHeight(int precision) {
+        return 180 / Math.pow(2, 5 * precision / 2);
+    }
+}
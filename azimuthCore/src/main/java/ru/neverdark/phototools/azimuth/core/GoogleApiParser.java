@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+/**
+ * Takes the needed fields from the Google Maps API responses. Reading stops
+ * as soon as the fields are found, the rest of the response is not parsed
+ */
+public class GoogleApiParser {
+
+    private GoogleApiParser() {
+    }
+
+    /**
+     * Reads location of the first result of the geocoding API response
+     *
+     * @param reader response
+     * @return latitude and longitude in degrees or null if the response has
+     * no results
+     * @throws IOException if reading fails or response is malformed
+     */
+    public static double[] readGeocodeLocation(Reader reader) throws IOException {
+        JsonStreamReader json = new JsonStreamReader(reader);
+        json.beginObject();
+        while (json.hasNext()) {
+            if (!"results".equals(json.nextName())) {
+                json.skipValue();
+                continue;
+            }
+
+            json.beginArray();
+            if (!json.hasNext()) {
+                return null;
+            }
+
+            // results[0].geometry.location
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!"geometry".equals(json.nextName())) {
+                    json.skipValue();
+                    continue;
+                }
+
+                json.beginObject();
+                while (json.hasNext()) {
+                    if ("location".equals(json.nextName())) {
+                        return readLatLng(json);
+                    }
+                    json.skipValue();
+                }
+                return null;
+            }
+            return null;
+        }
+
+        return null;
+    }
+
+    private static double[] readLatLng(JsonStreamReader json) throws IOException {
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("lat".equals(name)) {
+                latitude = json.nextDouble();
+            } else if ("lng".equals(name)) {
+                longitude = json.nextDouble();
+            } else {
+                json.skipValue();
+            }
+
+            if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+                return new double[]{latitude, longitude};
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads time zone from the time zone API response. A zone known to the
+     * device is returned unchanged, so its offsets follow the time zone
+     * database for any date. A zone unknown to the device gets the fixed
+     * offset the response gives for the requested time
+     *
+     * @param reader response
+     * @return time zone or null if the response has no time zone
+     * @throws IOException if reading fails or response is malformed
+     */
+    public static TimeZone readTimeZone(Reader reader) throws IOException {
+        String timeZoneId = null;
+        double rawOffset = Double.NaN;
+        double dstOffset = Double.NaN;
+
+        JsonStreamReader json = new JsonStreamReader(reader);
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("timeZoneId".equals(name)) {
+                timeZoneId = json.nextString();
+            } else if ("rawOffset".equals(name)) {
+                rawOffset = json.nextDouble();
+            } else if ("dstOffset".equals(name)) {
+                dstOffset = json.nextDouble();
+            } else {
+                json.skipValue();
+            }
+
+            if (timeZoneId != null && !Double.isNaN(rawOffset) && !Double.isNaN(dstOffset)) {
+                break;
+            }
+        }
+
+        if (timeZoneId == null) {
+            return null;
+        }
+
+        if (isKnown(timeZoneId)) {
+            return TimeZone.getTimeZone(timeZoneId);
+        }
+
+        if (Double.isNaN(rawOffset)) {
+            return null;
+        }
+        double offset = Double.isNaN(dstOffset) ? rawOffset : rawOffset + dstOffset;
+        return new SimpleTimeZone((int) Math.round(offset * 1000), timeZoneId);
+    }
+
+    /**
+     * Checks whether the time zone id is in the time zone database of the
+     * device, a zone with such an id gives right offsets for any date
+     *
+     * @param timeZoneId time zone id
+     * @return true if the device knows the id
+     */
+    public static boolean isKnown(String timeZoneId) {
+        // unknown ids give GMT
+        return TimeZone.getTimeZone(timeZoneId).getID().equals(timeZoneId);
+    }
+}
@@ -0,0 +1,478 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull parser for JSON with the methods of android.util.JsonReader. Values are
+ * read one by one from the stream, skipped values are not converted to
+ * strings, so a caller can take a few fields from a large document and stop
+ */
+public class JsonStreamReader implements Closeable {
+    /**
+     * Kinds of the next value in the stream
+     */
+    public enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[1024];
+    private int mPosition;
+    private int mLimit;
+    private int[] mStack = new int[32];
+    private int mStackSize;
+    private Token mPeeked;
+
+    /**
+     * Constructor
+     *
+     * @param reader source of the document, closed by close
+     */
+    public JsonStreamReader(Reader reader) {
+        mReader = reader;
+        mStack[mStackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Gets kind of the next value without consuming it
+     *
+     * @return kind of the next value
+     * @throws IOException if reading fails or document is malformed
+     */
+    public Token peek() throws IOException {
+        if (mPeeked != null) {
+            return mPeeked;
+        }
+
+        int top = mStackSize - 1;
+        int scope = mStack[top];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+                mStack[top] = NONEMPTY_ARRAY;
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    mPosition++;
+                    return mPeeked = Token.END_ARRAY;
+                }
+                expectSeparator(c, ',');
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    mPosition++;
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    expectSeparator(c, ',');
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected name");
+                }
+                mPosition++;
+                mStack[top] = DANGLING_NAME;
+                return mPeeked = Token.NAME;
+            case DANGLING_NAME:
+                expectSeparator(nextNonWhitespace(), ':');
+                mStack[top] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_DOCUMENT:
+                mStack[top] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("Expected end of document");
+                }
+                return mPeeked = Token.END_DOCUMENT;
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case ']':
+                if (scope == EMPTY_ARRAY) {
+                    mPosition++;
+                    return mPeeked = Token.END_ARRAY;
+                }
+                throw syntaxError("Expected value");
+            case '[':
+                mPosition++;
+                return mPeeked = Token.BEGIN_ARRAY;
+            case '{':
+                mPosition++;
+                return mPeeked = Token.BEGIN_OBJECT;
+            case '"':
+                mPosition++;
+                return mPeeked = Token.STRING;
+            case 't':
+            case 'f':
+                return mPeeked = Token.BOOLEAN;
+            case 'n':
+                return mPeeked = Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return mPeeked = Token.NUMBER;
+                }
+                throw syntaxError(c == -1 ? "Unexpected end of document" : "Expected value");
+        }
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        mStackSize--;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        mStackSize--;
+    }
+
+    /**
+     * Checks that the current array or object has more elements
+     *
+     * @return true if there is next element
+     * @throws IOException if reading fails or document is malformed
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    /**
+     * Reads string value, numbers are returned as they are written
+     *
+     * @return value
+     * @throws IOException if reading fails or the next value is not a string
+     *                     or a number
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            mPeeked = null;
+            return readString();
+        }
+        expect(Token.NUMBER);
+        return readLiteral();
+    }
+
+    /**
+     * Reads number value, strings are parsed as numbers
+     *
+     * @return value
+     * @throws IOException if reading fails or the next value is not a number
+     */
+    public double nextDouble() throws IOException {
+        String value = nextString();
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected number but was " + value);
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        String value = readLiteral();
+        if ("true".equals(value)) {
+            return true;
+        }
+        if ("false".equals(value)) {
+            return false;
+        }
+        throw syntaxError("Expected boolean but was " + value);
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        if (!"null".equals(readLiteral())) {
+            throw syntaxError("Expected null");
+        }
+    }
+
+    /**
+     * Skips the next value with all nested values. Skipped numbers, booleans
+     * and nulls are not validated
+     *
+     * @throws IOException if reading fails or document is malformed
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case NAME:
+                case STRING:
+                    mPeeked = null;
+                    skipString();
+                    break;
+                case NUMBER:
+                case BOOLEAN:
+                case NULL:
+                    mPeeked = null;
+                    skipLiteral();
+                    break;
+                default:
+                    throw syntaxError("Unexpected end of document");
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mPeeked = null;
+        mStackSize = 0;
+        mReader.close();
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        mPeeked = null;
+    }
+
+    private void expectSeparator(int c, char expected) throws IOException {
+        if (c != expected) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+        mPosition++;
+    }
+
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            int[] stack = new int[mStackSize * 2];
+            System.arraycopy(mStack, 0, stack, 0, mStackSize);
+            mStack = stack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    private boolean fill() throws IOException {
+        int count = mReader.read(mBuffer, 0, mBuffer.length);
+        mPosition = 0;
+        mLimit = Math.max(count, 0);
+        return count > 0;
+    }
+
+    /**
+     * Skips whitespace
+     *
+     * @return next character, not consumed, or -1 at the end of the stream
+     */
+    private int nextNonWhitespace() throws IOException {
+        while (mPosition < mLimit || fill()) {
+            char c = mBuffer[mPosition];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            mPosition++;
+        }
+        return -1;
+    }
+
+    private char readChar() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return mBuffer[mPosition++];
+    }
+
+    /**
+     * Reads string after the opening quote
+     */
+    private String readString() throws IOException {
+        StringBuilder builder = null;
+        while (true) {
+            int start = mPosition;
+            while (mPosition < mLimit) {
+                char c = mBuffer[mPosition++];
+                if (c == '"') {
+                    // usual case: whole string is in the buffer and has no escapes
+                    if (builder == null) {
+                        return new String(mBuffer, start, mPosition - start - 1);
+                    }
+                    builder.append(mBuffer, start, mPosition - start - 1);
+                    return builder.toString();
+                }
+                if (c == '\\') {
+                    if (builder == null) {
+                        builder = new StringBuilder();
+                    }
+                    builder.append(mBuffer, start, mPosition - start - 1);
+                    builder.append(readEscape());
+                    start = mPosition;
+                }
+            }
+
+            if (builder == null) {
+                builder = new StringBuilder();
+            }
+            builder.append(mBuffer, start, mPosition - start);
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        char c = readChar();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(readChar(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Wrong unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                return c;
+        }
+    }
+
+    /**
+     * Skips string after the opening quote
+     */
+    private void skipString() throws IOException {
+        while (true) {
+            char c = readChar();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                readChar();
+            }
+        }
+    }
+
+    private static boolean isLiteralEnd(char c) {
+        switch (c) {
+            case ',':
+            case ':':
+            case ']':
+            case '}':
+            case '[':
+            case '{':
+            case '"':
+            case ' ':
+            case '\n':
+            case '\r':
+            case '\t':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads number, boolean or null
+     */
+    private String readLiteral() throws IOException {
+        StringBuilder builder = null;
+        while (true) {
+            int start = mPosition;
+            while (mPosition < mLimit) {
+                if (isLiteralEnd(mBuffer[mPosition])) {
+                    if (builder == null) {
+                        return new String(mBuffer, start, mPosition - start);
+                    }
+                    builder.append(mBuffer, start, mPosition - start);
+                    return builder.toString();
+                }
+                mPosition++;
+            }
+
+            if (builder == null) {
+                builder = new StringBuilder();
+            }
+            builder.append(mBuffer, start, mPosition - start);
+            if (!fill()) {
+                return builder.toString();
+            }
+        }
+    }
+
+    private void skipLiteral() throws IOException {
+        while (mPosition < mLimit || fill()) {
+            if (isLiteralEnd(mBuffer[mPosition])) {
+                return;
+            }
+            mPosition++;
+        }
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at depth " + mStackSize);
+    }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+
+/**
+ * Formats of the location files
+ */
+public enum LocationFileFormat {
+    /**
+     * Comma separated values: name, latitude, longitude and optional map
+     * type and camera zoom, with or without header
+     */
+    CSV("csv"),
+    /**
+     * GPS Exchange Format, waypoints are locations
+     */
+    GPX("gpx"),
+    /**
+     * Keyhole Markup Language, placemarks with points are locations
+     */
+    KML("kml");
+
+    private static final int DETECT_LENGTH = 1024;
+
+    private final String mExtension;
+
+    LocationFileFormat(String extension) {
+        mExtension = extension;
+    }
+
+    /**
+     * @return file name extension without dot
+     */
+    public String getExtension() {
+        return mExtension;
+    }
+
+    /**
+     * Detects format by the beginning of the file, the stream position is not
+     * changed
+     *
+     * @param input file content
+     * @return format, CSV if the file is not XML
+     * @throws IOException if reading fails
+     */
+    public static LocationFileFormat detect(BufferedInputStream input) throws IOException {
+        byte[] head = new byte[DETECT_LENGTH];
+        input.mark(DETECT_LENGTH);
+        int length = 0;
+        int count;
+        while (length < head.length && (count = input.read(head, length, head.length - length)) != -1) {
+            length += count;
+        }
+        input.reset();
+
+        // root element name is ASCII in any encoding compatible with ASCII
+        String text = new String(head, 0, length, "ISO-8859-1");
+        if (text.contains("<gpx")) {
+            return GPX;
+        }
+        if (text.contains("<kml")) {
+            return KML;
+        }
+        return CSV;
+    }
+}
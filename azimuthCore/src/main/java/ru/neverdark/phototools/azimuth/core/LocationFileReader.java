@@ -0,0 +1,413 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Reads locations from CSV, GPX and KML files. Files are parsed while they
+ * are read and every location is passed to the listener, so memory use does
+ * not depend on the file size
+ */
+public class LocationFileReader {
+    /**
+     * Map type of the locations without map type
+     */
+    public static final int NO_MAP_TYPE = -1;
+
+    private LocationFileReader() {
+    }
+
+    /**
+     * Reads all locations of the file, format is detected by the content
+     *
+     * @param input    file content, not closed
+     * @param listener listener for the locations
+     * @return number of locations
+     * @throws IOException if reading fails, the file is malformed or the
+     *                     listener fails
+     */
+    public static int read(InputStream input, OnLocationListener listener) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        switch (LocationFileFormat.detect(buffered)) {
+            case GPX:
+                return readXml(buffered, new GpxHandler(listener));
+            case KML:
+                return readXml(buffered, new KmlHandler(listener));
+            default:
+                return readCsv(new InputStreamReader(buffered, "UTF-8"), listener);
+        }
+    }
+
+    /**
+     * Reads all locations of the CSV file. The first line is a header if its
+     * latitude is not a number, the header may reorder columns
+     *
+     * @param input    file content, not closed
+     * @param listener listener for the locations
+     * @return number of locations
+     * @throws IOException if reading fails, the file is malformed or the
+     *                     listener fails
+     */
+    public static int readCsv(Reader input, OnLocationListener listener) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(input);
+        List<String> fields = new ArrayList<String>();
+        // name, latitude, longitude, map type, camera zoom
+        int[] columns = {0, 1, 2, 3, 4};
+        int count = 0;
+        int line = 0;
+
+        while (tokenizer.readRecord(fields)) {
+            line++;
+            if (fields.size() == 1 && fields.get(0).trim().length() == 0) {
+                continue;
+            }
+
+            if (line == 1 && fields.size() > 1 && parseDouble(fields.get(1)) == null) {
+                columns = readHeader(fields);
+                continue;
+            }
+
+            Double latitude = parseDouble(getField(fields, columns[1]));
+            Double longitude = parseDouble(getField(fields, columns[2]));
+            if (!isValid(latitude, longitude)) {
+                throw new IOException("Wrong coordinates in line " + line);
+            }
+
+            int mapType = NO_MAP_TYPE;
+            String mapTypeField = getField(fields, columns[3]);
+            if (mapTypeField != null && mapTypeField.trim().length() > 0) {
+                try {
+                    mapType = Integer.parseInt(mapTypeField.trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Wrong map type in line " + line);
+                }
+            }
+
+            Double cameraZoom = parseDouble(getField(fields, columns[4]));
+            listener.onLocation(getName(getField(fields, columns[0]), latitude, longitude), latitude, longitude,
+                    mapType, cameraZoom != null ? cameraZoom.floatValue() : Float.NaN);
+            count++;
+        }
+
+        return count;
+    }
+
+    private static int[] readHeader(List<String> fields) {
+        int[] columns = {-1, -1, -1, -1, -1};
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).trim().toLowerCase(Locale.US);
+            if (name.equals("name") || name.equals("location_name")) {
+                columns[0] = i;
+            } else if (name.equals("latitude") || name.equals("lat")) {
+                columns[1] = i;
+            } else if (name.equals("longitude") || name.equals("lon") || name.equals("lng")) {
+                columns[2] = i;
+            } else if (name.equals("map_type")) {
+                columns[3] = i;
+            } else if (name.equals("camera_zoom")) {
+                columns[4] = i;
+            }
+        }
+        return columns;
+    }
+
+    private static String getField(List<String> fields, int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column) : null;
+    }
+
+    private static Double parseDouble(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks that coordinates are read and are inside the ranges of latitude
+     * and longitude
+     */
+    private static boolean isValid(Double latitude, Double longitude) {
+        return latitude != null && longitude != null
+                && latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+    }
+
+    /**
+     * Gets name of the location, unnamed locations are named by coordinates
+     */
+    private static String getName(String name, double latitude, double longitude) {
+        if (name != null && name.trim().length() > 0) {
+            return name.trim();
+        }
+        return String.format(Locale.US, "%.5f, %.5f", latitude, longitude);
+    }
+
+    private static int readXml(InputStream input, LocationHandler handler) throws IOException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            SAXParser parser = factory.newSAXParser();
+            parser.parse(input, handler);
+        } catch (SAXException e) {
+            // exceptions of the listener are passed through the parser
+            if (e.getException() instanceof IOException) {
+                throw (IOException) e.getException();
+            }
+            throw new IOException("Malformed file: " + e.getMessage());
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        return handler.mCount;
+    }
+
+    /**
+     * The interface for receiving locations
+     */
+    public interface OnLocationListener {
+        /**
+         * Called for every location of the file
+         *
+         * @param name       location name
+         * @param latitude   latitude in degrees
+         * @param longitude  longitude in degrees
+         * @param mapType    map type or NO_MAP_TYPE if the file has no map type
+         * @param cameraZoom camera zoom or NaN if the file has no zoom
+         * @throws IOException if the location cannot be saved
+         */
+        public void onLocation(String name, double latitude, double longitude, int mapType, float cameraZoom)
+                throws IOException;
+    }
+
+    /**
+     * Splits CSV into records, quoted fields may contain commas, quotes and
+     * line breaks
+     */
+    private static class CsvTokenizer {
+        private final Reader mReader;
+        private final StringBuilder mField = new StringBuilder();
+        private boolean mIsFirst = true;
+
+        private CsvTokenizer(Reader reader) {
+            mReader = new BufferedReader(reader);
+        }
+
+        private boolean readRecord(List<String> fields) throws IOException {
+            fields.clear();
+            mField.setLength(0);
+            boolean isQuoted = false;
+            boolean hasData = false;
+            int c;
+            while ((c = mReader.read()) != -1) {
+                if (mIsFirst) {
+                    mIsFirst = false;
+                    if (c == '\uFEFF') {
+                        continue;
+                    }
+                }
+                hasData = true;
+
+                if (isQuoted) {
+                    if (c == '"') {
+                        mReader.mark(1);
+                        if (mReader.read() == '"') {
+                            mField.append('"');
+                        } else {
+                            mReader.reset();
+                            isQuoted = false;
+                        }
+                    } else {
+                        mField.append((char) c);
+                    }
+                } else if (c == '"') {
+                    isQuoted = true;
+                } else if (c == ',') {
+                    fields.add(mField.toString());
+                    mField.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    mField.append((char) c);
+                }
+            }
+
+            if (isQuoted) {
+                throw new IOException("Unterminated quoted field");
+            }
+            if (!hasData) {
+                return false;
+            }
+            fields.add(mField.toString());
+            return true;
+        }
+    }
+
+    /**
+     * Base of the XML handlers, collects text of the elements
+     */
+    private abstract static class LocationHandler extends DefaultHandler {
+        protected final OnLocationListener mListener;
+        protected final StringBuilder mText = new StringBuilder();
+        protected int mCount;
+
+        private LocationHandler(OnLocationListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            mText.append(ch, start, length);
+        }
+
+        protected void onLocation(String name, double latitude, double longitude) throws SAXException {
+            try {
+                mListener.onLocation(getName(name, latitude, longitude), latitude, longitude, NO_MAP_TYPE,
+                        Float.NaN);
+                mCount++;
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+
+    /**
+     * Reads waypoints of GPX
+     */
+    private static class GpxHandler extends LocationHandler {
+        private boolean mIsInWaypoint;
+        private int mDepth;
+        private double mLatitude;
+        private double mLongitude;
+        private String mName;
+
+        private GpxHandler(OnLocationListener listener) {
+            super(listener);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            mDepth++;
+            mText.setLength(0);
+            if ("wpt".equals(localName)) {
+                Double latitude = parseDouble(attributes.getValue("lat"));
+                Double longitude = parseDouble(attributes.getValue("lon"));
+                if (!isValid(latitude, longitude)) {
+                    throw new SAXException("Wrong waypoint coordinates " + attributes.getValue("lat") + ", "
+                            + attributes.getValue("lon"));
+                }
+                mIsInWaypoint = true;
+                mLatitude = latitude;
+                mLongitude = longitude;
+                mName = null;
+                mDepth = 0;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (mIsInWaypoint) {
+                if ("wpt".equals(localName)) {
+                    mIsInWaypoint = false;
+                    onLocation(mName, mLatitude, mLongitude);
+                } else if (mDepth == 1 && "name".equals(localName)) {
+                    mName = mText.toString();
+                }
+            }
+            mDepth--;
+        }
+    }
+
+    /**
+     * Reads placemarks with points of KML
+     */
+    private static class KmlHandler extends LocationHandler {
+        private boolean mIsInPlacemark;
+        private boolean mIsInPoint;
+        private int mDepth;
+        private String mName;
+        private String mCoordinates;
+
+        private KmlHandler(OnLocationListener listener) {
+            super(listener);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            mDepth++;
+            mText.setLength(0);
+            if ("Placemark".equals(localName)) {
+                mIsInPlacemark = true;
+                mName = null;
+                mCoordinates = null;
+                mDepth = 0;
+            } else if (mIsInPlacemark && "Point".equals(localName)) {
+                mIsInPoint = true;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (mIsInPlacemark) {
+                if ("Placemark".equals(localName)) {
+                    mIsInPlacemark = false;
+                    // placemarks with lines or polygons are not locations
+                    if (mCoordinates != null) {
+                        readCoordinates();
+                    }
+                } else if ("Point".equals(localName)) {
+                    mIsInPoint = false;
+                } else if (mIsInPoint && "coordinates".equals(localName)) {
+                    mCoordinates = mText.toString().trim();
+                } else if (mDepth == 1 && "name".equals(localName)) {
+                    mName = mText.toString();
+                }
+            }
+            mDepth--;
+        }
+
+        private void readCoordinates() throws SAXException {
+            // longitude,latitude[,altitude]
+            String[] values = mCoordinates.split(",");
+            Double longitude = values.length >= 2 ? parseDouble(values[0]) : null;
+            Double latitude = values.length >= 2 ? parseDouble(values[1]) : null;
+            if (!isValid(latitude, longitude)) {
+                throw new SAXException("Wrong coordinates " + mCoordinates);
+            }
+            onLocation(mName, latitude, longitude);
+        }
+    }
+}
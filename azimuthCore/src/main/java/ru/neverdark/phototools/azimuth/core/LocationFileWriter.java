@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes locations to CSV or GPX files. Locations are written as they are
+ * passed, so memory use does not depend on the number of locations
+ */
+public abstract class LocationFileWriter {
+    protected final Writer mWriter;
+
+    private LocationFileWriter(Writer writer) {
+        mWriter = new BufferedWriter(writer);
+    }
+
+    /**
+     * Creates writer and writes the file header
+     *
+     * @param format CSV or GPX
+     * @param writer output, closed by close
+     * @return writer
+     * @throws IOException if writing fails
+     */
+    public static LocationFileWriter create(LocationFileFormat format, Writer writer) throws IOException {
+        LocationFileWriter result;
+        switch (format) {
+            case CSV:
+                result = new CsvWriter(writer);
+                break;
+            case GPX:
+                result = new GpxWriter(writer);
+                break;
+            default:
+                throw new IllegalArgumentException("Writing " + format + " is not supported");
+        }
+
+        result.writeHeader();
+        return result;
+    }
+
+    /**
+     * Writes location
+     *
+     * @param name       location name
+     * @param latitude   latitude in degrees
+     * @param longitude  longitude in degrees
+     * @param mapType    map type
+     * @param cameraZoom camera zoom
+     * @throws IOException if writing fails
+     */
+    public abstract void write(String name, double latitude, double longitude, int mapType, float cameraZoom)
+            throws IOException;
+
+    protected abstract void writeHeader() throws IOException;
+
+    protected abstract void writeFooter() throws IOException;
+
+    /**
+     * Writes the file footer and closes output
+     *
+     * @throws IOException if writing fails
+     */
+    public void close() throws IOException {
+        try {
+            writeFooter();
+        } finally {
+            mWriter.close();
+        }
+    }
+
+    private static class CsvWriter extends LocationFileWriter {
+        private CsvWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        protected void writeHeader() throws IOException {
+            mWriter.write("name,latitude,longitude,map_type,camera_zoom\r\n");
+        }
+
+        @Override
+        public void write(String name, double latitude, double longitude, int mapType, float cameraZoom)
+                throws IOException {
+            mWriter.write('"');
+            mWriter.write(name.replace("\"", "\"\""));
+            mWriter.write('"');
+            mWriter.write(String.format(Locale.US, ",%.7f,%.7f,%d,%.2f\r\n", latitude, longitude, mapType,
+                    cameraZoom));
+        }
+
+        @Override
+        protected void writeFooter() {
+        }
+    }
+
+    private static class GpxWriter extends LocationFileWriter {
+        private GpxWriter(Writer writer) {
+            super(writer);
+        }
+
+        private static String escape(String text) {
+            return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+        }
+
+        @Override
+        protected void writeHeader() throws IOException {
+            mWriter.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            mWriter.write("<gpx version=\"1.1\" creator=\"PhotoTools Azimuth\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n");
+        }
+
+        @Override
+        public void write(String name, double latitude, double longitude, int mapType, float cameraZoom)
+                throws IOException {
+            mWriter.write(String.format(Locale.US, "  <wpt lat=\"%.7f\" lon=\"%.7f\">\n    <name>", latitude,
+                    longitude));
+            mWriter.write(escape(name));
+            mWriter.write("</name>\n  </wpt>\n");
+        }
+
+        @Override
+        protected void writeFooter() throws IOException {
+            mWriter.write("</gpx>\n");
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+/**
+ * Named place found by Gazetteer or among the saved locations
+ */
+public class Place {
+    private final String mName;
+    private final double mLatitude;
+    private final double mLongitude;
+    private final int mPopulation;
+
+    /**
+     * Constructor
+     *
+     * @param name       place name for showing
+     * @param latitude   latitude in degrees
+     * @param longitude  longitude in degrees
+     * @param population population, used for ordering places with the same
+     *                   prefix, zero if unknown
+     */
+    public Place(String name, double latitude, double longitude, int population) {
+        mName = name;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mPopulation = population;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public int getPopulation() {
+        return mPopulation;
+    }
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Utilities for place names, names and queries are compared only in the
+ * normalized form
+ */
+public class PlaceNames {
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+    private static final Pattern COMMA = Pattern.compile(" ?, ?");
+
+    private PlaceNames() {
+    }
+
+    /**
+     * Normalizes place name or query: compatibility characters are replaced
+     * by their canonical forms, letters are lower cased and whitespaces are
+     * collapsed
+     *
+     * @param text place name or query
+     * @return normalized text
+     */
+    public static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        normalized = normalized.toLowerCase(Locale.ROOT).trim();
+        normalized = WHITESPACES.matcher(normalized).replaceAll(" ");
+        return COMMA.matcher(normalized).replaceAll(", ");
+    }
+}
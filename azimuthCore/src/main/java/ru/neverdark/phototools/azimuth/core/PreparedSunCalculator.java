@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
+import com.luckycatlabs.sunrisesunset.calculator.SolarEventCalculator;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+import com.luckycatlabs.sunrisesunset.dto.SolarEvents;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Calculator bound to one location. Terms depending only on the location are
+ * computed once in the constructor, and sunrise and sunset are kept for the
+ * last date, so queries for many times at the same place only do the time
+ * dependent work.
+ * <p/>
+ * Objects of this class keep state between calls and must not be shared
+ * between threads
+ */
+public class PreparedSunCalculator {
+    private static final long MINUTE_MS = 1000 * 60;
+    private static final double SIN_E = Math.sin(SunMath.e);
+    private static final double COS_E = Math.cos(SunMath.e);
+
+    private final double mLatitude;
+    private final double mLongitude;
+    private final double mLw;
+    private final double mSinPhi;
+    private final double mCosPhi;
+    private final TimeZone mTimeZone;
+    private final SunriseSunsetCalculator mEventCalculator;
+    private final Calendar mDate;
+    private final SunCoords mCoords = new SunCoords();
+    private final SunEphemerisCache mEphemeris;
+
+    private int mEventsDate = -1;
+    private long mSunrise;
+    private long mSunset;
+
+    /**
+     * Constructor
+     *
+     * @param latitude  location latitude in degrees
+     * @param longitude location longitude in degrees
+     * @param timeZone  time zone of the location, defines the date for sunrise
+     *                  and sunset
+     */
+    public PreparedSunCalculator(double latitude, double longitude, TimeZone timeZone) {
+        this(latitude, longitude, timeZone, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param latitude  location latitude in degrees
+     * @param longitude location longitude in degrees
+     * @param timeZone  time zone of the location, defines the date for sunrise
+     *                  and sunset
+     * @param ephemeris tables for sun coordinates or null for calculating them
+     *                  on every call
+     */
+    public PreparedSunCalculator(double latitude, double longitude, TimeZone timeZone,
+                                 SunEphemerisCache ephemeris) {
+        double phi = SunMath.rad * latitude;
+
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mLw = SunMath.rad * -longitude;
+        mSinPhi = Math.sin(phi);
+        mCosPhi = Math.cos(phi);
+        mTimeZone = timeZone;
+        mEventCalculator = new SunriseSunsetCalculator(new Location(latitude, longitude), timeZone,
+                SunriseSunsetCalculator.Engine.DOUBLE);
+        mDate = Calendar.getInstance(timeZone);
+        mEphemeris = ephemeris;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    /**
+     * Calculates sun coordinates for the given time into mCoords
+     *
+     * @param time time in milliseconds
+     * @return hour angle
+     */
+    private double computeHourAngle(long time) {
+        double d = SunMath.toDays(time);
+        if (mEphemeris != null) {
+            mEphemeris.getSunCoords(time, mCoords);
+        } else {
+            SunMath.getSunCoords(d, mCoords);
+        }
+        return SunMath.getSiderealTime(d, mLw) - mCoords.ra;
+    }
+
+    /**
+     * Gets sun azimuth for the given time
+     *
+     * @param time time in milliseconds
+     * @return sun azimuth measured from north to east in radians
+     */
+    public double getAzimuth(long time) {
+        double H = computeHourAngle(time);
+        return SunMath.getAzimuth(H, mSinPhi, mCosPhi, mCoords.dec) + Math.PI;
+    }
+
+    /**
+     * Gets sun altitude for the given time
+     *
+     * @param time time in milliseconds
+     * @return sun altitude in degrees, negative if the sun is under the horizon
+     */
+    public double getAltitude(long time) {
+        double H = computeHourAngle(time);
+        return SunMath.getAltitude(H, mSinPhi, mCosPhi, mCoords.dec) * 180 / Math.PI;
+    }
+
+    /**
+     * Calculates sun azimuth and altitude for every given time. Nothing is
+     * allocated, results are written to the arrays supplied by the caller
+     *
+     * @param times    times in milliseconds
+     * @param azimuth  array for storing sun azimuth measured from north to east
+     *                 in radians, at least times.length long
+     * @param altitude array for storing sun altitude in degrees, negative if
+     *                 the sun is under the horizon, at least times.length long
+     */
+    public void getPositions(long[] times, double[] azimuth, double[] altitude) {
+        getPositions(times, times.length, azimuth, altitude);
+    }
+
+    /**
+     * Calculates sun azimuth and altitude for the first count times, so a
+     * partly filled array can be reused between calls. Nothing is allocated,
+     * results are written to the arrays supplied by the caller
+     *
+     * @param times    times in milliseconds
+     * @param count    number of times to calculate
+     * @param azimuth  array for storing sun azimuth measured from north to east
+     *                 in radians, at least count long
+     * @param altitude array for storing sun altitude in degrees, negative if
+     *                 the sun is under the horizon, at least count long
+     */
+    public void getPositions(long[] times, int count, double[] azimuth, double[] altitude) {
+        if (times.length < count) {
+            throw new IllegalArgumentException("Times array is shorter than " + count);
+        }
+        checkLength(count, azimuth, altitude);
+        for (int i = 0; i < count; i++) {
+            computePosition(times[i], azimuth, altitude, i);
+        }
+    }
+
+    /**
+     * Calculates sun azimuth and altitude for count times starting from start
+     * with the given step. Nothing is allocated, results are written to the
+     * arrays supplied by the caller
+     *
+     * @param start    first time in milliseconds
+     * @param step     step between times in milliseconds
+     * @param count    number of times
+     * @param azimuth  array for storing sun azimuth measured from north to east
+     *                 in radians, at least count long
+     * @param altitude array for storing sun altitude in degrees, negative if
+     *                 the sun is under the horizon, at least count long
+     */
+    public void getPositions(long start, long step, int count, double[] azimuth, double[] altitude) {
+        checkLength(count, azimuth, altitude);
+        for (int i = 0; i < count; i++) {
+            computePosition(start + i * step, azimuth, altitude, i);
+        }
+    }
+
+    private void checkLength(int count, double[] azimuth, double[] altitude) {
+        if (azimuth.length < count || altitude.length < count) {
+            throw new IllegalArgumentException("Result arrays are shorter than " + count);
+        }
+    }
+
+    /**
+     * Calculates sun azimuth and altitude for the time and stores them by
+     * index. Gives the same values as getAzimuth and getAltitude up to
+     * rounding, but shares the trigonometric terms between both angles and
+     * uses zero ecliptic latitude to skip the arcsine of the declination.
+     * With the ephemeris tables the declination and right ascension are
+     * interpolated instead
+     *
+     * @param time     time in milliseconds
+     * @param azimuth  array for storing sun azimuth
+     * @param altitude array for storing sun altitude
+     * @param index    index in the arrays
+     */
+    private void computePosition(long time, double[] azimuth, double[] altitude, int index) {
+        double d = SunMath.toDays(time);
+        double sinDec;
+        double cosDec;
+        double ra;
+
+        if (mEphemeris != null) {
+            mEphemeris.getSunCoords(time, mCoords);
+            sinDec = Math.sin(mCoords.dec);
+            cosDec = Math.cos(mCoords.dec);
+            ra = mCoords.ra;
+        } else {
+            double M = SunMath.getSolarMeanAnomaly(d);
+            double L = SunMath.getEclipticLongitude(M, SunMath.getEquationOfCenter(M));
+
+            double sinL = Math.sin(L);
+            double cosL = Math.cos(L);
+            sinDec = SIN_E * sinL;
+            cosDec = Math.sqrt(1 - sinDec * sinDec);
+            ra = Math.atan2(sinL * COS_E, cosL);
+        }
+
+        double H = SunMath.getSiderealTime(d, mLw) - ra;
+        double sinH = Math.sin(H);
+        double cosH = Math.cos(H);
+
+        azimuth[index] = Math.atan2(sinH, cosH * mSinPhi - sinDec / cosDec * mCosPhi) + Math.PI;
+        altitude[index] = Math.asin(mSinPhi * sinDec + mCosPhi * cosDec * cosH) * 180 / Math.PI;
+    }
+
+    /**
+     * Gets official sunrise for the date of the given time
+     *
+     * @param time time in milliseconds
+     * @return sunrise time in milliseconds or SolarEventCalculator.NO_EVENT
+     */
+    public long getSunrise(long time) {
+        updateEvents(time);
+        return mSunrise;
+    }
+
+    /**
+     * Gets official sunset for the date of the given time
+     *
+     * @param time time in milliseconds
+     * @return sunset time in milliseconds or SolarEventCalculator.NO_EVENT
+     */
+    public long getSunset(long time) {
+        updateEvents(time);
+        return mSunset;
+    }
+
+    /**
+     * Calculates sunrise and sunset for all zeniths for the date of the given
+     * time
+     *
+     * @param time   time in milliseconds
+     * @param events object for storing result
+     */
+    public void computeAllEvents(long time, SolarEvents events) {
+        mDate.setTimeInMillis(time);
+        mEventCalculator.computeAllEvents(mDate, events);
+    }
+
+    /**
+     * Recalculates sunrise and sunset if the given time is on another date
+     * than the previous call
+     *
+     * @param time time in milliseconds
+     */
+    private void updateEvents(long time) {
+        mDate.setTimeInMillis(time);
+        int date = mDate.get(Calendar.YEAR) * 1000 + mDate.get(Calendar.DAY_OF_YEAR);
+        if (date != mEventsDate) {
+            mSunrise = mEventCalculator.getOfficialSunriseMillisForDate(mDate);
+            mSunset = mEventCalculator.getOfficialSunsetMillisForDate(mDate);
+            mEventsDate = date;
+        }
+    }
+
+    /**
+     * Gets sun azimuth and altitude for specified time
+     *
+     * @param time time in milliseconds
+     * @return object contains calculation result
+     */
+    public SunPosition getPosition(long time) {
+        SunPosition result = new SunPosition();
+        getPosition(time, result);
+        return result;
+    }
+
+    /**
+     * Gets sun azimuth and altitude for specified time
+     *
+     * @param time   time in milliseconds
+     * @param result object for storing calculation result
+     */
+    public void getPosition(long time, SunPosition result) {
+        double H = computeHourAngle(time);
+        result.azimuth = SunMath.getAzimuth(H, mSinPhi, mCosPhi, mCoords.dec) + Math.PI;
+        double altitude = SunMath.getAltitude(H, mSinPhi, mCosPhi, mCoords.dec) * 180 / Math.PI;
+
+        //////////
+        // workaround for fix difference between azimuth and photo tools sunset module
+        updateEvents(time);
+        result.sunriseTime = mSunrise;
+        result.sunsetTime = mSunset;
+        // sunrise and sunset are rounded to minutes, so compare them with the given time without seconds
+        long givenTime = time - time % MINUTE_MS;
+
+        if (result.hasSunrise() && result.hasSunset()) {
+            boolean isDay = givenTime >= mSunrise && givenTime <= mSunset;
+            result.altitude = isDay ? altitude : -1;
+        } else {
+            // polar day or polar night
+            result.altitude = altitude > 0 ? altitude : -1;
+        }
+
+        ////////////
+        result.sunriseAzimuth = getEventAzimuth(mSunrise);
+        result.sunsetAzimuth = getEventAzimuth(mSunset);
+        ////////////
+    }
+
+    /**
+     * Gets sun azimuth for sunrise or sunset
+     *
+     * @param time time in milliseconds or SolarEventCalculator.NO_EVENT
+     * @return sun azimuth in radians or Double.NaN for SolarEventCalculator.NO_EVENT
+     */
+    private double getEventAzimuth(long time) {
+        if (time == SolarEventCalculator.NO_EVENT) {
+            return Double.NaN;
+        }
+
+        return getAzimuth(time);
+    }
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Coalesces concurrent identical requests. The first caller joining with a
+ * key executes the call, callers joining with the same key while it is in
+ * progress wait for it and get the same result or exception. Finished calls
+ * are forgotten, so results are not cached.
+ * <p/>
+ * A waiting caller may leave; the call is aborted only when every caller
+ * has left
+ *
+ * @param <K> type of the request key, must implement equals and hashCode
+ * @param <V> type of the result
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, Flight> mFlights = new HashMap<K, Flight>();
+    private int mExecutionCount;
+    private int mSharedCount;
+
+    /**
+     * Joins the call in progress for the key or starts a new one
+     *
+     * @param key  request key
+     * @param call call executing the request, used only if no call is in
+     *             progress for the key
+     * @return ticket for getting the result, get must be called by the same
+     * thread
+     */
+    public Ticket join(K key, Call<V> call) {
+        synchronized (mFlights) {
+            Flight flight = mFlights.get(key);
+            boolean isExecutor = flight == null;
+            if (isExecutor) {
+                flight = new Flight(key, call);
+                mFlights.put(key, flight);
+                mExecutionCount++;
+            } else {
+                mSharedCount++;
+            }
+
+            flight.mWaiters++;
+            return new Ticket(flight, isExecutor);
+        }
+    }
+
+    /**
+     * @return number of calls executed
+     */
+    public int getExecutionCount() {
+        synchronized (mFlights) {
+            return mExecutionCount;
+        }
+    }
+
+    /**
+     * @return number of joins served by a call already in progress
+     */
+    public int getSharedCount() {
+        synchronized (mFlights) {
+            return mSharedCount;
+        }
+    }
+
+    /**
+     * Request executed once for all callers with the same key
+     *
+     * @param <V> type of the result
+     */
+    public interface Call<V> {
+        /**
+         * Executes the request
+         *
+         * @return result
+         * @throws Exception if the request fails
+         */
+        public V execute() throws Exception;
+
+        /**
+         * Aborts the request in progress, called from any thread when all
+         * callers have left
+         */
+        public void abort();
+    }
+
+    /**
+     * Participation of one caller in a call
+     */
+    public class Ticket {
+        private final Flight mFlight;
+        private final boolean mIsExecutor;
+        private boolean mHasLeft;
+
+        private Ticket(Flight flight, boolean isExecutor) {
+            mFlight = flight;
+            mIsExecutor = isExecutor;
+        }
+
+        /**
+         * Executes the call or waits for the caller executing it
+         *
+         * @return result of the call
+         * @throws CancellationException if this caller has left or the call
+         *                               was aborted
+         * @throws Exception             the exception thrown by the call
+         */
+        public V get() throws Exception {
+            if (mIsExecutor) {
+                V result = null;
+                Exception error = null;
+                try {
+                    result = mFlight.mCall.execute();
+                } catch (Exception e) {
+                    error = e;
+                }
+                mFlight.finish(result, error);
+            } else {
+                synchronized (mFlights) {
+                    while (!mFlight.mIsFinished && !mHasLeft) {
+                        mFlights.wait();
+                    }
+                }
+            }
+
+            synchronized (mFlights) {
+                if (mHasLeft) {
+                    throw new CancellationException();
+                }
+            }
+            if (mFlight.mError != null) {
+                throw mFlight.mError;
+            }
+            return mFlight.mResult;
+        }
+
+        /**
+         * Stops waiting for the result, may be called from any thread. The
+         * call is aborted if no other caller waits for it
+         */
+        public void leave() {
+            Call<V> abortedCall = null;
+            synchronized (mFlights) {
+                if (mHasLeft || mFlight.mIsFinished) {
+                    return;
+                }
+
+                mHasLeft = true;
+                mFlight.mWaiters--;
+                if (mFlight.mWaiters == 0) {
+                    // new callers must not join the aborted call
+                    mFlights.remove(mFlight.mKey);
+                    abortedCall = mFlight.mCall;
+                }
+                mFlights.notifyAll();
+            }
+
+            if (abortedCall != null) {
+                abortedCall.abort();
+            }
+        }
+    }
+
+    /**
+     * Call in progress with its result
+     */
+    private class Flight {
+        private final K mKey;
+        private final Call<V> mCall;
+        private int mWaiters;
+        private boolean mIsFinished;
+        private V mResult;
+        private Exception mError;
+
+        private Flight(K key, Call<V> call) {
+            mKey = key;
+            mCall = call;
+        }
+
+        private void finish(V result, Exception error) {
+            synchronized (mFlights) {
+                mResult = result;
+                mError = error;
+                mIsFinished = true;
+                if (mFlights.get(mKey) == this) {
+                    mFlights.remove(mKey);
+                }
+                mFlights.notifyAll();
+            }
+        }
+    }
+}
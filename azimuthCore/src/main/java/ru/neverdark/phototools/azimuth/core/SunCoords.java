@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+/**
+ * Class contains equatorial coordinates of the sun
+ */
+public class SunCoords {
+    double dec;
+    double ra;
+
+    /**
+     * Gets sun declination
+     *
+     * @return sun declination in radians
+     */
+    public double getDeclination() {
+        return dec;
+    }
+
+    /**
+     * Gets sun right ascension
+     *
+     * @return sun right ascension in radians
+     */
+    public double getRightAscension() {
+        return ra;
+    }
+}
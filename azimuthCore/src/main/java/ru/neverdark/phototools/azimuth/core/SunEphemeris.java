@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Sun declination, right ascension and equation of time for one year (UTC),
+ * calculated at a fixed step and answered by linear interpolation.
+ * <p/>
+ * With the hourly step the interpolated values differ from SunMath by less
+ * than MAX_ANGLE_ERROR, 5e-8 radians (about 0.01 arc second), for
+ * declination and right ascension, and by less than
+ * MAX_EQUATION_OF_TIME_ERROR, 1e-5 minutes, for the equation of time. Both
+ * are far below the precision of the formulas themselves
+ */
+public class SunEphemeris {
+    /**
+     * Step between calculated values in milliseconds
+     */
+    public static final long STEP_MS = 1000 * 60 * 60;
+    /**
+     * Maximum difference of the interpolated declination and right ascension
+     * from SunMath in radians
+     */
+    public static final double MAX_ANGLE_ERROR = 5e-8;
+    /**
+     * Maximum difference of the interpolated equation of time from the
+     * calculated one in minutes
+     */
+    public static final double MAX_EQUATION_OF_TIME_ERROR = 1e-5;
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final double MINUTES_IN_RADIAN = 24 * 60 / TWO_PI;
+
+    private final int mYear;
+    private final long mStart;
+    private final long mEnd;
+    private final double[] mDeclination;
+    private final double[] mRightAscension;
+    private final double[] mEquationOfTime;
+
+    /**
+     * Calculates the table for the year
+     *
+     * @param year year in UTC
+     */
+    public SunEphemeris(int year) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1);
+        mStart = calendar.getTimeInMillis();
+        calendar.add(Calendar.YEAR, 1);
+        mEnd = calendar.getTimeInMillis();
+        mYear = year;
+
+        // one more value for interpolating the last step of the year
+        int count = (int) ((mEnd - mStart) / STEP_MS) + 1;
+        mDeclination = new double[count];
+        mRightAscension = new double[count];
+        mEquationOfTime = new double[count];
+
+        SunCoords coords = new SunCoords();
+        double previousRa = 0;
+        for (int i = 0; i < count; i++) {
+            double d = SunMath.toDays(mStart + i * STEP_MS);
+            SunMath.getSunCoords(d, coords);
+
+            // keep right ascension continuous, so that neighbours can be interpolated
+            double ra = coords.ra;
+            if (i > 0) {
+                ra += TWO_PI * Math.rint((previousRa - ra) / TWO_PI);
+            }
+            previousRa = ra;
+
+            // difference between the mean sun and the true sun
+            double meanLongitude = SunMath.getSolarMeanAnomaly(d) + SunMath.rad * 102.9372 + Math.PI;
+            double equationOfTime = meanLongitude - coords.ra;
+            equationOfTime -= TWO_PI * Math.rint(equationOfTime / TWO_PI);
+
+            mDeclination[i] = coords.dec;
+            mRightAscension[i] = ra;
+            mEquationOfTime[i] = equationOfTime * MINUTES_IN_RADIAN;
+        }
+    }
+
+    public int getYear() {
+        return mYear;
+    }
+
+    /**
+     * Checks that the time is covered by the table
+     *
+     * @param time time in milliseconds
+     * @return true if the time is in the year of the table
+     */
+    public boolean contains(long time) {
+        return time >= mStart && time < mEnd;
+    }
+
+    /**
+     * Gets equatorial coordinates of the sun
+     *
+     * @param time   time in milliseconds, must be in the year of the table
+     * @param coords object for storing result
+     * @return coords
+     */
+    public SunCoords getSunCoords(long time, SunCoords coords) {
+        int index = getIndex(time);
+        double fraction = getFraction(time, index);
+
+        coords.dec = interpolate(mDeclination, index, fraction);
+        double ra = interpolate(mRightAscension, index, fraction);
+        ra -= TWO_PI * Math.rint(ra / TWO_PI);
+        coords.ra = ra;
+
+        return coords;
+    }
+
+    /**
+     * Gets equation of time
+     *
+     * @param time time in milliseconds, must be in the year of the table
+     * @return difference between apparent and mean solar time in minutes
+     */
+    public double getEquationOfTime(long time) {
+        int index = getIndex(time);
+        return interpolate(mEquationOfTime, index, getFraction(time, index));
+    }
+
+    private int getIndex(long time) {
+        if (!contains(time)) {
+            throw new IllegalArgumentException("Time " + time + " is not in " + mYear);
+        }
+        return (int) ((time - mStart) / STEP_MS);
+    }
+
+    private double getFraction(long time, int index) {
+        return (double) (time - mStart - index * STEP_MS) / STEP_MS;
+    }
+
+    private static double interpolate(double[] values, int index, double fraction) {
+        return values[index] + (values[index + 1] - values[index]) * fraction;
+    }
+}
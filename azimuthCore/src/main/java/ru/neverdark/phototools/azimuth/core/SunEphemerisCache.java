@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Keeps SunEphemeris tables for the recently used years. A table is
+ * calculated on the first query for its year
+ */
+public class SunEphemerisCache {
+    private static final int DEFAULT_YEARS = 2;
+
+    private final Map<Integer, SunEphemeris> mTables;
+    private volatile SunEphemeris mLastTable;
+
+    /**
+     * Constructor, keeps tables for two years
+     */
+    public SunEphemerisCache() {
+        this(DEFAULT_YEARS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxYears maximum number of years kept in memory, a table takes
+     *                 about 200 KB
+     */
+    public SunEphemerisCache(final int maxYears) {
+        mTables = new LinkedHashMap<Integer, SunEphemeris>(maxYears + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, SunEphemeris> eldest) {
+                return size() > maxYears;
+            }
+        };
+    }
+
+    /**
+     * Gets table containing the time, calculates it if needed
+     *
+     * @param time time in milliseconds
+     * @return table for the year of the time
+     */
+    public SunEphemeris getEphemeris(long time) {
+        SunEphemeris table = mLastTable;
+        if (table != null && table.contains(time)) {
+            return table;
+        }
+
+        synchronized (mTables) {
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+            calendar.setTimeInMillis(time);
+            int year = calendar.get(Calendar.YEAR);
+
+            table = mTables.get(year);
+            if (table == null) {
+                table = new SunEphemeris(year);
+                mTables.put(year, table);
+            }
+        }
+
+        mLastTable = table;
+        return table;
+    }
+
+    /**
+     * Gets equatorial coordinates of the sun from the table
+     *
+     * @param time   time in milliseconds
+     * @param coords object for storing result
+     * @return coords
+     */
+    public SunCoords getSunCoords(long time, SunCoords coords) {
+        return getEphemeris(time).getSunCoords(time, coords);
+    }
+
+    /**
+     * Gets equation of time from the table
+     *
+     * @param time time in milliseconds
+     * @return difference between apparent and mean solar time in minutes
+     */
+    public double getEquationOfTime(long time) {
+        return getEphemeris(time).getEquationOfTime(time);
+    }
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+/**
+ * Formulas for calculation sun azimuth and sun altitude. All angles are in
+ * radians, all times are in milliseconds since the epoch
+ */
+public class SunMath {
+    public static final double rad = Math.PI / 180;
+    static final double e = rad * 23.4397;
+    private static final long dayMs = 1000 * 60 * 60 * 24;
+    private static final int J1970 = 2440588;
+    private static final int J2000 = 2451545;
+
+    private SunMath() {
+    }
+
+    /**
+     * Gets sun altitude
+     *
+     * @param H   hour angle
+     * @param phi latitude
+     * @param dec sun declination
+     * @return sun altitude
+     */
+    public static double getAltitude(double H, double phi, double dec) {
+        return Math.asin(Math.sin(phi) * Math.sin(dec) + Math.cos(phi) * Math.cos(dec) * Math.cos(H));
+    }
+
+    /**
+     * Gets sun azimuth measured from south to west
+     *
+     * @param H   hour angle
+     * @param phi latitude
+     * @param dec sun declination
+     * @return sun azimuth
+     */
+    public static double getAzimuth(double H, double phi, double dec) {
+        return Math.atan2(Math.sin(H), Math.cos(H) * Math.sin(phi) - Math.tan(dec) * Math.cos(phi));
+    }
+
+    /**
+     * Gets sun altitude for the latitude given by its sine and cosine
+     *
+     * @param H      hour angle
+     * @param sinPhi sine of latitude
+     * @param cosPhi cosine of latitude
+     * @param dec    sun declination
+     * @return sun altitude
+     */
+    public static double getAltitude(double H, double sinPhi, double cosPhi, double dec) {
+        return Math.asin(sinPhi * Math.sin(dec) + cosPhi * Math.cos(dec) * Math.cos(H));
+    }
+
+    /**
+     * Gets sun azimuth measured from south to west for the latitude given by
+     * its sine and cosine
+     *
+     * @param H      hour angle
+     * @param sinPhi sine of latitude
+     * @param cosPhi cosine of latitude
+     * @param dec    sun declination
+     * @return sun azimuth
+     */
+    public static double getAzimuth(double H, double sinPhi, double cosPhi, double dec) {
+        return Math.atan2(Math.sin(H), Math.cos(H) * sinPhi - Math.tan(dec) * cosPhi);
+    }
+
+    public static double getDeclination(double l, double b) {
+        return Math.asin(Math.sin(b) * Math.cos(e) + Math.cos(b) * Math.sin(e) * Math.sin(l));
+    }
+
+    public static double getEclipticLongitude(double M, double C) {
+        double P = rad * 102.9372;
+        return M + C + P + Math.PI;
+    }
+
+    public static double getEquationOfCenter(double M) {
+        return rad
+                * (1.9148 * Math.sin(M) + 0.02 * Math.sin(2 * M) + 0.0003 * Math.sin(3 * M));
+    }
+
+    public static double getRightAscension(double l, double b) {
+        return Math.atan2(Math.sin(l) * Math.cos(e) - Math.tan(b) * Math.sin(e), Math.cos(l));
+    }
+
+    /**
+     * Gets sidereal time
+     *
+     * @param d  days since J2000
+     * @param lw west longitude
+     * @return sidereal time
+     */
+    public static double getSiderealTime(double d, double lw) {
+        return rad * (280.16 + 360.9856235 * d) - lw;
+    }
+
+    public static double getSolarMeanAnomaly(double d) {
+        return rad * (357.5291 + 0.98560028 * d);
+    }
+
+    /**
+     * Gets equatorial coordinates of the sun
+     *
+     * @param d      days since J2000
+     * @param coords object for storing result
+     * @return coords
+     */
+    public static SunCoords getSunCoords(double d, SunCoords coords) {
+        double M = getSolarMeanAnomaly(d);
+        double C = getEquationOfCenter(M);
+        double L = getEclipticLongitude(M, C);
+
+        coords.dec = getDeclination(L, 0);
+        coords.ra = getRightAscension(L, 0);
+
+        return coords;
+    }
+
+    /**
+     * Gets days since J2000
+     *
+     * @param time time in milliseconds
+     * @return days since J2000
+     */
+    public static double toDays(long time) {
+        return toJulian(time) - J2000;
+    }
+
+    /**
+     * Gets julian date
+     *
+     * @param time time in milliseconds
+     * @return julian date
+     */
+    public static double toJulian(long time) {
+        return (double) time / dayMs + (J1970 - 0.5);
+    }
+}
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.util.TimeZone;
+
+/**
+ * Sun path of one day: sun azimuth and altitude sampled from the start to the
+ * end of the day, and the sun position at every whole local hour.
+ * <p/>
+ * Samples are computed in batches by PreparedSunCalculator into arrays
+ * allocated once by the constructor. The day is first sampled with a coarse
+ * step, then every interval where the sun moves too far across the sky is
+ * split in two, all new samples of a round are computed in one batch. The
+ * movement is measured on the sky map with the zenith in the centre and the
+ * horizon on the circle. The sun moves over the map with a nearly constant
+ * speed, so the samples are nearly even in time. The map stretches arcs far
+ * from the zenith, so the samples are denser low in the sky, mostly at high
+ * latitudes where the low sun moves along the horizon, while a pass close to
+ * the zenith, where the azimuth changes fastest, gets no extra samples.
+ * Intervals under the horizon are not refined, the horizon crossings are
+ * refined to the minimum step.
+ * <p/>
+ * Objects of this class must not be shared between threads while computed,
+ * the computed path may be read from any thread after a safe publication
+ */
+public class SunPath {
+    /**
+     * Maximum number of samples of the path
+     */
+    public static final int MAX_SAMPLES = 512;
+    /**
+     * Maximum number of hour marks, the day with the daylight saving time
+     * change has up to 25 hours
+     */
+    public static final int MAX_HOURS = 25;
+
+    private static final long MINUTE_MS = 1000 * 60;
+    private static final long HOUR_MS = MINUTE_MS * 60;
+    private static final long INITIAL_STEP_MS = MINUTE_MS * 30;
+    private static final long MIN_STEP_MS = MINUTE_MS;
+    /**
+     * Maximum distance between neighbour samples on the sky map in degrees
+     */
+    private static final double MAX_STEP_DEGREES = 2;
+    private static final double MAX_STEP_SQUARED = MAX_STEP_DEGREES * MAX_STEP_DEGREES;
+
+    private final long[] mTimes = new long[MAX_SAMPLES];
+    private final double[] mAzimuths = new double[MAX_SAMPLES];
+    private final double[] mAltitudes = new double[MAX_SAMPLES];
+    private int mCount;
+
+    private final long[] mHourTimes = new long[MAX_HOURS];
+    private final double[] mHourAzimuths = new double[MAX_HOURS];
+    private final double[] mHourAltitudes = new double[MAX_HOURS];
+    private int mHourCount;
+
+    // samples of the current refinement round and the intervals they split
+    private final long[] mNewTimes = new long[MAX_SAMPLES];
+    private final double[] mNewAzimuths = new double[MAX_SAMPLES];
+    private final double[] mNewAltitudes = new double[MAX_SAMPLES];
+    private final int[] mSplitIndexes = new int[MAX_SAMPLES];
+
+    /**
+     * Computes sun path, the previous path is replaced
+     *
+     * @param calculator calculator prepared for the location
+     * @param start      start of the day in milliseconds
+     * @param end        end of the day in milliseconds
+     */
+    public void compute(PreparedSunCalculator calculator, long start, long end) {
+        if (end <= start) {
+            throw new IllegalArgumentException("End of the day is before its start");
+        }
+
+        mCount = (int) Math.min((end - start + INITIAL_STEP_MS - 1) / INITIAL_STEP_MS + 1, MAX_SAMPLES);
+        long step = (end - start) / (mCount - 1);
+        for (int i = 0; i < mCount; i++) {
+            mTimes[i] = start + i * step;
+        }
+        mTimes[mCount - 1] = end;
+        calculator.getPositions(mTimes, mCount, mAzimuths, mAltitudes);
+
+        int splitCount;
+        do {
+            splitCount = 0;
+            for (int i = 0; i < mCount - 1 && mCount + splitCount < MAX_SAMPLES; i++) {
+                if (isTooLong(i)) {
+                    mNewTimes[splitCount] = mTimes[i] + (mTimes[i + 1] - mTimes[i]) / 2;
+                    mSplitIndexes[splitCount] = i;
+                    splitCount++;
+                }
+            }
+
+            if (splitCount > 0) {
+                calculator.getPositions(mNewTimes, splitCount, mNewAzimuths, mNewAltitudes);
+                merge(splitCount);
+            }
+        } while (splitCount > 0);
+
+        computeHours(calculator, start, end);
+    }
+
+    /**
+     * Checks whether the interval after the sample must be split
+     *
+     * @param index index of the first sample of the interval
+     * @return true if the interval is longer than the minimum step, and it
+     * crosses the horizon or the sun moves too far on it above the horizon
+     */
+    private boolean isTooLong(int index) {
+        if (mTimes[index + 1] - mTimes[index] <= MIN_STEP_MS) {
+            return false;
+        }
+
+        double altitude1 = mAltitudes[index];
+        double altitude2 = mAltitudes[index + 1];
+        if (altitude1 < 0 && altitude2 < 0) {
+            return false;
+        }
+        if (altitude1 < 0 || altitude2 < 0) {
+            return true;
+        }
+
+        // azimuth change is an arc of the circle at the zenith distance
+        double zenithDistance = 90 - (altitude1 + altitude2) / 2;
+        double arc = zenithDistance * getAzimuthChange(mAzimuths[index], mAzimuths[index + 1]);
+        double climb = altitude2 - altitude1;
+        return arc * arc + climb * climb > MAX_STEP_SQUARED;
+    }
+
+    /**
+     * Inserts samples of the refinement round after the intervals they split,
+     * walks from the end so every sample is moved once
+     *
+     * @param splitCount number of new samples
+     */
+    private void merge(int splitCount) {
+        int target = mCount + splitCount - 1;
+        int split = splitCount - 1;
+        for (int i = mCount - 1; i >= 0; i--) {
+            if (split >= 0 && mSplitIndexes[split] == i) {
+                setSample(target--, mNewTimes[split], mNewAzimuths[split], mNewAltitudes[split]);
+                split--;
+            }
+            setSample(target--, mTimes[i], mAzimuths[i], mAltitudes[i]);
+        }
+        mCount += splitCount;
+    }
+
+    private void setSample(int index, long time, double azimuth, double altitude) {
+        mTimes[index] = time;
+        mAzimuths[index] = azimuth;
+        mAltitudes[index] = altitude;
+    }
+
+    /**
+     * Computes sun positions at the whole local hours of the day
+     *
+     * @param calculator calculator prepared for the location
+     * @param start      start of the day in milliseconds
+     * @param end        end of the day in milliseconds
+     */
+    private void computeHours(PreparedSunCalculator calculator, long start, long end) {
+        TimeZone timeZone = calculator.getTimeZone();
+
+        // every hour is aligned to the local clock, some zones move it by half an hour
+        mHourCount = 0;
+        for (long time = getNextHour(timeZone, start); time < end && mHourCount < MAX_HOURS;
+             time = getNextHour(timeZone, time + HOUR_MS)) {
+            mHourTimes[mHourCount++] = time;
+        }
+        calculator.getPositions(mHourTimes, mHourCount, mHourAzimuths, mHourAltitudes);
+    }
+
+    /**
+     * Gets the first whole local hour not before the time
+     *
+     * @param timeZone time zone of the local clock
+     * @param time     time in milliseconds
+     * @return time of the whole hour in milliseconds
+     */
+    private static long getNextHour(TimeZone timeZone, long time) {
+        long pastHour = ((time + timeZone.getOffset(time)) % HOUR_MS + HOUR_MS) % HOUR_MS;
+        return pastHour == 0 ? time : time + HOUR_MS - pastHour;
+    }
+
+    /**
+     * Gets change between two azimuths by the shortest way
+     *
+     * @param azimuth1 first azimuth in radians
+     * @param azimuth2 second azimuth in radians
+     * @return absolute change in radians, from 0 to PI
+     */
+    public static double getAzimuthChange(double azimuth1, double azimuth2) {
+        double change = Math.abs(azimuth2 - azimuth1) % (2 * Math.PI);
+        return change > Math.PI ? 2 * Math.PI - change : change;
+    }
+
+    /**
+     * @return number of samples
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @param index sample index
+     * @return time of the sample in milliseconds
+     */
+    public long getTime(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * @param index sample index
+     * @return sun azimuth measured from north to east in radians
+     */
+    public double getAzimuth(int index) {
+        return mAzimuths[index];
+    }
+
+    /**
+     * @param index sample index
+     * @return sun altitude in degrees, negative if the sun is under the horizon
+     */
+    public double getAltitude(int index) {
+        return mAltitudes[index];
+    }
+
+    /**
+     * @return number of whole hours in the day
+     */
+    public int getHourCount() {
+        return mHourCount;
+    }
+
+    /**
+     * @param index hour index
+     * @return time of the hour in milliseconds
+     */
+    public long getHourTime(int index) {
+        return mHourTimes[index];
+    }
+
+    /**
+     * @param index hour index
+     * @return sun azimuth at the hour measured from north to east in radians
+     */
+    public double getHourAzimuth(int index) {
+        return mHourAzimuths[index];
+    }
+
+    /**
+     * @param index hour index
+     * @return sun altitude at the hour in degrees, negative if the sun is
+     * under the horizon
+     */
+    public double getHourAltitude(int index) {
+        return mHourAltitudes[index];
+    }
+}
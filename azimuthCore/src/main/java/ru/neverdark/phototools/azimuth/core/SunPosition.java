@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import com.luckycatlabs.sunrisesunset.calculator.SolarEventCalculator;
+
+/**
+ * Class contains sun position for the given time and location
+ */
+public class SunPosition {
+    double azimuth;
+    double altitude;
+    long sunriseTime;
+    long sunsetTime;
+    double sunriseAzimuth;
+    double sunsetAzimuth;
+
+    /**
+     * Gets sun azimuth measured from north to east
+     *
+     * @return sun azimuth in radians
+     */
+    public double getAzimuth() {
+        return azimuth;
+    }
+
+    /**
+     * Gets sun altitude
+     *
+     * @return sun altitude in degrees or -1 if the sun is under the horizon
+     */
+    public double getAltitude() {
+        return altitude;
+    }
+
+    /**
+     * Gets sunrise time
+     *
+     * @return sunrise time in milliseconds or SolarEventCalculator.NO_EVENT
+     */
+    public long getSunriseTime() {
+        return sunriseTime;
+    }
+
+    /**
+     * Gets sunset time
+     *
+     * @return sunset time in milliseconds or SolarEventCalculator.NO_EVENT
+     */
+    public long getSunsetTime() {
+        return sunsetTime;
+    }
+
+    /**
+     * Gets azimuth for sunrise time
+     *
+     * @return sun azimuth for sunrise time in radians or Double.NaN if the sun
+     * does not rise
+     */
+    public double getSunriseAzimuth() {
+        return sunriseAzimuth;
+    }
+
+    /**
+     * Gets azimuth for sunset time
+     *
+     * @return sun azimuth for sunset time in radians or Double.NaN if the sun
+     * does not set
+     */
+    public double getSunsetAzimuth() {
+        return sunsetAzimuth;
+    }
+
+    /**
+     * Checks that the sun rises on the date of calculation
+     *
+     * @return true if the sun rises
+     */
+    public boolean hasSunrise() {
+        return sunriseTime != SolarEventCalculator.NO_EVENT;
+    }
+
+    /**
+     * Checks that the sun sets on the date of calculation
+     *
+     * @return true if the sun sets
+     */
+    public boolean hasSunset() {
+        return sunsetTime != SolarEventCalculator.NO_EVENT;
+    }
+}
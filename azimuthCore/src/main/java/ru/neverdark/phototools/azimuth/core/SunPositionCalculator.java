@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.util.TimeZone;
+
+/**
+ * Class for calculation sun azimuth and sun altitude
+ */
+public class SunPositionCalculator {
+    private final SunEphemerisCache mEphemeris;
+
+    /**
+     * Constructor, sun coordinates are calculated on every call
+     */
+    public SunPositionCalculator() {
+        this(null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param ephemeris tables for sun coordinates shared by all prepared
+     *                  calculators or null for calculating them on every call
+     */
+    public SunPositionCalculator(SunEphemerisCache ephemeris) {
+        mEphemeris = ephemeris;
+    }
+
+    /**
+     * Gets sun azimuth and altitude for specified time and location. For many
+     * calculations at one location use {@link PreparedSunCalculator}
+     *
+     * @param latitude  location latitude in degrees
+     * @param longitude location longitude in degrees
+     * @param time      time in milliseconds
+     * @param timeZone  time zone of the location, defines the date for sunrise
+     *                  and sunset
+     * @return object contains calculation result
+     */
+    public SunPosition getPosition(double latitude, double longitude, long time, TimeZone timeZone) {
+        return prepare(latitude, longitude, timeZone).getPosition(time);
+    }
+
+    /**
+     * Creates calculator bound to the location
+     *
+     * @param latitude  location latitude in degrees
+     * @param longitude location longitude in degrees
+     * @param timeZone  time zone of the location
+     * @return calculator for the location
+     */
+    public PreparedSunCalculator prepare(double latitude, double longitude, TimeZone timeZone) {
+        return new PreparedSunCalculator(latitude, longitude, timeZone, mEphemeris);
+    }
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Offline lookup of time zone ids. The world is divided into a grid of
+ * cells, every row of the grid is stored as runs of cells with the same
+ * zone, so a lookup is a binary search in one row and works directly on a
+ * memory mapped file. The index is built by TimeZoneIndexBuilder.
+ * <p/>
+ * Format, big endian:
+ * <pre>
+ * int     MAGIC
+ * int     number of columns, covering longitudes from -180 to 180
+ * int     number of rows, covering latitudes from 90 to -90
+ * int     number of zones
+ * zones   for every zone: unsigned short length and ASCII zone id
+ * int[]   rows + 1 offsets of the first run of every row, in runs
+ * runs    for every run: unsigned short first column and unsigned short
+ *         zone number, zero for cells without zone or number of the zone
+ *         starting from one
+ * </pre>
+ */
+public class TimeZoneIndex {
+    /**
+     * First bytes of the index file, "TZI1"
+     */
+    public static final int MAGIC = 0x545a4931;
+    static final int RUN_SIZE = 4;
+
+    private final ByteBuffer mBuffer;
+    private final int mColumns;
+    private final int mRows;
+    private final String[] mZones;
+    private final int mOffsetsPosition;
+    private final int mRunsPosition;
+
+    private TimeZoneIndex(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        mBuffer.position(0);
+        try {
+            if (mBuffer.getInt() != MAGIC) {
+                throw new IOException("Not a time zone index");
+            }
+
+            mColumns = mBuffer.getInt();
+            mRows = mBuffer.getInt();
+            int zoneCount = mBuffer.getInt();
+            if (mColumns <= 0 || mColumns > 0xFFFF || mRows <= 0 || zoneCount < 0 || zoneCount >= 0xFFFF) {
+                throw new IOException("Wrong time zone index header");
+            }
+
+            mZones = new String[zoneCount];
+            for (int i = 0; i < zoneCount; i++) {
+                byte[] id = new byte[mBuffer.getChar()];
+                mBuffer.get(id);
+                mZones[i] = new String(id, "US-ASCII");
+            }
+
+            mOffsetsPosition = mBuffer.position();
+            mRunsPosition = mOffsetsPosition + (mRows + 1) * 4;
+            int runCount = mBuffer.getInt(mOffsetsPosition + mRows * 4);
+            if (runCount < 0 || mRunsPosition + (long) runCount * RUN_SIZE > mBuffer.limit()) {
+                throw new IOException("Time zone index is truncated");
+            }
+        } catch (RuntimeException e) {
+            // BufferUnderflowException and IndexOutOfBoundsException of the broken file
+            throw new IOException("Time zone index is truncated", e);
+        }
+    }
+
+    /**
+     * Reads index. The buffer is not copied, so it may be memory mapped file
+     *
+     * @param buffer buffer contains whole index
+     * @return index
+     * @throws IOException if buffer does not contain an index
+     */
+    public static TimeZoneIndex read(ByteBuffer buffer) throws IOException {
+        return new TimeZoneIndex(buffer);
+    }
+
+    /**
+     * Gets time zone id of the location
+     *
+     * @param latitude  location latitude in degrees
+     * @param longitude location longitude in degrees
+     * @return IANA time zone id or null if the location has no zone in the
+     * index
+     */
+    public String getTimeZoneId(double latitude, double longitude) {
+        int row = toCell((90 - latitude) / 180, mRows);
+        int column = toCell((longitude + 180) / 360, mColumns);
+
+        // the last run starting not after the column
+        int low = mBuffer.getInt(mOffsetsPosition + row * 4);
+        int high = mBuffer.getInt(mOffsetsPosition + (row + 1) * 4) - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (mBuffer.getChar(mRunsPosition + middle * RUN_SIZE) <= column) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        int zone = mBuffer.getChar(mRunsPosition + low * RUN_SIZE + 2);
+        return zone == 0 ? null : mZones[zone - 1];
+    }
+
+    /**
+     * @return number of zones in the index
+     */
+    public int getZoneCount() {
+        return mZones.length;
+    }
+
+    /**
+     * Converts relative position to the cell number
+     *
+     * @param position position from 0 to 1
+     * @param count    number of cells
+     * @return cell number from 0 to count - 1
+     */
+    private static int toCell(double position, int count) {
+        int cell = (int) Math.floor(position * count);
+        if (cell < 0) {
+            return 0;
+        }
+        return cell >= count ? count - 1 : cell;
+    }
+}
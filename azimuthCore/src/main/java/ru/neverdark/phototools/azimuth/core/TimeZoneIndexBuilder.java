@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds TimeZoneIndex from zone polygons. Every cell gets the zone of the
+ * polygon containing the center of the cell, polygons added later win.
+ * <p/>
+ * Run main with the GeoJSON file of the timezone-boundary-builder project
+ * (https://github.com/evansiroky/timezone-boundary-builder/releases) for
+ * regenerating the index shipped with the application:
+ * <pre>
+ * ./gradlew :azimuthCore:buildTimeZoneIndex -Pinput=combined-with-oceans.json
+ * </pre>
+ */
+public class TimeZoneIndexBuilder {
+    /**
+     * Default resolution, 0.05 degree or about 5.5 km on the equator
+     */
+    public static final int DEFAULT_CELLS_PER_DEGREE = 20;
+
+    private final int mCellsPerDegree;
+    private final int mColumns;
+    private final int mRows;
+    private final char[] mCells;
+    private final Map<String, Integer> mZones = new LinkedHashMap<String, Integer>();
+
+    /**
+     * Constructor
+     *
+     * @param cellsPerDegree number of cells in one degree, from 1 to 182
+     */
+    public TimeZoneIndexBuilder(int cellsPerDegree) {
+        if (cellsPerDegree < 1 || 360 * cellsPerDegree > 0xFFFF) {
+            throw new IllegalArgumentException("Unsupported resolution " + cellsPerDegree);
+        }
+
+        mCellsPerDegree = cellsPerDegree;
+        mColumns = 360 * cellsPerDegree;
+        mRows = 180 * cellsPerDegree;
+        mCells = new char[mColumns * mRows];
+    }
+
+    /**
+     * Adds polygon of the zone
+     *
+     * @param zoneId IANA time zone id
+     * @param rings  outer ring and holes of the polygon, every ring is array
+     *               of longitude and latitude pairs in degrees
+     */
+    public void addPolygon(String zoneId, List<double[]> rings) {
+        Integer zone = mZones.get(zoneId);
+        if (zone == null) {
+            if (mZones.size() + 1 >= 0xFFFF) {
+                throw new IllegalStateException("Too many zones");
+            }
+            zone = mZones.size() + 1;
+            mZones.put(zoneId, zone);
+        }
+
+        double minLatitude = 90;
+        double maxLatitude = -90;
+        for (double[] ring : rings) {
+            for (int i = 1; i < ring.length; i += 2) {
+                minLatitude = Math.min(minLatitude, ring[i]);
+                maxLatitude = Math.max(maxLatitude, ring[i]);
+            }
+        }
+
+        // rows with centers inside the latitudes of the polygon
+        int firstRow = Math.max(0, (int) Math.ceil((90 - maxLatitude) * mCellsPerDegree - 0.5));
+        int lastRow = Math.min(mRows - 1, (int) Math.floor((90 - minLatitude) * mCellsPerDegree - 0.5));
+        if (firstRow > lastRow) {
+            return;
+        }
+
+        // crossings of the ring edges with the row centers, inside is between odd and even crossings
+        double[][] crossings = new double[lastRow - firstRow + 1][];
+        int[] counts = new int[crossings.length];
+        for (double[] ring : rings) {
+            int points = ring.length / 2;
+            for (int i = 0; i < points; i++) {
+                int j = (i + 1) % points;
+                addCrossings(ring[2 * i], ring[2 * i + 1], ring[2 * j], ring[2 * j + 1], firstRow, lastRow,
+                        crossings, counts);
+            }
+        }
+
+        char value = (char) zone.intValue();
+        for (int r = 0; r < crossings.length; r++) {
+            if (counts[r] < 2) {
+                continue;
+            }
+            double[] row = crossings[r];
+            Arrays.sort(row, 0, counts[r]);
+            int offset = (firstRow + r) * mColumns;
+            for (int k = 0; k + 1 < counts[r]; k += 2) {
+                int from = Math.max(0, (int) Math.ceil((row[k] + 180) * mCellsPerDegree - 0.5));
+                int to = Math.min(mColumns, (int) Math.ceil((row[k + 1] + 180) * mCellsPerDegree - 0.5));
+                if (from < to) {
+                    Arrays.fill(mCells, offset + from, offset + to, value);
+                }
+            }
+        }
+    }
+
+    private void addCrossings(double x1, double y1, double x2, double y2, int firstRow, int lastRow,
+                              double[][] crossings, int[] counts) {
+        if (y1 == y2) {
+            return;
+        }
+
+        double low = Math.min(y1, y2);
+        double high = Math.max(y1, y2);
+        // rows with center latitude in [low, high)
+        int from = Math.max(firstRow, (int) Math.floor((90 - high) * mCellsPerDegree - 0.5) + 1);
+        int to = Math.min(lastRow, (int) Math.floor((90 - low) * mCellsPerDegree - 0.5));
+        for (int row = from; row <= to; row++) {
+            double y = 90 - (row + 0.5) / mCellsPerDegree;
+            if (y < low || y >= high) {
+                continue;
+            }
+            double x = x1 + (y - y1) * (x2 - x1) / (y2 - y1);
+
+            int r = row - firstRow;
+            if (crossings[r] == null) {
+                crossings[r] = new double[8];
+            } else if (counts[r] == crossings[r].length) {
+                crossings[r] = Arrays.copyOf(crossings[r], counts[r] * 2);
+            }
+            crossings[r][counts[r]++] = x;
+        }
+    }
+
+    /**
+     * Writes index in the TimeZoneIndex format
+     *
+     * @param output stream for writing, not closed
+     * @return number of runs in the index
+     * @throws IOException if writing fails
+     */
+    public int write(OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(TimeZoneIndex.MAGIC);
+        data.writeInt(mColumns);
+        data.writeInt(mRows);
+        data.writeInt(mZones.size());
+        for (String zoneId : mZones.keySet()) {
+            byte[] id = zoneId.getBytes("US-ASCII");
+            data.writeChar(id.length);
+            data.write(id);
+        }
+
+        int runs = 0;
+        for (int row = 0; row < mRows; row++) {
+            data.writeInt(runs);
+            runs += countRuns(row);
+        }
+        data.writeInt(runs);
+
+        for (int row = 0; row < mRows; row++) {
+            int offset = row * mColumns;
+            for (int column = 0; column < mColumns; column++) {
+                char value = mCells[offset + column];
+                if (column == 0 || value != mCells[offset + column - 1]) {
+                    data.writeChar(column);
+                    data.writeChar(value);
+                }
+            }
+        }
+
+        data.flush();
+        return runs;
+    }
+
+    private int countRuns(int row) {
+        int offset = row * mColumns;
+        int runs = 1;
+        for (int column = 1; column < mColumns; column++) {
+            if (mCells[offset + column] != mCells[offset + column - 1]) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Adds all zones of the GeoJSON feature collection. Features must have
+     * the "tzid" property and Polygon or MultiPolygon geometry
+     *
+     * @param input GeoJSON, not closed
+     * @return number of features
+     * @throws IOException if reading fails or input is not a feature collection
+     */
+    @SuppressWarnings("unchecked")
+    public int addGeoJson(Reader input) throws IOException {
+        JsonStreamReader json = new JsonStreamReader(input);
+        int features = 0;
+
+        // features are read one by one, whole file does not fit in memory
+        json.beginObject();
+        while (json.hasNext()) {
+            if (!"features".equals(json.nextName())) {
+                json.skipValue();
+                continue;
+            }
+
+            json.beginArray();
+            while (json.hasNext()) {
+                addFeature((Map<String, Object>) readValue(json));
+                features++;
+            }
+            json.endArray();
+        }
+        json.endObject();
+
+        return features;
+    }
+
+    /**
+     * Reads value, objects are read to Map, arrays to List and numbers to
+     * Double
+     *
+     * @param json reader
+     * @return value
+     * @throws IOException if reading fails
+     */
+    private static Object readValue(JsonStreamReader json) throws IOException {
+        switch (json.peek()) {
+            case BEGIN_OBJECT:
+                Map<String, Object> object = new HashMap<String, Object>();
+                json.beginObject();
+                while (json.hasNext()) {
+                    String name = json.nextName();
+                    object.put(name, readValue(json));
+                }
+                json.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                List<Object> array = new ArrayList<Object>();
+                json.beginArray();
+                while (json.hasNext()) {
+                    array.add(readValue(json));
+                }
+                json.endArray();
+                return array;
+            case STRING:
+                return json.nextString();
+            case NUMBER:
+                return json.nextDouble();
+            case BOOLEAN:
+                return json.nextBoolean();
+            default:
+                json.nextNull();
+                return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addFeature(Map<String, Object> feature) throws IOException {
+        Map<String, Object> properties = (Map<String, Object>) feature.get("properties");
+        Map<String, Object> geometry = (Map<String, Object>) feature.get("geometry");
+        if (properties == null || !(properties.get("tzid") instanceof String) || geometry == null) {
+            throw new IOException("Feature without tzid or geometry");
+        }
+
+        String zoneId = (String) properties.get("tzid");
+        String type = (String) geometry.get("type");
+        List<Object> coordinates = (List<Object>) geometry.get("coordinates");
+        if ("Polygon".equals(type)) {
+            addPolygon(zoneId, toRings(coordinates));
+        } else if ("MultiPolygon".equals(type)) {
+            for (Object polygon : coordinates) {
+                addPolygon(zoneId, toRings((List<Object>) polygon));
+            }
+        } else {
+            throw new IOException("Unsupported geometry " + type + " of " + zoneId);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<double[]> toRings(List<Object> polygon) {
+        List<double[]> rings = new ArrayList<double[]>(polygon.size());
+        for (Object ring : polygon) {
+            List<Object> points = (List<Object>) ring;
+            double[] values = new double[points.size() * 2];
+            for (int i = 0; i < points.size(); i++) {
+                List<Object> point = (List<Object>) points.get(i);
+                values[2 * i] = (Double) point.get(0);
+                values[2 * i + 1] = (Double) point.get(1);
+            }
+            rings.add(values);
+        }
+        return rings;
+    }
+
+    /**
+     * Builds index file
+     *
+     * @param args GeoJSON file, output file and optional number of cells in
+     *             one degree
+     * @throws IOException if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TimeZoneIndexBuilder <input.json> <output> [cells per degree]");
+            System.exit(1);
+        }
+
+        int cellsPerDegree = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CELLS_PER_DEGREE;
+        long start = System.currentTimeMillis();
+        TimeZoneIndexBuilder builder = new TimeZoneIndexBuilder(cellsPerDegree);
+
+        int features;
+        Reader input = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), "UTF-8"));
+        try {
+            features = builder.addGeoJson(input);
+        } finally {
+            input.close();
+        }
+
+        int runs;
+        OutputStream output = new FileOutputStream(args[1]);
+        try {
+            runs = builder.write(output);
+        } finally {
+            output.close();
+        }
+
+        System.out.println(String.format("%d features, %d zones, %d runs, %d ms", features,
+                builder.mZones.size(), runs, System.currentTimeMillis() - start));
+    }
+}
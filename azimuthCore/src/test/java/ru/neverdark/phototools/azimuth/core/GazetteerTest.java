@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks prefix search of the gazetteer, including prefixes matching more
+ * keys than a search looks at
+ */
+public class GazetteerTest {
+    private static final int TOWNS = 3000;
+    private static final int CAPITAL_POPULATION = 10000000;
+
+    @Test
+    public void shortPrefixFindsMostPopulousPlaceBeyondScanLimit() throws IOException {
+        Gazetteer gazetteer = build();
+        assertTrue(gazetteer.getKeyCount() > Gazetteer.MAX_SCAN);
+
+        List<Place> places = find(gazetteer, "a", 3);
+        assertEquals(3, places.size());
+        assertEquals("Azzz Capital", places.get(0).getName());
+        assertEquals(TOWNS - 1, places.get(1).getPopulation());
+        assertEquals(TOWNS - 2, places.get(2).getPopulation());
+    }
+
+    @Test
+    public void placeWithSeveralKeysIsFoundOnce() throws IOException {
+        Gazetteer gazetteer = build();
+
+        List<Place> places = find(gazetteer, "a", Gazetteer.TOP_COUNT);
+        assertEquals(Gazetteer.TOP_COUNT, places.size());
+        int capitals = 0;
+        for (Place place : places) {
+            if (place.getPopulation() == CAPITAL_POPULATION) {
+                capitals++;
+            }
+        }
+        assertEquals(1, capitals);
+    }
+
+    @Test
+    public void longerPrefixIsScanned() throws IOException {
+        Gazetteer gazetteer = build();
+
+        // 1000 keys, fewer than the scan limit
+        List<Place> places = find(gazetteer, "aaa1", 2);
+        assertEquals("Aaa1999", places.get(0).getName());
+        assertEquals("Aaa1998", places.get(1).getName());
+
+        places = find(gazetteer, "aaa0042", 5);
+        assertEquals(1, places.size());
+        assertEquals(42, places.get(0).getPopulation());
+    }
+
+    @Test
+    public void unknownPrefixFindsNothing() throws IOException {
+        Gazetteer gazetteer = build();
+        assertTrue(find(gazetteer, "b", 5).isEmpty());
+        assertTrue(find(gazetteer, "azzz capitals", 5).isEmpty());
+    }
+
+    @Test
+    public void previousFormatIsRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putInt(0, 0x47415a31);
+        try {
+            Gazetteer.read(buffer);
+            fail("GAZ1 must be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static Gazetteer build() throws IOException {
+        GazetteerBuilder builder = new GazetteerBuilder();
+        for (int i = 0; i < TOWNS; i++) {
+            String name = String.format(Locale.US, "Aaa%04d", i);
+            builder.addPlace(name, new String[]{name}, 50, 10, i);
+        }
+        // sorted after all towns, out of reach of the scan for "a"
+        builder.addPlace("Azzz Capital", new String[]{"Azzz Capital", "Azzz Town"}, 51, 11,
+                CAPITAL_POPULATION);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        builder.write(output);
+        return Gazetteer.read(ByteBuffer.wrap(output.toByteArray()));
+    }
+
+    private static List<Place> find(Gazetteer gazetteer, String prefix, int limit) {
+        List<Place> result = new ArrayList<Place>();
+        gazetteer.find(PlaceNames.normalize(prefix), limit, result);
+        return result;
+    }
+}
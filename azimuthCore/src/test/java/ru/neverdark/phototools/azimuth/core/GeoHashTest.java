@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks geohash encoding and that the cover of a bounding box contains
+ * every point of the box
+ */
+public class GeoHashTest {
+    private static final int MAX_CELLS = 8;
+    private static final int BOXES = 2000;
+
+    @Test
+    public void encodeReferenceValues() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeoHash.encode(42.6, -5.6, 5));
+        assertEquals("s0000", GeoHash.encode(0, 0, 5));
+        assertEquals("00000", GeoHash.encode(-90, -180, 5));
+        assertEquals("zzzzz", GeoHash.encode(90, 180, 5));
+    }
+
+    @Test
+    public void encodeRejectsUnsupportedPrecision() {
+        try {
+            GeoHash.encode(0, 0, 0);
+            fail("Precision 0 must fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            GeoHash.encode(0, 0, GeoHash.MAX_PRECISION + 1);
+            fail("Precision above maximum must fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void coverContainsCornersAndInnerPoints() {
+        Random random = new Random(1);
+        for (int i = 0; i < BOXES; i++) {
+            double size = Math.pow(10, random.nextDouble() * 5 - 3);
+            double south = random.nextDouble() * (180 - size) - 90;
+            double west = random.nextDouble() * (360 - size) - 180;
+            double north = south + size * random.nextDouble();
+            double east = west + size;
+
+            List<String> cells = GeoHash.cover(south, west, north, east, 9, MAX_CELLS);
+            assertCover(cells, south, west, north, east, random);
+        }
+    }
+
+    @Test
+    public void coverOfTheEdgesOfTheWorld() {
+        Random random = new Random(2);
+        double[][] boxes = {
+                {-90, -180, 90, 180},
+                {89.99, 179.99, 90, 180},
+                {-90, -180, -89.99, -179.99},
+                {-10, 179.5, 10, 180},
+                {-10, -180, 10, -179.5},
+                {89, -180, 90, 180},
+                {0, 0, 0, 0}
+        };
+        for (double[] box : boxes) {
+            List<String> cells = GeoHash.cover(box[0], box[1], box[2], box[3], 9, MAX_CELLS);
+            assertCover(cells, box[0], box[1], box[2], box[3], random);
+        }
+
+        // the whole world is covered by the first level
+        assertEquals(32, GeoHash.cover(-90, -180, 90, 180, 9, MAX_CELLS).size());
+    }
+
+    @Test
+    public void coverIsClippedToTheWorld() {
+        List<String> clipped = GeoHash.cover(80, 170, 95, 190, 9, MAX_CELLS);
+        assertEquals(GeoHash.cover(80, 170, 90, 180, 9, MAX_CELLS), clipped);
+    }
+
+    @Test
+    public void coverRejectsEmptyBox() {
+        try {
+            GeoHash.cover(10, 20, 5, 30, 9, MAX_CELLS);
+            fail("South above north must fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            GeoHash.cover(0, 30, 10, 20, 9, MAX_CELLS);
+            fail("West east of east must fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks that cells are sorted, unique, of one length, bounded by
+     * maxCells unless they are of the first level, and contain the corners,
+     * the middles of the edges and random points of the box
+     */
+    private static void assertCover(List<String> cells, double south, double west, double north, double east,
+                                    Random random) {
+        String box = south + ", " + west + ", " + north + ", " + east;
+        assertTrue(box, cells.size() > 0);
+        int precision = cells.get(0).length();
+        assertTrue(box + ": " + cells.size() + " cells", cells.size() <= MAX_CELLS || precision == 1);
+        assertEquals(box, cells.size(), new HashSet<String>(cells).size());
+        for (int i = 0; i < cells.size(); i++) {
+            assertEquals(box, precision, cells.get(i).length());
+            if (i > 0) {
+                assertTrue(box, cells.get(i - 1).compareTo(cells.get(i)) < 0);
+            }
+        }
+
+        List<double[]> points = new ArrayList<double[]>();
+        double middleLatitude = (south + north) / 2;
+        double middleLongitude = (west + east) / 2;
+        points.add(new double[]{south, west});
+        points.add(new double[]{south, east});
+        points.add(new double[]{north, west});
+        points.add(new double[]{north, east});
+        points.add(new double[]{south, middleLongitude});
+        points.add(new double[]{north, middleLongitude});
+        points.add(new double[]{middleLatitude, west});
+        points.add(new double[]{middleLatitude, east});
+        for (int i = 0; i < 20; i++) {
+            points.add(new double[]{south + (north - south) * random.nextDouble(),
+                    west + (east - west) * random.nextDouble()});
+        }
+
+        for (double[] point : points) {
+            String hash = GeoHash.encode(point[0], point[1], precision);
+            assertTrue(box + ": point " + point[0] + ", " + point[1] + " with hash " + hash + " is not covered",
+                    cells.contains(hash));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks reading time zones from the Google time zone API responses
+ */
+public class GoogleApiParserTest {
+    private static final long HOUR_MS = 1000 * 60 * 60;
+    /**
+     * 2016-01-15 12:00 UTC, winter time in Europe
+     */
+    private static final long WINTER = 1452859200000L;
+    /**
+     * 2016-07-15 12:00 UTC, summer time in Europe
+     */
+    private static final long SUMMER = 1468584000000L;
+
+    @Test
+    public void knownZoneGivesOffsetsOfEveryDate() throws IOException {
+        // response for a winter timestamp
+        TimeZone timeZone = read("{\"dstOffset\":0,\"rawOffset\":3600,\"status\":\"OK\","
+                + "\"timeZoneId\":\"Europe/Berlin\",\"timeZoneName\":\"Central European Standard Time\"}");
+
+        assertEquals("Europe/Berlin", timeZone.getID());
+        assertEquals(HOUR_MS, timeZone.getOffset(WINTER));
+        assertEquals(2 * HOUR_MS, timeZone.getOffset(SUMMER));
+    }
+
+    @Test
+    public void knownZoneKeepsHistoricalOffsets() throws IOException {
+        // Moscow was +3 with summer time in 2010, +4 in 2012 and +3 since 2014
+        TimeZone timeZone = read("{\"dstOffset\":0,\"rawOffset\":10800,\"status\":\"OK\","
+                + "\"timeZoneId\":\"Europe/Moscow\",\"timeZoneName\":\"Moscow Standard Time\"}");
+
+        assertEquals(3 * HOUR_MS, timeZone.getOffset(WINTER));
+        assertEquals(4 * HOUR_MS, timeZone.getOffset(1326628800000L));
+    }
+
+    @Test
+    public void unknownZoneGetsOffsetOfRequestedTime() throws IOException {
+        TimeZone timeZone = read("{\"dstOffset\":3600,\"rawOffset\":-12600,\"status\":\"OK\","
+                + "\"timeZoneId\":\"Mars/Olympus_Mons\",\"timeZoneName\":\"Olympus Mons Daylight Time\"}");
+
+        assertEquals("Mars/Olympus_Mons", timeZone.getID());
+        assertEquals(-5 * HOUR_MS / 2, timeZone.getOffset(SUMMER));
+        assertTrue(!GoogleApiParser.isKnown(timeZone.getID()));
+    }
+
+    @Test
+    public void responseWithoutZoneGivesNull() throws IOException {
+        assertNull(read("{\"status\":\"ZERO_RESULTS\"}"));
+    }
+
+    private static TimeZone read(String response) throws IOException {
+        return GoogleApiParser.readTimeZone(new StringReader(response));
+    }
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks reading of the location files, the CSV tokenizer and the detection
+ * of malformed files
+ */
+public class LocationFileReaderTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void csvWithoutHeader() throws IOException {
+        List<Location> locations = read("Home,55.75,37.61,2,14.5\nLake,-33.86,151.2\n");
+
+        assertEquals(2, locations.size());
+        assertLocation(locations.get(0), "Home", 55.75, 37.61, 2, 14.5f);
+        assertLocation(locations.get(1), "Lake", -33.86, 151.2, LocationFileReader.NO_MAP_TYPE, Float.NaN);
+    }
+
+    @Test
+    public void csvHeaderReordersColumns() throws IOException {
+        List<Location> locations = read("lng,camera_zoom,Name,lat,map_type\r\n37.61,12,Home,55.75,3\r\n");
+
+        assertEquals(1, locations.size());
+        assertLocation(locations.get(0), "Home", 55.75, 37.61, 3, 12f);
+    }
+
+    @Test
+    public void csvQuotedFields() throws IOException {
+        List<Location> locations = read("\"Bridge, \"\"old\"\"\",10,20\n\"Two\nlines\",30,40\n");
+
+        assertEquals(2, locations.size());
+        assertLocation(locations.get(0), "Bridge, \"old\"", 10, 20, LocationFileReader.NO_MAP_TYPE, Float.NaN);
+        assertLocation(locations.get(1), "Two\nlines", 30, 40, LocationFileReader.NO_MAP_TYPE, Float.NaN);
+    }
+
+    @Test
+    public void csvByteOrderMarkAndEmptyLines() throws IOException {
+        List<Location> locations = read("\uFEFFname,latitude,longitude\n\nHome,1,2\n\r\n");
+
+        assertEquals(1, locations.size());
+        assertLocation(locations.get(0), "Home", 1, 2, LocationFileReader.NO_MAP_TYPE, Float.NaN);
+    }
+
+    @Test
+    public void csvUnnamedLocationIsNamedByCoordinates() throws IOException {
+        List<Location> locations = read(" ,55.5,37.25\n");
+
+        assertEquals("55.50000, 37.25000", locations.get(0).mName);
+    }
+
+    @Test
+    public void csvMalformed() {
+        // the first line with a latitude which is not a number is a header
+        assertMalformed("Home,10,20\nLake,abc,20\n", "Wrong coordinates in line 2");
+        assertMalformed("Home,10\n", "Wrong coordinates in line 1");
+        assertMalformed("Home,10,20\nLake,90.5,20\n", "Wrong coordinates in line 2");
+        assertMalformed("Home,10,20\nLake,-10,-180.1\n", "Wrong coordinates in line 2");
+        assertMalformed("Home,NaN,20\n", "Wrong coordinates in line 1");
+        assertMalformed("Home,10,20,99999999999\n", "Wrong map type in line 1");
+        assertMalformed("Home,10,20,hybrid\n", "Wrong map type in line 1");
+        assertMalformed("\"Home,10,20\n", "Unterminated quoted field");
+    }
+
+    @Test
+    public void csvCoordinatesAtTheEdges() throws IOException {
+        List<Location> locations = read("North,90,180\nSouth,-90,-180\n");
+
+        assertEquals(2, locations.size());
+        assertLocation(locations.get(1), "South", -90, -180, LocationFileReader.NO_MAP_TYPE, Float.NaN);
+    }
+
+    @Test
+    public void gpxWaypoints() throws IOException {
+        List<Location> locations = read("<?xml version=\"1.0\"?>\n"
+                + "<gpx xmlns=\"http://www.topografix.com/GPX/1/1\">"
+                + "<wpt lat=\"55.75\" lon=\"37.61\"><name>Home &amp; garden</name>"
+                + "<link href=\"http://example.com\"><text>link</text></link></wpt>"
+                + "<wpt lat=\"-33.86\" lon=\"151.2\"/>"
+                + "<trk><name>Track</name><trkseg><trkpt lat=\"1\" lon=\"2\"/></trkseg></trk>"
+                + "</gpx>");
+
+        assertEquals(2, locations.size());
+        assertLocation(locations.get(0), "Home & garden", 55.75, 37.61, LocationFileReader.NO_MAP_TYPE, Float.NaN);
+        assertLocation(locations.get(1), "-33.86000, 151.20000", -33.86, 151.2, LocationFileReader.NO_MAP_TYPE,
+                Float.NaN);
+    }
+
+    @Test
+    public void kmlPlacemarksWithPoints() throws IOException {
+        List<Location> locations = read("<?xml version=\"1.0\"?>\n"
+                + "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document><name>Saved</name>"
+                + "<Placemark><name>Tower</name><Point><coordinates> 37.61,55.75,120 </coordinates></Point>"
+                + "</Placemark>"
+                + "<Placemark><name>Road</name><LineString><coordinates>1,2 3,4</coordinates></LineString>"
+                + "</Placemark>"
+                + "</Document></kml>");
+
+        assertEquals(1, locations.size());
+        assertLocation(locations.get(0), "Tower", 55.75, 37.61, LocationFileReader.NO_MAP_TYPE, Float.NaN);
+    }
+
+    @Test
+    public void xmlMalformed() {
+        assertMalformed("<?xml version=\"1.0\"?><gpx><wpt lat=\"10\"></wpt></gpx>", "Wrong waypoint coordinates");
+        assertMalformed("<?xml version=\"1.0\"?><gpx><wpt lat=\"91\" lon=\"10\"></wpt></gpx>",
+                "Wrong waypoint coordinates");
+        assertMalformed("<?xml version=\"1.0\"?><kml><Placemark><Point><coordinates>181,10</coordinates>"
+                + "</Point></Placemark></kml>", "Wrong coordinates");
+        assertMalformed("<?xml version=\"1.0\"?><gpx><wpt lat=\"1\" lon=\"2\">", "Malformed file");
+    }
+
+    @Test
+    public void listenerFailureIsPassedThrough() {
+        final IOException failure = new IOException("disk full");
+        try {
+            LocationFileReader.read(open("<?xml version=\"1.0\"?><gpx><wpt lat=\"1\" lon=\"2\"/></gpx>"),
+                    new LocationFileReader.OnLocationListener() {
+                        @Override
+                        public void onLocation(String name, double latitude, double longitude, int mapType,
+                                               float cameraZoom) throws IOException {
+                            throw failure;
+                        }
+                    });
+            fail("Failure of the listener must be thrown");
+        } catch (IOException e) {
+            assertTrue(e == failure);
+        }
+    }
+
+    static List<Location> read(String content) throws IOException {
+        final List<Location> locations = new ArrayList<Location>();
+        int count = LocationFileReader.read(open(content), new LocationFileReader.OnLocationListener() {
+            @Override
+            public void onLocation(String name, double latitude, double longitude, int mapType, float cameraZoom) {
+                locations.add(new Location(name, latitude, longitude, mapType, cameraZoom));
+            }
+        });
+        assertEquals(locations.size(), count);
+        return locations;
+    }
+
+    private static ByteArrayInputStream open(String content) throws IOException {
+        return new ByteArrayInputStream(content.getBytes("UTF-8"));
+    }
+
+    private static void assertMalformed(String content, String message) {
+        try {
+            read(content);
+            fail("Malformed file must fail: " + content);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    static void assertLocation(Location location, String name, double latitude, double longitude, int mapType,
+                               float cameraZoom) {
+        assertEquals(name, location.mName);
+        assertEquals(latitude, location.mLatitude, DELTA);
+        assertEquals(longitude, location.mLongitude, DELTA);
+        assertEquals(mapType, location.mMapType);
+        assertEquals(cameraZoom, location.mCameraZoom, 0);
+    }
+
+    /**
+     * Location passed to the listener
+     */
+    static class Location {
+        private final String mName;
+        private final double mLatitude;
+        private final double mLongitude;
+        private final int mMapType;
+        private final float mCameraZoom;
+
+        private Location(String name, double latitude, double longitude, int mapType, float cameraZoom) {
+            mName = name;
+            mLatitude = latitude;
+            mLongitude = longitude;
+            mMapType = mapType;
+            mCameraZoom = cameraZoom;
+        }
+    }
+}
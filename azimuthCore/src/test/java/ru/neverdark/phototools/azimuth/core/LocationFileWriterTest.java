@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that written files are read back by LocationFileReader without
+ * losing locations
+ */
+public class LocationFileWriterTest {
+    /**
+     * Names with the characters which must be quoted or escaped
+     */
+    private static final String[] NAMES = {"Home", "Bridge, \"old\"", "Two\nlines", "Rock & <Roll>",
+            "\u041e\u0437\u0435\u0440\u043e"};
+
+    @Test
+    public void csvRoundTrip() throws IOException {
+        String content = write(LocationFileFormat.CSV);
+        assertTrue(content.startsWith("name,latitude,longitude,map_type,camera_zoom\r\n"));
+
+        List<LocationFileReaderTest.Location> locations = LocationFileReaderTest.read(content);
+        assertEquals(NAMES.length, locations.size());
+        for (int i = 0; i < NAMES.length; i++) {
+            LocationFileReaderTest.assertLocation(locations.get(i), NAMES[i], getLatitude(i), getLongitude(i),
+                    i % 4 + 1, 10 + i);
+        }
+    }
+
+    @Test
+    public void gpxRoundTrip() throws IOException {
+        String content = write(LocationFileFormat.GPX);
+
+        List<LocationFileReaderTest.Location> locations = LocationFileReaderTest.read(content);
+        assertEquals(NAMES.length, locations.size());
+        for (int i = 0; i < NAMES.length; i++) {
+            // GPX has no map type and zoom
+            LocationFileReaderTest.assertLocation(locations.get(i), NAMES[i], getLatitude(i), getLongitude(i),
+                    LocationFileReader.NO_MAP_TYPE, Float.NaN);
+        }
+    }
+
+    @Test
+    public void emptyFilesAreRead() throws IOException {
+        StringWriter csv = new StringWriter();
+        LocationFileWriter.create(LocationFileFormat.CSV, csv).close();
+        assertEquals(0, LocationFileReaderTest.read(csv.toString()).size());
+
+        StringWriter gpx = new StringWriter();
+        LocationFileWriter.create(LocationFileFormat.GPX, gpx).close();
+        assertEquals(0, LocationFileReaderTest.read(gpx.toString()).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void kmlIsNotWritten() throws IOException {
+        LocationFileWriter.create(LocationFileFormat.KML, new StringWriter());
+    }
+
+    private static String write(LocationFileFormat format) throws IOException {
+        StringWriter output = new StringWriter();
+        LocationFileWriter writer = LocationFileWriter.create(format, output);
+        for (int i = 0; i < NAMES.length; i++) {
+            writer.write(NAMES[i], getLatitude(i), getLongitude(i), i % 4 + 1, 10 + i);
+        }
+        writer.close();
+        return output.toString();
+    }
+
+    /**
+     * @return latitude with seven decimals, the precision of the files
+     */
+    private static double getLatitude(int index) {
+        return -89.1234567 + index * 40;
+    }
+
+    private static double getLongitude(int index) {
+        return 179.7654321 - index * 80;
+    }
+}
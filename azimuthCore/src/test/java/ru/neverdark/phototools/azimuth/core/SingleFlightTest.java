@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that concurrent callers with one key share one execution
+ */
+public class SingleFlightTest {
+    private static final int THREADS = 16;
+    private static final long TIMEOUT_S = 10;
+
+    @Test
+    public void concurrentCallersShareResult() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+        Object result = new Object();
+        GatedCall call = new GatedCall(result, null);
+
+        Caller[] callers = startCallers(flight, call);
+        call.mRelease.countDown();
+        joinCallers(callers);
+
+        assertEquals(1, call.mExecutions.get());
+        assertEquals(1, flight.getExecutionCount());
+        assertEquals(THREADS - 1, flight.getSharedCount());
+        for (Caller caller : callers) {
+            assertSame(result, caller.mResult);
+            assertEquals(null, caller.mError);
+        }
+    }
+
+    @Test
+    public void concurrentCallersShareException() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+        IOException error = new IOException("load failed");
+        GatedCall call = new GatedCall(null, error);
+
+        Caller[] callers = startCallers(flight, call);
+        call.mRelease.countDown();
+        joinCallers(callers);
+
+        assertEquals(1, call.mExecutions.get());
+        for (Caller caller : callers) {
+            assertSame(error, caller.mError);
+            assertEquals(null, caller.mResult);
+        }
+    }
+
+    @Test
+    public void finishedCallIsNotReused() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+        GatedCall call = new GatedCall(new Object(), null);
+        call.mRelease.countDown();
+
+        flight.join("key", call).get();
+        flight.join("key", call).get();
+
+        assertEquals(2, call.mExecutions.get());
+        assertEquals(0, flight.getSharedCount());
+    }
+
+    @Test
+    public void leavingCallerDoesNotAbortOthers() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+        Object result = new Object();
+        GatedCall call = new GatedCall(result, null);
+
+        Caller[] callers = startCallers(flight, call);
+        Caller leaving = callers[THREADS - 1];
+        leaving.mTicket.leave();
+        call.mRelease.countDown();
+        joinCallers(callers);
+
+        assertEquals(0, call.mAborts.get());
+        assertTrue(leaving.mError instanceof CancellationException);
+        for (int i = 0; i < THREADS - 1; i++) {
+            assertSame(result, callers[i].mResult);
+        }
+    }
+
+    @Test
+    public void lastLeavingCallerAbortsCall() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+        GatedCall call = new GatedCall(new Object(), null);
+
+        Caller[] callers = startCallers(flight, call);
+        for (Caller caller : callers) {
+            caller.mTicket.leave();
+        }
+        assertEquals(1, call.mAborts.get());
+
+        // a new caller does not join the aborted call
+        GatedCall next = new GatedCall(new Object(), null);
+        next.mRelease.countDown();
+        flight.join("key", next).get();
+        assertEquals(1, next.mExecutions.get());
+
+        call.mRelease.countDown();
+        joinCallers(callers);
+        for (Caller caller : callers) {
+            assertTrue(caller.mError instanceof CancellationException);
+        }
+    }
+
+    /**
+     * Starts the callers and waits until all of them have joined, the call
+     * is blocked until its release latch is opened
+     */
+    private static Caller[] startCallers(SingleFlight<String, Object> flight, GatedCall call)
+            throws InterruptedException {
+        CountDownLatch joined = new CountDownLatch(THREADS);
+        Caller[] callers = new Caller[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            callers[i] = new Caller(flight, call, joined);
+            callers[i].start();
+        }
+
+        assertTrue("callers have not joined", joined.await(TIMEOUT_S, TimeUnit.SECONDS));
+        assertTrue("call has not started", call.mStarted.await(TIMEOUT_S, TimeUnit.SECONDS));
+        return callers;
+    }
+
+    private static void joinCallers(Caller[] callers) throws InterruptedException {
+        for (Caller caller : callers) {
+            caller.join(TimeUnit.SECONDS.toMillis(TIMEOUT_S));
+            if (caller.isAlive()) {
+                fail("caller is still waiting");
+            }
+        }
+    }
+
+    /**
+     * Call blocked until the release latch is opened
+     */
+    private static class GatedCall implements SingleFlight.Call<Object> {
+        private final CountDownLatch mStarted = new CountDownLatch(1);
+        private final CountDownLatch mRelease = new CountDownLatch(1);
+        private final AtomicInteger mExecutions = new AtomicInteger();
+        private final AtomicInteger mAborts = new AtomicInteger();
+        private final Object mResult;
+        private final Exception mError;
+
+        private GatedCall(Object result, Exception error) {
+            mResult = result;
+            mError = error;
+        }
+
+        @Override
+        public Object execute() throws Exception {
+            mExecutions.incrementAndGet();
+            mStarted.countDown();
+            if (!mRelease.await(TIMEOUT_S, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("call was not released");
+            }
+            if (mError != null) {
+                throw mError;
+            }
+            return mResult;
+        }
+
+        @Override
+        public void abort() {
+            mAborts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Thread joining the call and keeping the result or the exception
+     */
+    private static class Caller extends Thread {
+        private final SingleFlight<String, Object> mFlight;
+        private final GatedCall mCall;
+        private final CountDownLatch mJoined;
+        private volatile SingleFlight<String, Object>.Ticket mTicket;
+        private volatile Object mResult;
+        private volatile Exception mError;
+
+        private Caller(SingleFlight<String, Object> flight, GatedCall call, CountDownLatch joined) {
+            mFlight = flight;
+            mCall = call;
+            mJoined = joined;
+        }
+
+        @Override
+        public void run() {
+            mTicket = mFlight.join("key", mCall);
+            mJoined.countDown();
+            try {
+                mResult = mTicket.get();
+            } catch (Exception e) {
+                mError = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the interpolation error of SunEphemeris against SunMath over a full
+ * year
+ */
+public class SunEphemerisTest {
+    private static final int YEAR = 2016;
+    /**
+     * Step of the checked times, not a divisor of the table step so every
+     * position between the table values is checked
+     */
+    private static final long CHECK_STEP_MS = 1000 * 60 * 7 + 1234;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    @Test
+    public void interpolationErrorIsBounded() {
+        SunEphemeris ephemeris = new SunEphemeris(YEAR);
+        SunCoords expected = new SunCoords();
+        SunCoords actual = new SunCoords();
+        double maxDeclinationError = 0;
+        double maxRightAscensionError = 0;
+        double maxEquationOfTimeError = 0;
+
+        for (long time = getYearStart(YEAR); time < getYearStart(YEAR + 1); time += CHECK_STEP_MS) {
+            double d = SunMath.toDays(time);
+            SunMath.getSunCoords(d, expected);
+            ephemeris.getSunCoords(time, actual);
+
+            maxDeclinationError = Math.max(maxDeclinationError,
+                    Math.abs(actual.getDeclination() - expected.getDeclination()));
+            double raError = actual.getRightAscension() - expected.getRightAscension();
+            raError -= TWO_PI * Math.rint(raError / TWO_PI);
+            maxRightAscensionError = Math.max(maxRightAscensionError, Math.abs(raError));
+            maxEquationOfTimeError = Math.max(maxEquationOfTimeError,
+                    Math.abs(ephemeris.getEquationOfTime(time) - getEquationOfTime(d, expected)));
+        }
+
+        assertTrue("declination error " + maxDeclinationError,
+                maxDeclinationError < SunEphemeris.MAX_ANGLE_ERROR);
+        assertTrue("right ascension error " + maxRightAscensionError,
+                maxRightAscensionError < SunEphemeris.MAX_ANGLE_ERROR);
+        assertTrue("equation of time error " + maxEquationOfTimeError,
+                maxEquationOfTimeError < SunEphemeris.MAX_EQUATION_OF_TIME_ERROR);
+    }
+
+    @Test
+    public void cacheAnswersFromTheTableOfTheYear() {
+        SunEphemerisCache cache = new SunEphemerisCache(1);
+        long lastMoment = getYearStart(YEAR + 1) - 1;
+        long nextYear = getYearStart(YEAR + 1);
+
+        assertEquals(YEAR, cache.getEphemeris(lastMoment).getYear());
+        assertEquals(YEAR + 1, cache.getEphemeris(nextYear).getYear());
+
+        SunCoords expected = SunMath.getSunCoords(SunMath.toDays(nextYear), new SunCoords());
+        SunCoords actual = cache.getSunCoords(nextYear, new SunCoords());
+        assertEquals(expected.getDeclination(), actual.getDeclination(), SunEphemeris.MAX_ANGLE_ERROR);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void timeOutsideTheYearIsRejected() {
+        new SunEphemeris(YEAR).getEquationOfTime(getYearStart(YEAR + 1));
+    }
+
+    /**
+     * Equation of time calculated the way the table does, without
+     * interpolation
+     */
+    private static double getEquationOfTime(double d, SunCoords coords) {
+        double meanLongitude = SunMath.getSolarMeanAnomaly(d) + SunMath.rad * 102.9372 + Math.PI;
+        double equationOfTime = meanLongitude - coords.getRightAscension();
+        equationOfTime -= TWO_PI * Math.rint(equationOfTime / TWO_PI);
+        return equationOfTime * 24 * 60 / TWO_PI;
+    }
+
+    private static long getYearStart(int year) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1);
+        return calendar.getTimeInMillis();
+    }
+}
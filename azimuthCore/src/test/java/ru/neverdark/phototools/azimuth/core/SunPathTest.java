@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks samples and hour marks of the sun path, including the days of the
+ * daylight saving time changes
+ */
+public class SunPathTest {
+
+    @Test
+    public void samplesCoverTheDay() {
+        TimeZone timeZone = TimeZone.getTimeZone("Europe/Moscow");
+        long start = getMidnight(timeZone, 2016, Calendar.JUNE, 21);
+        long end = getMidnight(timeZone, 2016, Calendar.JUNE, 22);
+        SunPath path = compute(55.75, 37.62, timeZone, start, end);
+
+        assertTrue(path.getCount() <= SunPath.MAX_SAMPLES);
+        assertEquals(start, path.getTime(0));
+        assertEquals(end, path.getTime(path.getCount() - 1));
+        for (int i = 1; i < path.getCount(); i++) {
+            assertTrue(path.getTime(i) > path.getTime(i - 1));
+        }
+    }
+
+    @Test
+    public void hoursOfOrdinaryDay() {
+        checkHours("Europe/Berlin", 2016, Calendar.JUNE, 21, 24);
+    }
+
+    @Test
+    public void hoursOfWholeHourChanges() {
+        checkHours("Europe/Berlin", 2016, Calendar.MARCH, 27, 23);
+        checkHours("Europe/Berlin", 2016, Calendar.OCTOBER, 30, 25);
+    }
+
+    @Test
+    public void hoursOfHalfHourChanges() {
+        // clocks move from 2:00 to 2:30, there is no 2:00
+        checkHours("Australia/Lord_Howe", 2016, Calendar.OCTOBER, 2, 23);
+        // clocks move from 2:00 back to 1:30, 2:00 comes once
+        checkHours("Australia/Lord_Howe", 2016, Calendar.APRIL, 3, 24);
+    }
+
+    private static void checkHours(String timeZoneId, int year, int month, int day, int hourCount) {
+        TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+        long start = getMidnight(timeZone, year, month, day);
+        long end = getMidnight(timeZone, year, month, day + 1);
+        SunPath path = compute(-31.55, 159.08, timeZone, start, end);
+
+        assertEquals(timeZoneId + " " + (month + 1) + "/" + day, hourCount, path.getHourCount());
+        Calendar calendar = Calendar.getInstance(timeZone);
+        for (int i = 0; i < path.getHourCount(); i++) {
+            long time = path.getHourTime(i);
+            calendar.setTimeInMillis(time);
+            assertEquals(0, calendar.get(Calendar.MINUTE));
+            assertEquals(0, calendar.get(Calendar.SECOND));
+            assertTrue(time >= start && time < end);
+            if (i > 0) {
+                assertTrue(time > path.getHourTime(i - 1));
+            }
+        }
+    }
+
+    private static SunPath compute(double latitude, double longitude, TimeZone timeZone, long start, long end) {
+        SunPath path = new SunPath();
+        path.compute(new PreparedSunCalculator(latitude, longitude, timeZone), start, end);
+        return path;
+    }
+
+    private static long getMidnight(TimeZone timeZone, int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTimeInMillis();
+    }
+}
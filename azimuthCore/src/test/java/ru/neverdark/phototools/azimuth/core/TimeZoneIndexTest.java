@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.core;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks TimeZoneIndex built from a synthetic GeoJSON at known boundary
+ * points. With 20 cells per degree the cell edges are at multiples of 0.05
+ * degree, every cell gets the zone of its center
+ */
+public class TimeZoneIndexTest {
+    private static final double EPSILON = 1e-9;
+    /**
+     * Berlin and Warsaw share the border at longitude 10, on a cell edge.
+     * Rome is south of Berlin with the border at latitude 40.03, inside the
+     * row of cells from 40 to 40.05 with the centers at 40.025. Berlin has a
+     * hole, Vilnius is added later and overlaps Warsaw
+     */
+    private static final String GEO_JSON = "{\"type\":\"FeatureCollection\",\"features\":["
+            + feature("Europe/Berlin", "[[[0,40.03],[10,40.03],[10,50],[0,50],[0,40.03]],"
+            + "[[2,42],[3,42],[3,43],[2,43],[2,42]]]")
+            + "," + feature("Europe/Warsaw", "[[[10,40],[20,40],[20,50],[10,50],[10,40]]]")
+            + "," + feature("Europe/Rome", "[[[0,35],[10,35],[10,40.03],[0,40.03],[0,35]]]")
+            + "," + feature("Europe/Vilnius", "[[[15,45],[16,45],[16,46],[15,46],[15,45]]]")
+            + "]}";
+
+    private static TimeZoneIndex mIndex;
+
+    private static String feature(String zoneId, String polygon) {
+        return "{\"type\":\"Feature\",\"properties\":{\"tzid\":\"" + zoneId + "\"},"
+                + "\"geometry\":{\"type\":\"Polygon\",\"coordinates\":" + polygon + "}}";
+    }
+
+    @BeforeClass
+    public static void buildIndex() throws IOException {
+        TimeZoneIndexBuilder builder = new TimeZoneIndexBuilder(TimeZoneIndexBuilder.DEFAULT_CELLS_PER_DEGREE);
+        assertEquals(4, builder.addGeoJson(new StringReader(GEO_JSON)));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        builder.write(output);
+        mIndex = TimeZoneIndex.read(ByteBuffer.wrap(output.toByteArray()));
+    }
+
+    @Test
+    public void zonesCount() {
+        assertEquals(4, mIndex.getZoneCount());
+    }
+
+    @Test
+    public void bothSidesOfTheBorder() {
+        assertEquals("Europe/Berlin", mIndex.getTimeZoneId(45, 9.9));
+        assertEquals("Europe/Warsaw", mIndex.getTimeZoneId(45, 10.1));
+        assertEquals("Europe/Berlin", mIndex.getTimeZoneId(40.1, 5));
+        assertEquals("Europe/Rome", mIndex.getTimeZoneId(39.9, 5));
+    }
+
+    @Test
+    public void borderOnCellEdge() {
+        assertEquals("Europe/Berlin", mIndex.getTimeZoneId(45, 10 - EPSILON));
+        assertEquals("Europe/Warsaw", mIndex.getTimeZoneId(45, 10 + EPSILON));
+        // last and first cells of the zones touching the border
+        assertEquals("Europe/Berlin", mIndex.getTimeZoneId(45, 9.95 + EPSILON));
+        assertEquals("Europe/Warsaw", mIndex.getTimeZoneId(45, 10.05 - EPSILON));
+    }
+
+    @Test
+    public void borderInsideCell() {
+        // the cell from 40 to 40.05 has its center in Rome, so the Berlin part of it is in Rome too
+        assertEquals("Europe/Rome", mIndex.getTimeZoneId(40 + EPSILON, 5));
+        assertEquals("Europe/Rome", mIndex.getTimeZoneId(40.04, 5));
+        assertEquals("Europe/Berlin", mIndex.getTimeZoneId(40.05 + EPSILON, 5));
+    }
+
+    @Test
+    public void holeAndOverlap() {
+        assertNull(mIndex.getTimeZoneId(42.5, 2.5));
+        assertEquals("Europe/Berlin", mIndex.getTimeZoneId(42.5, 3.1));
+        assertEquals("Europe/Vilnius", mIndex.getTimeZoneId(45.5, 15.5));
+        assertEquals("Europe/Warsaw", mIndex.getTimeZoneId(45.5, 16.1));
+    }
+
+    @Test
+    public void outsideOfZonesAndWorldEdges() {
+        assertNull(mIndex.getTimeZoneId(0, 0));
+        assertNull(mIndex.getTimeZoneId(90, 180));
+        assertNull(mIndex.getTimeZoneId(-90, -180));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedIndexIsRejected() throws IOException {
+        TimeZoneIndexBuilder builder = new TimeZoneIndexBuilder(1);
+        builder.addGeoJson(new StringReader(GEO_JSON));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        builder.write(output);
+        byte[] data = output.toByteArray();
+
+        TimeZoneIndex.read(ByteBuffer.wrap(Arrays.copyOf(data, data.length / 2)));
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import ru.neverdark.phototools.azimuth.core.DatabaseSchema;
+
+/**
+ * In-memory SQLite database with the schema of the application and generated
+ * locations. Statements run through JDBC, the bundled SQLite is about the
+ * version of the devices, and the database is not analyzed, like on the
+ * devices. Locations are grouped around the benchmark locations, like spots
+ * saved around the visited places, a fifth of them is spread over the whole
+ * world
+ */
+class BenchmarkDatabase {
+    /**
+     * Words of the generated names, for the search benchmarks
+     */
+    static final String[] WORDS = {"Lake", "River", "Bridge", "Tower", "Hill", "Forest", "Church", "Beach",
+            "Castle", "Harbor", "Old", "North", "South", "Park", "Valley", "Mill"};
+    /**
+     * Spread of the locations around the benchmark locations, in degrees
+     */
+    static final double SPREAD = 2;
+    private static final long SEED = 42;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Creates database of the current schema version
+     *
+     * @param rows number of locations
+     * @return connection to the database
+     * @throws SQLException if the database cannot be created
+     */
+    static Connection create(int rows) throws SQLException {
+        return create(DatabaseSchema.VERSION, rows);
+    }
+
+    /**
+     * Creates database of the schema version
+     *
+     * @param version 1 for the table without indexes or the current version
+     * @param rows    number of locations
+     * @return connection to the database
+     * @throws SQLException if the database cannot be created
+     */
+    static Connection create(int version, int rows) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(DatabaseSchema.CREATE_LOCATIONS_QUERY);
+            for (int i = 2; i <= version; i++) {
+                for (String query : DatabaseSchema.getMigration(i)) {
+                    statement.execute(query);
+                }
+            }
+        } finally {
+            statement.close();
+        }
+
+        boolean isComputed = version == DatabaseSchema.VERSION;
+        connection.setAutoCommit(false);
+        PreparedStatement insert = connection.prepareStatement(isComputed
+                ? "insert into locations (location_name, latitude, longitude, last_access, map_type, camera_zoom,"
+                + " geohash, search_name) values (?, ?, ?, ?, 1, 14, ?, ?);"
+                : "insert into locations (location_name, latitude, longitude, last_access, map_type, camera_zoom)"
+                + " values (?, ?, ?, ?, 1, 14);");
+        try {
+            Random random = new Random(SEED);
+            BenchmarkLocation[] centers = BenchmarkLocation.values();
+            for (int i = 0; i < rows; i++) {
+                double latitude;
+                double longitude;
+                if (i % 5 == 0) {
+                    latitude = random.nextDouble() * 170 - 85;
+                    longitude = random.nextDouble() * 360 - 180;
+                } else {
+                    BenchmarkLocation center = centers[random.nextInt(centers.length)];
+                    latitude = center.getLatitude() + (random.nextDouble() * 2 - 1) * SPREAD;
+                    longitude = center.getLongitude() + (random.nextDouble() * 2 - 1) * SPREAD;
+                }
+                String name = getName(i);
+
+                insert.setString(1, name);
+                insert.setDouble(2, latitude);
+                insert.setDouble(3, longitude);
+                insert.setLong(4, random.nextInt(rows));
+                if (isComputed) {
+                    insert.setString(5, DatabaseSchema.getGeohash(latitude, longitude));
+                    insert.setString(6, DatabaseSchema.getSearchName(name));
+                }
+                insert.executeUpdate();
+            }
+        } finally {
+            insert.close();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        return connection;
+    }
+
+    /**
+     * Gets name of the generated location, names are unique
+     *
+     * @param index index of the location
+     * @return name
+     */
+    static String getName(int index) {
+        return WORDS[index % WORDS.length] + " " + WORDS[index / WORDS.length % WORDS.length] + " " + index;
+    }
+
+    /**
+     * Reads rows of the location query the way readLocation of the
+     * application does
+     *
+     * @param statement prepared location query with bound arguments
+     * @return number of rows
+     * @throws SQLException if the query fails
+     */
+    static int readLocations(PreparedStatement statement) throws SQLException {
+        ResultSet resultSet = statement.executeQuery();
+        try {
+            int count = 0;
+            while (resultSet.next()) {
+                resultSet.getLong(1);
+                resultSet.getString(2);
+                resultSet.getDouble(3);
+                resultSet.getDouble(4);
+                resultSet.getLong(5);
+                resultSet.getInt(6);
+                resultSet.getFloat(7);
+                count++;
+            }
+            return count;
+        } finally {
+            resultSet.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.benchmark;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Fixed set of locations and dates used by all benchmarks, so results can be
+ * compared between releases
+ */
+public enum BenchmarkLocation {
+    EQUATOR(0, 0, "UTC"),
+    MOSCOW(55.7558, 37.6173, "Europe/Moscow"),
+    NEW_YORK(40.7128, -74.0060, "America/New_York"),
+    SYDNEY(-33.8688, 151.2093, "Australia/Sydney"),
+    // polar day and polar night
+    TROMSO(69.6492, 18.9553, "Europe/Oslo");
+
+    private static final int YEAR = 2016;
+    private static final int DATES_COUNT = 24;
+
+    private final double mLatitude;
+    private final double mLongitude;
+    private final String mTimeZoneId;
+
+    BenchmarkLocation(double latitude, double longitude, String timeZoneId) {
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mTimeZoneId = timeZoneId;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public TimeZone getTimeZone() {
+        return TimeZone.getTimeZone(mTimeZoneId);
+    }
+
+    /**
+     * Creates calendars for the benchmark dates: the 1st and the 15th of every
+     * month at 09:30 local time
+     *
+     * @return calendars in the time zone of location
+     */
+    public Calendar[] createCalendars() {
+        Calendar[] calendars = new Calendar[DATES_COUNT];
+        for (int i = 0; i < DATES_COUNT; i++) {
+            Calendar calendar = Calendar.getInstance(getTimeZone());
+            calendar.clear();
+            calendar.set(YEAR, i / 2, i % 2 == 0 ? 1 : 15, 9, 30);
+            calendars[i] = calendar;
+        }
+
+        return calendars;
+    }
+
+    /**
+     * Creates times for the benchmark dates
+     *
+     * @return times in milliseconds
+     * @see #createCalendars()
+     */
+    public long[] createTimes() {
+        Calendar[] calendars = createCalendars();
+        long[] times = new long[calendars.length];
+        for (int i = 0; i < calendars.length; i++) {
+            times[i] = calendars[i].getTimeInMillis();
+        }
+
+        return times;
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.TimeZone;
+
+import ru.neverdark.phototools.azimuth.core.GoogleApiParser;
+
+/**
+ * Benchmark for reading Google API responses: the streaming extraction used
+ * by the application against the previous way, reading the whole response to
+ * a string and building the JSONObject tree. Responses are fixtures in the
+ * format of the geocoding and time zone APIs, the geocoding one has twelve
+ * results like a search for an ambiguous name
+ */
+@State(Scope.Thread)
+public class GoogleApiParserBenchmark {
+    private byte[] mGeocodeResponse;
+    private byte[] mTimeZoneResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        mGeocodeResponse = readResource("geocode_response.json");
+        mTimeZoneResponse = readResource("timezone_response.json");
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        InputStream input = GoogleApiParserBenchmark.class.getResourceAsStream(name);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static Reader open(byte[] response) throws IOException {
+        return new InputStreamReader(new ByteArrayInputStream(response), "UTF-8");
+    }
+
+    /**
+     * Previous way of reading response, line by line to a string
+     */
+    private static String readString(byte[] response) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        BufferedReader reader = new BufferedReader(open(response));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            builder.append(line);
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    public double[] geocodeStreaming() throws IOException {
+        return GoogleApiParser.readGeocodeLocation(open(mGeocodeResponse));
+    }
+
+    @Benchmark
+    public double[] geocodeJsonObject() throws IOException, JSONException {
+        JSONObject jsonObject = new JSONObject(readString(mGeocodeResponse));
+        JSONArray jsonArray = (JSONArray) jsonObject.get("results");
+        JSONObject jsonLocation = jsonArray.getJSONObject(0)
+                .getJSONObject("geometry").getJSONObject("location");
+        return new double[]{jsonLocation.getDouble("lat"), jsonLocation.getDouble("lng")};
+    }
+
+    @Benchmark
+    public TimeZone timeZoneStreaming() throws IOException {
+        return GoogleApiParser.readTimeZone(open(mTimeZoneResponse));
+    }
+
+    @Benchmark
+    public TimeZone timeZoneJsonObject() throws IOException, JSONException {
+        JSONObject jsonObject = new JSONObject(readString(mTimeZoneResponse));
+        TimeZone timeZone = TimeZone.getTimeZone(jsonObject.getString("timeZoneId"));
+        timeZone.setRawOffset(Integer.valueOf(jsonObject.getString("rawOffset")) * 1000);
+        return timeZone;
+    }
+}
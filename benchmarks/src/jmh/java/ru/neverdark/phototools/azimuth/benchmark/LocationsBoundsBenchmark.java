@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.neverdark.phototools.azimuth.core.DatabaseSchema;
+
+/**
+ * Benchmark for the viewport query of LocationsDbAdapter.fetchLocationsInBounds.
+ * The full table scan is the same query on the database without the geohash
+ * index. Viewports are the map at the street, the city and the region zoom
+ * around every benchmark location, and one crossing the 180th meridian
+ */
+@State(Scope.Thread)
+public class LocationsBoundsBenchmark {
+    /**
+     * Maximum number of markers shown at once
+     */
+    private static final int LIMIT = 200;
+    /**
+     * Half sizes of the viewports in degrees
+     */
+    private static final double[] SIZES = {0.01, 0.1, 1};
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private Connection mConnection;
+    private Connection mConnectionWithoutIndex;
+    private List<double[]> mViewports;
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws SQLException {
+        mConnection = BenchmarkDatabase.create(rows);
+        mConnectionWithoutIndex = BenchmarkDatabase.create(rows);
+        Statement statement = mConnectionWithoutIndex.createStatement();
+        try {
+            statement.execute("drop index locations_geohash;");
+        } finally {
+            statement.close();
+        }
+
+        mViewports = new ArrayList<double[]>();
+        for (BenchmarkLocation location : BenchmarkLocation.values()) {
+            for (double size : SIZES) {
+                mViewports.add(new double[]{location.getLatitude() - size, location.getLongitude() - size,
+                        location.getLatitude() + size, location.getLongitude() + size});
+            }
+        }
+        mViewports.add(new double[]{-20, 175, -15, -175});
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mConnection.close();
+        mConnectionWithoutIndex.close();
+    }
+
+    /**
+     * Runs the query of the next viewport, statements are compiled for every
+     * query like rawQuery does, the number of ranges depends on the viewport
+     */
+    private int fetch(Connection connection) throws SQLException {
+        mIndex = (mIndex + 1) % mViewports.size();
+        double[] viewport = mViewports.get(mIndex);
+        List<String> args = new ArrayList<String>();
+        String query = DatabaseSchema.getBoundsQuery(viewport[0], viewport[1], viewport[2], viewport[3], LIMIT,
+                args);
+
+        PreparedStatement statement = connection.prepareStatement(query);
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                statement.setString(i + 1, args.get(i));
+            }
+            return BenchmarkDatabase.readLocations(statement);
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Benchmark
+    public int geohashRanges() throws SQLException {
+        return fetch(mConnection);
+    }
+
+    @Benchmark
+    public int fullScan() throws SQLException {
+        return fetch(mConnectionWithoutIndex);
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import ru.neverdark.phototools.azimuth.core.DatabaseSchema;
+
+/**
+ * Benchmark for the location queries of LocationsDbAdapter: the first page of
+ * the list, the name check of the save dialog and the search. Queries without
+ * index are the same statements run on the version 1 schema, which had no
+ * indexes
+ */
+@State(Scope.Thread)
+public class LocationsQueryBenchmark {
+    /**
+     * Number of rows shown by the list at once
+     */
+    private static final String PAGE_SIZE = "50";
+    private static final String SEARCH_LIMIT = "20";
+    private static final String[] SEARCH_QUERIES = {"lake", "castle north", "bri", "hill 12"};
+    private static final int NAMES_COUNT = 64;
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private Connection mConnection;
+    private Connection mConnectionWithoutIndex;
+    private PreparedStatement mFirstPage;
+    private PreparedStatement mFirstPageWithoutIndex;
+    private PreparedStatement mLocationId;
+    private PreparedStatement mLocationIdWithoutIndex;
+    private PreparedStatement mSearch;
+    private String[] mNames;
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws SQLException {
+        mConnection = BenchmarkDatabase.create(rows);
+        mConnectionWithoutIndex = BenchmarkDatabase.create(1, rows);
+        mFirstPage = mConnection.prepareStatement(DatabaseSchema.FETCH_LOCATIONS_QUERY);
+        mFirstPageWithoutIndex = mConnectionWithoutIndex.prepareStatement(DatabaseSchema.FETCH_LOCATIONS_QUERY);
+        mLocationId = mConnection.prepareStatement(DatabaseSchema.FETCH_LOCATION_ID_QUERY);
+        mLocationIdWithoutIndex = mConnectionWithoutIndex.prepareStatement(DatabaseSchema.FETCH_LOCATION_ID_QUERY);
+        mSearch = mConnection.prepareStatement(DatabaseSchema.SEARCH_LOCATIONS_QUERY);
+
+        // existing names spread over the table
+        mNames = new String[NAMES_COUNT];
+        for (int i = 0; i < NAMES_COUNT; i++) {
+            mNames[i] = BenchmarkDatabase.getName((int) ((long) rows * i / NAMES_COUNT));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mConnection.close();
+        mConnectionWithoutIndex.close();
+    }
+
+    @Benchmark
+    public int firstPage() throws SQLException {
+        mFirstPage.setString(1, PAGE_SIZE);
+        return BenchmarkDatabase.readLocations(mFirstPage);
+    }
+
+    @Benchmark
+    public int firstPageWithoutIndex() throws SQLException {
+        mFirstPageWithoutIndex.setString(1, PAGE_SIZE);
+        return BenchmarkDatabase.readLocations(mFirstPageWithoutIndex);
+    }
+
+    @Benchmark
+    public long locationId() throws SQLException {
+        return readId(mLocationId);
+    }
+
+    @Benchmark
+    public long locationIdWithoutIndex() throws SQLException {
+        return readId(mLocationIdWithoutIndex);
+    }
+
+    private long readId(PreparedStatement statement) throws SQLException {
+        mIndex = (mIndex + 1) % NAMES_COUNT;
+        statement.setString(1, mNames[mIndex]);
+        ResultSet resultSet = statement.executeQuery();
+        try {
+            return resultSet.next() ? resultSet.getLong(1) : -1L;
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    @Benchmark
+    public int search() throws SQLException {
+        mIndex = (mIndex + 1) % SEARCH_QUERIES.length;
+        String searchName = DatabaseSchema.getSearchName(SEARCH_QUERIES[mIndex]);
+        mSearch.setString(1, DatabaseSchema.getMatch(searchName));
+        mSearch.setString(2, searchName);
+        mSearch.setString(3, String.valueOf(searchName.length()));
+        mSearch.setString(4, searchName);
+        mSearch.setString(5, SEARCH_LIMIT);
+        return BenchmarkDatabase.readLocations(mSearch);
+    }
+}
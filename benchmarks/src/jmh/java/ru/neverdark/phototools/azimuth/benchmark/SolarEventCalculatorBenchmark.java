@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.benchmark;
+
+import com.luckycatlabs.sunrisesunset.Zenith;
+import com.luckycatlabs.sunrisesunset.calculator.DoubleSolarEventCalculator;
+import com.luckycatlabs.sunrisesunset.calculator.SolarEventCalculator;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Benchmark for the parts of SolarEventCalculator
+ */
+@State(Scope.Thread)
+public class SolarEventCalculatorBenchmark {
+    /**
+     * Local times as they come out of the BigDecimal pipeline, including a
+     * negative one which moves the result to the previous day
+     */
+    private static final BigDecimal[] LOCAL_TIMES = {
+            new BigDecimal("4.2875"), new BigDecimal("6.5417"), new BigDecimal("18.0125"),
+            new BigDecimal("21.9958"), new BigDecimal("-0.5250")
+    };
+
+    @Param
+    public BenchmarkLocation location;
+
+    private ExposedSolarEventCalculator mCalculator;
+    private DoubleSolarEventCalculator mDoubleCalculator;
+    private Calendar[] mCalendars;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        Location calculatorLocation = new Location(location.getLatitude(), location.getLongitude());
+        mCalculator = new ExposedSolarEventCalculator(calculatorLocation, location.getTimeZone());
+        mDoubleCalculator = new DoubleSolarEventCalculator(calculatorLocation, location.getTimeZone());
+        mCalendars = location.createCalendars();
+    }
+
+    private Calendar nextCalendar() {
+        mIndex = (mIndex + 1) % mCalendars.length;
+        return mCalendars[mIndex];
+    }
+
+    @Benchmark
+    public Calendar computeSunriseCalendar() {
+        return mCalculator.computeSunriseCalendar(Zenith.OFFICIAL, nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar computeSunriseCalendarDouble() {
+        return mDoubleCalculator.computeSunriseCalendar(Zenith.OFFICIAL, nextCalendar());
+    }
+
+    @Benchmark
+    public long computeSunriseMillisDouble() {
+        return mDoubleCalculator.computeSunriseMillis(Zenith.OFFICIAL, nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar getLocalTimeAsCalendar() {
+        Calendar calendar = nextCalendar();
+        return mCalculator.getLocalTimeAsCalendar(LOCAL_TIMES[mIndex % LOCAL_TIMES.length], calendar);
+    }
+
+    /**
+     * Gives access to the protected formatting of SolarEventCalculator
+     */
+    private static class ExposedSolarEventCalculator extends SolarEventCalculator {
+        public ExposedSolarEventCalculator(Location location, TimeZone timeZone) {
+            super(location, timeZone);
+        }
+
+        @Override
+        public Calendar getLocalTimeAsCalendar(BigDecimal localTimeParam, Calendar date) {
+            return super.getLocalTimeAsCalendar(localTimeParam, date);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.TimeZone;
+
+import ru.neverdark.phototools.azimuth.core.PreparedSunCalculator;
+import ru.neverdark.phototools.azimuth.core.SunEphemerisCache;
+import ru.neverdark.phototools.azimuth.core.SunPath;
+import ru.neverdark.phototools.azimuth.core.SunPosition;
+import ru.neverdark.phototools.azimuth.core.SunPositionCalculator;
+
+/**
+ * Benchmark for calculation of sun position, the work done by
+ * SunCalculator.getPosition in the application
+ */
+@State(Scope.Thread)
+public class SunPositionBenchmark {
+    @Param
+    public BenchmarkLocation location;
+
+    private SunPositionCalculator mCalculator;
+    private PreparedSunCalculator mPreparedCalculator;
+    private PreparedSunCalculator mEphemerisCalculator;
+    private SunPosition mPosition;
+    private SunPath mSunPath;
+    private double[] mAzimuths;
+    private double[] mAltitudes;
+    private TimeZone mTimeZone;
+    private long[] mTimes;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mCalculator = new SunPositionCalculator();
+        mTimeZone = location.getTimeZone();
+        mTimes = location.createTimes();
+        mPreparedCalculator = mCalculator.prepare(location.getLatitude(), location.getLongitude(), mTimeZone);
+        mEphemerisCalculator = new SunPositionCalculator(new SunEphemerisCache())
+                .prepare(location.getLatitude(), location.getLongitude(), mTimeZone);
+        mPosition = new SunPosition();
+        mSunPath = new SunPath();
+        mAzimuths = new double[24 * 60];
+        mAltitudes = new double[24 * 60];
+    }
+
+    @Benchmark
+    public SunPosition getPosition() {
+        mIndex = (mIndex + 1) % mTimes.length;
+        return mCalculator.getPosition(location.getLatitude(), location.getLongitude(), mTimes[mIndex],
+                mTimeZone);
+    }
+
+    @Benchmark
+    public SunPosition getPositionPrepared() {
+        mIndex = (mIndex + 1) % mTimes.length;
+        mPreparedCalculator.getPosition(mTimes[mIndex], mPosition);
+        return mPosition;
+    }
+
+    /**
+     * Time scrubbing: a minute forward on every call, so sunrise and sunset
+     * are calculated once per date
+     */
+    @Benchmark
+    public double getPositionPreparedSameDate() {
+        mIndex = (mIndex + 1) % (24 * 60);
+        mPreparedCalculator.getPosition(mTimes[0] + mIndex * 60 * 1000L, mPosition);
+        return mPosition.getAzimuth();
+    }
+
+    /**
+     * Whole day track at one minute resolution
+     */
+    @Benchmark
+    public double[] getPositionsDayTrack() {
+        mIndex = (mIndex + 1) % mTimes.length;
+        mPreparedCalculator.getPositions(mTimes[mIndex], 60 * 1000L, mAzimuths.length, mAzimuths, mAltitudes);
+        return mAzimuths;
+    }
+
+    /**
+     * Whole day track with sun coordinates interpolated from the ephemeris
+     * tables, all dates are in one year so tables are built once
+     */
+    @Benchmark
+    public double[] getPositionsDayTrackEphemeris() {
+        mIndex = (mIndex + 1) % mTimes.length;
+        mEphemerisCalculator.getPositions(mTimes[mIndex], 60 * 1000L, mAzimuths.length, mAzimuths, mAltitudes);
+        return mAzimuths;
+    }
+
+    /**
+     * Whole day sun path with adaptive sampling, the work done for the sun
+     * path overlay, compare it with getPositionsDayTrack
+     */
+    @Benchmark
+    public int computeSunPath() {
+        mIndex = (mIndex + 1) % mTimes.length;
+        mSunPath.compute(mPreparedCalculator, mTimes[mIndex], mTimes[mIndex] + 24 * 60 * 60 * 1000L);
+        return mSunPath.getCount();
+    }
+}
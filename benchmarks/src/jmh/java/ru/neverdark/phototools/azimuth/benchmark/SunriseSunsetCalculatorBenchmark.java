@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.benchmark;
+
+import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+import com.luckycatlabs.sunrisesunset.dto.SolarEvents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Calendar;
+
+/**
+ * Benchmark for every getter of SunriseSunsetCalculator on both engines
+ */
+@State(Scope.Thread)
+public class SunriseSunsetCalculatorBenchmark {
+    @Param
+    public BenchmarkLocation location;
+
+    @Param
+    public SunriseSunsetCalculator.Engine engine;
+
+    private SunriseSunsetCalculator mCalculator;
+    private SolarEvents mEvents;
+    private Calendar[] mCalendars;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        Location calculatorLocation = new Location(location.getLatitude(), location.getLongitude());
+        mCalculator = new SunriseSunsetCalculator(calculatorLocation, location.getTimeZone(), engine);
+        mEvents = new SolarEvents();
+        mCalendars = location.createCalendars();
+    }
+
+    private Calendar nextCalendar() {
+        mIndex = (mIndex + 1) % mCalendars.length;
+        return mCalendars[mIndex];
+    }
+
+    @Benchmark
+    public String getAstronomicalSunriseForDate() {
+        return mCalculator.getAstronomicalSunriseForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar getAstronomicalSunriseCalendarForDate() {
+        return mCalculator.getAstronomicalSunriseCalendarForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public long getAstronomicalSunriseMillisForDate() {
+        return mCalculator.getAstronomicalSunriseMillisForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public String getAstronomicalSunsetForDate() {
+        return mCalculator.getAstronomicalSunsetForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar getAstronomicalSunsetCalendarForDate() {
+        return mCalculator.getAstronomicalSunsetCalendarForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public long getAstronomicalSunsetMillisForDate() {
+        return mCalculator.getAstronomicalSunsetMillisForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public String getNauticalSunriseForDate() {
+        return mCalculator.getNauticalSunriseForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar getNauticalSunriseCalendarForDate() {
+        return mCalculator.getNauticalSunriseCalendarForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public long getNauticalSunriseMillisForDate() {
+        return mCalculator.getNauticalSunriseMillisForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public String getNauticalSunsetForDate() {
+        return mCalculator.getNauticalSunsetForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar getNauticalSunsetCalendarForDate() {
+        return mCalculator.getNauticalSunsetCalendarForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public long getNauticalSunsetMillisForDate() {
+        return mCalculator.getNauticalSunsetMillisForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public String getCivilSunriseForDate() {
+        return mCalculator.getCivilSunriseForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar getCivilSunriseCalendarForDate() {
+        return mCalculator.getCivilSunriseCalendarForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public long getCivilSunriseMillisForDate() {
+        return mCalculator.getCivilSunriseMillisForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public String getCivilSunsetForDate() {
+        return mCalculator.getCivilSunsetForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar getCivilSunsetCalendarForDate() {
+        return mCalculator.getCivilSunsetCalendarForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public long getCivilSunsetMillisForDate() {
+        return mCalculator.getCivilSunsetMillisForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public String getOfficialSunriseForDate() {
+        return mCalculator.getOfficialSunriseForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar getOfficialSunriseCalendarForDate() {
+        return mCalculator.getOfficialSunriseCalendarForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public long getOfficialSunriseMillisForDate() {
+        return mCalculator.getOfficialSunriseMillisForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public String getOfficialSunsetForDate() {
+        return mCalculator.getOfficialSunsetForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public Calendar getOfficialSunsetCalendarForDate() {
+        return mCalculator.getOfficialSunsetCalendarForDate(nextCalendar());
+    }
+
+    @Benchmark
+    public long getOfficialSunsetMillisForDate() {
+        return mCalculator.getOfficialSunsetMillisForDate(nextCalendar());
+    }
+
+    /**
+     * All eight events of a date with one call, compare with
+     * {@link #allEventsSeparately(Blackhole)}
+     */
+    @Benchmark
+    public SolarEvents allEventsSinglePass() {
+        mCalculator.computeAllEvents(nextCalendar(), mEvents);
+        return mEvents;
+    }
+
+    /**
+     * All eight events of a date with a call per event
+     */
+    @Benchmark
+    public void allEventsSeparately(Blackhole blackhole) {
+        Calendar date = nextCalendar();
+        blackhole.consume(mCalculator.getAstronomicalSunriseMillisForDate(date));
+        blackhole.consume(mCalculator.getAstronomicalSunsetMillisForDate(date));
+        blackhole.consume(mCalculator.getNauticalSunriseMillisForDate(date));
+        blackhole.consume(mCalculator.getNauticalSunsetMillisForDate(date));
+        blackhole.consume(mCalculator.getCivilSunriseMillisForDate(date));
+        blackhole.consume(mCalculator.getCivilSunsetMillisForDate(date));
+        blackhole.consume(mCalculator.getOfficialSunriseMillisForDate(date));
+        blackhole.consume(mCalculator.getOfficialSunsetMillisForDate(date));
+    }
+}
@@ -19,14 +19,27 @@ package com.luckycatlabs.sunrisesunset;
 import java.util.Calendar;
 import java.util.TimeZone;
 
+import com.luckycatlabs.sunrisesunset.calculator.DoubleSolarEventCalculator;
 import com.luckycatlabs.sunrisesunset.calculator.SolarEventCalculator;
 import com.luckycatlabs.sunrisesunset.dto.Location;
+import com.luckycatlabs.sunrisesunset.dto.SolarEvents;
 
 /**
  * Public interface for getting the various types of sunrise/sunset.
  */
 public class SunriseSunsetCalculator {
 
+    /**
+     * Arithmetic used to compute the solar events.
+     */
+    public enum Engine {
+        /** Original algorithm on <code>BigDecimal</code> values. */
+        BIG_DECIMAL,
+
+        /** Same algorithm on primitive <code>double</code> values, without allocations per event. */
+        DOUBLE
+    }
+
     private Location location;
 
     private SolarEventCalculator calculator;
@@ -59,6 +72,25 @@ public class SunriseSunsetCalculator {
         this.calculator = new SolarEventCalculator(location, timeZone);
     }
 
+    /**
+     * Constructs a new <code>SunriseSunsetCalculator</code> with the given <code>Location</code>
+     * 
+     * @param location
+     *            <code>Location</code> object containing the Latitude/Longitude of the location to compute
+     *            the sunrise/sunset for.
+     * @param timeZone
+     *            timezone to compute the sunrise/sunset times in.
+     * @param engine
+     *            arithmetic used to compute the sunrise/sunset.
+     */
+    public SunriseSunsetCalculator(Location location, TimeZone timeZone, Engine engine) {
+        if (engine == Engine.DOUBLE) {
+            this.calculator = new DoubleSolarEventCalculator(location, timeZone);
+        } else {
+            this.calculator = new SolarEventCalculator(location, timeZone);
+        }
+    }
+
     /**
      * Returns the astronomical (108deg) sunrise for the given date.
      * 
@@ -81,6 +113,18 @@ public class SunriseSunsetCalculator {
         return calculator.computeSunriseCalendar(Zenith.ASTRONOMICAL, date);
     }
 
+    /**
+     * Returns the astronomical (108deg) sunrise for the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the astronomical sunrise for.
+     * @return the astronomical sunrise time in milliseconds since the epoch, or
+     *         <code>SolarEventCalculator.NO_EVENT</code> if there is none on the given date.
+     */
+    public long getAstronomicalSunriseMillisForDate(Calendar date) {
+        return calculator.computeSunriseMillis(Zenith.ASTRONOMICAL, date);
+    }
+
     /**
      * Returns the astronomical (108deg) sunset for the given date.
      * 
@@ -103,6 +147,18 @@ public class SunriseSunsetCalculator {
         return calculator.computeSunsetCalendar(Zenith.ASTRONOMICAL, date);
     }
 
+    /**
+     * Returns the astronomical (108deg) sunset for the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the astronomical sunset for.
+     * @return the astronomical sunset time in milliseconds since the epoch, or
+     *         <code>SolarEventCalculator.NO_EVENT</code> if there is none on the given date.
+     */
+    public long getAstronomicalSunsetMillisForDate(Calendar date) {
+        return calculator.computeSunsetMillis(Zenith.ASTRONOMICAL, date);
+    }
+
     /**
      * Returns the nautical (102deg) sunrise for the given date.
      * 
@@ -125,6 +181,18 @@ public class SunriseSunsetCalculator {
         return calculator.computeSunriseCalendar(Zenith.NAUTICAL, date);
     }
 
+    /**
+     * Returns the nautical (102deg) sunrise for the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the nautical sunrise for.
+     * @return the nautical sunrise time in milliseconds since the epoch, or
+     *         <code>SolarEventCalculator.NO_EVENT</code> if there is none on the given date.
+     */
+    public long getNauticalSunriseMillisForDate(Calendar date) {
+        return calculator.computeSunriseMillis(Zenith.NAUTICAL, date);
+    }
+
     /**
      * Returns the nautical (102deg) sunset for the given date.
      * 
@@ -147,6 +215,18 @@ public class SunriseSunsetCalculator {
         return calculator.computeSunsetCalendar(Zenith.NAUTICAL, date);
     }
 
+    /**
+     * Returns the nautical (102deg) sunset for the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the nautical sunset for.
+     * @return the nautical sunset time in milliseconds since the epoch, or
+     *         <code>SolarEventCalculator.NO_EVENT</code> if there is none on the given date.
+     */
+    public long getNauticalSunsetMillisForDate(Calendar date) {
+        return calculator.computeSunsetMillis(Zenith.NAUTICAL, date);
+    }
+
     /**
      * Returns the civil sunrise (twilight, 96deg) for the given date.
      * 
@@ -169,6 +249,18 @@ public class SunriseSunsetCalculator {
         return calculator.computeSunriseCalendar(Zenith.CIVIL, date);
     }
 
+    /**
+     * Returns the civil sunrise (twilight, 96deg) for the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the civil sunrise for.
+     * @return the civil sunrise time in milliseconds since the epoch, or
+     *         <code>SolarEventCalculator.NO_EVENT</code> if there is none on the given date.
+     */
+    public long getCivilSunriseMillisForDate(Calendar date) {
+        return calculator.computeSunriseMillis(Zenith.CIVIL, date);
+    }
+
     /**
      * Returns the civil sunset (twilight, 96deg) for the given date.
      * 
@@ -191,6 +283,18 @@ public class SunriseSunsetCalculator {
         return calculator.computeSunsetCalendar(Zenith.CIVIL, date);
     }
 
+    /**
+     * Returns the civil sunset (twilight, 96deg) for the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the civil sunset for.
+     * @return the civil sunset time in milliseconds since the epoch, or
+     *         <code>SolarEventCalculator.NO_EVENT</code> if there is none on the given date.
+     */
+    public long getCivilSunsetMillisForDate(Calendar date) {
+        return calculator.computeSunsetMillis(Zenith.CIVIL, date);
+    }
+
     /**
      * Returns the official sunrise (90deg 50', 90.8333deg) for the given date.
      * 
@@ -213,6 +317,18 @@ public class SunriseSunsetCalculator {
         return calculator.computeSunriseCalendar(Zenith.OFFICIAL, date);
     }
 
+    /**
+     * Returns the official sunrise (90deg 50', 90.8333deg) for the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the official sunrise for.
+     * @return the official sunrise time in milliseconds since the epoch, or
+     *         <code>SolarEventCalculator.NO_EVENT</code> if there is none on the given date.
+     */
+    public long getOfficialSunriseMillisForDate(Calendar date) {
+        return calculator.computeSunriseMillis(Zenith.OFFICIAL, date);
+    }
+
     /**
      * Returns the official sunrise (90deg 50', 90.8333deg) for the given date.
      * 
@@ -235,6 +351,44 @@ public class SunriseSunsetCalculator {
         return calculator.computeSunsetCalendar(Zenith.OFFICIAL, date);
     }
 
+    /**
+     * Returns the official sunset (90deg 50', 90.8333deg) for the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the official sunset for.
+     * @return the official sunset time in milliseconds since the epoch, or
+     *         <code>SolarEventCalculator.NO_EVENT</code> if there is none on the given date.
+     */
+    public long getOfficialSunsetMillisForDate(Calendar date) {
+        return calculator.computeSunsetMillis(Zenith.OFFICIAL, date);
+    }
+
+    /**
+     * Returns the astronomical, nautical, civil and official sunrise and sunset for the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the events for.
+     * @return the events as milliseconds since the epoch.
+     */
+    public SolarEvents computeAllEvents(Calendar date) {
+        SolarEvents events = new SolarEvents();
+        computeAllEvents(date, events);
+        return events;
+    }
+
+    /**
+     * Computes the astronomical, nautical, civil and official sunrise and sunset for the given date. With the
+     * <code>DOUBLE</code> engine the terms which do not depend on the zenith are shared between all events.
+     * 
+     * @param date
+     *            <code>Calendar</code> object containing the date to compute the events for.
+     * @param events
+     *            object to store the events in, as milliseconds since the epoch.
+     */
+    public void computeAllEvents(Calendar date, SolarEvents events) {
+        calculator.computeAllEvents(date, events);
+    }
+
     /**
      * Computes the sunrise for an arbitrary declination.
      * 
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2008-2009 Mike Reedell / LuckyCatLabs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.luckycatlabs.sunrisesunset.calculator;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import com.luckycatlabs.sunrisesunset.Zenith;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+import com.luckycatlabs.sunrisesunset.dto.SolarEvents;
+
+/**
+ * <code>SolarEventCalculator</code> that runs the same algorithm on primitive <code>double</code> values instead
+ * of <code>BigDecimal</code>. Intermediate values are rounded to four decimal places at the same steps as the
+ * parent class, so results agree with it to the minute, but computing an event allocates nothing.
+ */
+public class DoubleSolarEventCalculator extends SolarEventCalculator {
+    private static final double DEGREES_TO_RADIANS = Math.PI / 180.0;
+    private static final double RADIANS_TO_DEGREES = 180 / Math.PI;
+    private static final int SCALE = 10000;
+    private static final long MILLIS_IN_MINUTE = 60 * 1000;
+    private static final long MILLIS_IN_DAY = 24 * 60 * MILLIS_IN_MINUTE;
+
+    private static final double[] ZENITH_COSINES = new double[SolarEvents.getZenithCount()];
+
+    static {
+        for (int i = 0; i < ZENITH_COSINES.length; i++) {
+            ZENITH_COSINES[i] = getCosineZenith(SolarEvents.getZenith(i).degrees().doubleValue());
+        }
+    }
+
+    final private TimeZone timeZone;
+    final private double baseLongitudeHour;
+    final private double sinLatitude;
+    final private double cosLatitude;
+
+    /**
+     * Constructs a new <code>DoubleSolarEventCalculator</code> using the given parameters.
+     *
+     * @param location
+     *            <code>Location</code> of the place where the solar event should be calculated from.
+     * @param timeZoneIdentifier
+     *            time zone identifier of the timezone of the location parameter. For example,
+     *            "America/New_York".
+     */
+    public DoubleSolarEventCalculator(Location location, String timeZoneIdentifier) {
+        this(location, TimeZone.getTimeZone(timeZoneIdentifier));
+    }
+
+    /**
+     * Constructs a new <code>DoubleSolarEventCalculator</code> using the given parameters.
+     *
+     * @param location
+     *            <code>Location</code> of the place where the solar event should be calculated from.
+     * @param timeZone
+     *            timezone of the location parameter.
+     */
+    public DoubleSolarEventCalculator(Location location, TimeZone timeZone) {
+        super(location, timeZone);
+        this.timeZone = timeZone;
+
+        // the location never changes, so the terms depending only on it are computed once
+        double latitudeInRads = setScale(location.getLatitude().doubleValue() * DEGREES_TO_RADIANS);
+        this.baseLongitudeHour = setScale(location.getLongitude().doubleValue() / 15);
+        this.sinLatitude = Math.sin(latitudeInRads);
+        this.cosLatitude = Math.cos(latitudeInRads);
+    }
+
+    @Override
+    public String computeSunriseTime(Zenith solarZenith, Calendar date) {
+        return getLocalTimeAsString(computeSolarEventTime(solarZenith, date, true));
+    }
+
+    @Override
+    public Calendar computeSunriseCalendar(Zenith solarZenith, Calendar date) {
+        return getLocalTimeAsCalendar(computeSolarEventTime(solarZenith, date, true), date);
+    }
+
+    @Override
+    public String computeSunsetTime(Zenith solarZenith, Calendar date) {
+        return getLocalTimeAsString(computeSolarEventTime(solarZenith, date, false));
+    }
+
+    @Override
+    public Calendar computeSunsetCalendar(Zenith solarZenith, Calendar date) {
+        return getLocalTimeAsCalendar(computeSolarEventTime(solarZenith, date, false), date);
+    }
+
+    @Override
+    public long computeSunriseMillis(Zenith solarZenith, Calendar date) {
+        return getLocalTimeAsMillis(computeSolarEventTime(solarZenith, date, true), date);
+    }
+
+    @Override
+    public long computeSunsetMillis(Zenith solarZenith, Calendar date) {
+        return getLocalTimeAsMillis(computeSolarEventTime(solarZenith, date, false), date);
+    }
+
+    /**
+     * Computes the local time of the solar event.
+     *
+     * @param solarZenith
+     *            <code>Zenith</code> corresponding to the type of event to compute.
+     * @param date
+     *            <code>Calendar</code> object representing the date to compute the event for.
+     * @param isSunrise
+     *            true for sunrise, false for sunset.
+     * @return local time of the event in hours, or <code>Double.NaN</code> if the event does not happen on the
+     *         given date.
+     */
+    public double computeSolarEventTime(Zenith solarZenith, Calendar date, boolean isSunrise) {
+        date.setTimeZone(this.timeZone);
+        double longitudeHour = getLongitudeHour(date, isSunrise);
+
+        double meanAnomaly = getMeanAnomaly(longitudeHour);
+        double sunTrueLong = getSunTrueLongitude(meanAnomaly);
+        double sinSunDeclination = getSinOfSunDeclination(sunTrueLong);
+        double cosineSunDeclination = getCosineOfSunDeclination(sinSunDeclination);
+        double rightAscension = getRightAscension(sunTrueLong);
+
+        return computeSolarEventTime(getCosineZenith(solarZenith.degrees().doubleValue()), date, isSunrise,
+                longitudeHour, sinSunDeclination, cosineSunDeclination, rightAscension);
+    }
+
+    /**
+     * Computes the sunrise and sunset of every zenith stored in <code>SolarEvents</code> at the given date. The
+     * terms which do not depend on the zenith are computed once for sunrise and once for sunset.
+     *
+     * @param date
+     *            <code>Calendar</code> object representing the date to compute the events for.
+     * @param events
+     *            object to store the events in, as milliseconds since the epoch.
+     */
+    @Override
+    public void computeAllEvents(Calendar date, SolarEvents events) {
+        date.setTimeZone(this.timeZone);
+        for (int i = 0; i < 2; i++) {
+            boolean isSunrise = i == 0;
+            double longitudeHour = getLongitudeHour(date, isSunrise);
+
+            double meanAnomaly = getMeanAnomaly(longitudeHour);
+            double sunTrueLong = getSunTrueLongitude(meanAnomaly);
+            double sinSunDeclination = getSinOfSunDeclination(sunTrueLong);
+            double cosineSunDeclination = getCosineOfSunDeclination(sinSunDeclination);
+            double rightAscension = getRightAscension(sunTrueLong);
+
+            for (int zenith = 0; zenith < SolarEvents.getZenithCount(); zenith++) {
+                double localTime = computeSolarEventTime(ZENITH_COSINES[zenith], date, isSunrise, longitudeHour,
+                        sinSunDeclination, cosineSunDeclination, rightAscension);
+                long time = getLocalTimeAsMillis(localTime, date);
+                if (isSunrise) {
+                    events.setSunrise(zenith, time);
+                } else {
+                    events.setSunset(zenith, time);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the local time of the solar event from the terms which do not depend on the zenith.
+     */
+    private double computeSolarEventTime(double cosineZenith, Calendar date, boolean isSunrise,
+            double longitudeHour, double sinSunDeclination, double cosineSunDeclination, double rightAscension) {
+        double cosineSunLocalHour = getCosineSunLocalHour(sinSunDeclination, cosineSunDeclination, cosineZenith);
+        if ((cosineSunLocalHour < -1.0) || (cosineSunLocalHour > 1.0)) {
+            return Double.NaN;
+        }
+
+        double sunLocalHour = getSunLocalHour(cosineSunLocalHour, isSunrise);
+        double localMeanTime = getLocalMeanTime(rightAscension, longitudeHour, sunLocalHour);
+        return getLocalTime(localMeanTime, date);
+    }
+
+    private double getLongitudeHour(Calendar date, boolean isSunrise) {
+        int offset = isSunrise ? 6 : 18;
+        double addend = setScale((offset - baseLongitudeHour) / 24);
+        return setScale(date.get(Calendar.DAY_OF_YEAR) + addend);
+    }
+
+    private double getMeanAnomaly(double longitudeHour) {
+        return setScale(setScale(0.9856 * longitudeHour) - 3.289);
+    }
+
+    private double getSunTrueLongitude(double meanAnomaly) {
+        double meanAnomalyInRads = toRadians(meanAnomaly);
+        double sinMeanAnomaly = Math.sin(meanAnomalyInRads);
+        double sinDoubleMeanAnomaly = Math.sin(meanAnomalyInRads * 2);
+
+        double firstPart = meanAnomaly + setScale(sinMeanAnomaly * 1.916);
+        double secondPart = setScale(sinDoubleMeanAnomaly * 0.020) + 282.634;
+        double trueLongitude = firstPart + secondPart;
+
+        if (trueLongitude > 360) {
+            trueLongitude = trueLongitude - 360;
+        }
+        return setScale(trueLongitude);
+    }
+
+    private double getRightAscension(double sunTrueLong) {
+        double tanL = Math.tan(toRadians(sunTrueLong));
+
+        double innerParens = setScale(toDegrees(tanL) * 0.91764);
+        double rightAscension = setScale(toDegrees(Math.atan(toRadians(innerParens))));
+
+        if (rightAscension < 0) {
+            rightAscension = rightAscension + 360;
+        } else if (rightAscension > 360) {
+            rightAscension = rightAscension - 360;
+        }
+
+        double longitudeQuadrant = Math.floor(sunTrueLong / 90) * 90;
+        double rightAscensionQuadrant = Math.floor(rightAscension / 90) * 90;
+
+        return setScale((rightAscension + (longitudeQuadrant - rightAscensionQuadrant)) / 15);
+    }
+
+    private double getCosineSunLocalHour(double sinSunDeclination, double cosineSunDeclination,
+            double cosineZenith) {
+        double dividend = cosineZenith - sinSunDeclination * sinLatitude;
+        double divisor = cosineSunDeclination * cosLatitude;
+
+        return setScale(dividend / divisor);
+    }
+
+    private double getSinOfSunDeclination(double sunTrueLong) {
+        return setScale(Math.sin(toRadians(sunTrueLong)) * 0.39782);
+    }
+
+    private double getCosineOfSunDeclination(double sinSunDeclination) {
+        return setScale(Math.cos(Math.asin(sinSunDeclination)));
+    }
+
+    private static double getCosineZenith(double zenith) {
+        return Math.cos(toRadians(zenith));
+    }
+
+    private double getSunLocalHour(double cosineSunLocalHour, boolean isSunrise) {
+        double localHour = toDegrees(setScale(Math.acos(cosineSunLocalHour)));
+        if (isSunrise) {
+            localHour = 360 - localHour;
+        }
+        return setScale(localHour / 15);
+    }
+
+    private double getLocalMeanTime(double rightAscension, double longitudeHour, double sunLocalHour) {
+        double innerParens = longitudeHour * 0.06571;
+        double localMeanTime = sunLocalHour + rightAscension - innerParens - 6.622;
+
+        if (localMeanTime < 0) {
+            localMeanTime = localMeanTime + 24;
+        } else if (localMeanTime > 24) {
+            localMeanTime = localMeanTime - 24;
+        }
+        return setScale(localMeanTime);
+    }
+
+    private double getLocalTime(double localMeanTime, Calendar date) {
+        double utcTime = localMeanTime - baseLongitudeHour;
+        int utcOffSet = date.get(Calendar.ZONE_OFFSET) / 3600000;
+        double localTime = utcTime + utcOffSet;
+
+        // same as TimeZone.inDaylightTime(date.getTime()), without allocating a Date
+        if (date.get(Calendar.DST_OFFSET) != 0) {
+            localTime = localTime + 1;
+        }
+        if (localTime > 24.0) {
+            localTime = localTime - 24;
+        }
+        return setScale(localTime);
+    }
+
+    /**
+     * Returns the local rise/set time in the form HH:MM.
+     *
+     * @param localTime
+     *            local rise/set time in hours, <code>Double.NaN</code> for none.
+     * @return <code>String</code> representation of the local rise/set time in HH:MM format.
+     */
+    private String getLocalTimeAsString(double localTime) {
+        if (Double.isNaN(localTime)) {
+            return "99:99";
+        }
+
+        int minutesOfDay = getMinutesOfDay(localTime < 0 ? localTime + 24 : localTime);
+        int hour = minutesOfDay / 60;
+        int minutes = minutesOfDay % 60;
+
+        char[] chars = { (char) ('0' + hour / 10), (char) ('0' + hour % 10), ':', (char) ('0' + minutes / 10),
+                (char) ('0' + minutes % 10) };
+        return new String(chars);
+    }
+
+    /**
+     * Returns the local rise/set time as a <code>Calendar</code>.
+     *
+     * @param localTime
+     *            local rise/set time in hours, <code>Double.NaN</code> for none.
+     * @return <code>Calendar</code> representation of the local time as a calendar, or null for none.
+     */
+    private Calendar getLocalTimeAsCalendar(double localTime, Calendar date) {
+        if (Double.isNaN(localTime)) {
+            return null;
+        }
+
+        // Create a clone of the input calendar so we get locale/timezone information.
+        Calendar resultTime = (Calendar) date.clone();
+
+        if (localTime < 0) {
+            localTime = localTime + 24;
+            resultTime.add(Calendar.HOUR_OF_DAY, -24);
+        }
+        int minutesOfDay = getMinutesOfDay(localTime);
+
+        // Set the local time
+        resultTime.set(Calendar.HOUR_OF_DAY, minutesOfDay / 60);
+        resultTime.set(Calendar.MINUTE, minutesOfDay % 60);
+        resultTime.set(Calendar.SECOND, 0);
+        resultTime.set(Calendar.MILLISECOND, 0);
+        resultTime.setTimeZone(date.getTimeZone());
+
+        return resultTime;
+    }
+
+    /**
+     * Returns the local rise/set time as milliseconds since the epoch. Gives the same instant as
+     * {@link #getLocalTimeAsCalendar(double, Calendar)} without creating a <code>Calendar</code>.
+     *
+     * @param localTime
+     *            local rise/set time in hours, <code>Double.NaN</code> for none.
+     * @return rise/set time in milliseconds since the epoch, or <code>NO_EVENT</code> for none.
+     */
+    private long getLocalTimeAsMillis(double localTime, Calendar date) {
+        if (Double.isNaN(localTime)) {
+            return NO_EVENT;
+        }
+
+        long time = date.getTimeInMillis();
+        if (localTime < 0) {
+            localTime = localTime + 24;
+            // elapsed 24 hours back, as Calendar.add(Calendar.HOUR_OF_DAY, -24) does
+            time = time - MILLIS_IN_DAY;
+        }
+
+        // wall clock time of the date, shifted so that the day starts at a multiple of MILLIS_IN_DAY
+        long wallTime = time + timeZone.getOffset(time);
+        long timeOfDay = wallTime % MILLIS_IN_DAY;
+        if (timeOfDay < 0) {
+            timeOfDay += MILLIS_IN_DAY;
+        }
+        long eventWallTime = wallTime - timeOfDay + getMinutesOfDay(localTime) * MILLIS_IN_MINUTE;
+
+        long standardTime = eventWallTime - timeZone.getRawOffset();
+        int offset = timeZone.getOffset(standardTime);
+        long eventTime = eventWallTime - offset;
+        // ambiguous and skipped wall clock times resolve to standard time, as in Calendar
+        return timeZone.getOffset(eventTime) == offset ? eventTime : standardTime;
+    }
+
+    /**
+     * Rounds a non-negative local time to whole minutes the way the <code>BigDecimal</code> formatter does: the
+     * fraction of the hour is rounded half-even, and 24:00 wraps to 00:00.
+     *
+     * @param localTime
+     *            local time in hours with at most four decimal places.
+     * @return minutes since midnight.
+     */
+    private int getMinutesOfDay(double localTime) {
+        long scaled = Math.round(localTime * SCALE);
+        int hour = (int) (scaled / SCALE);
+        long fraction = (scaled % SCALE) * 60;
+
+        int minutes = (int) (fraction / SCALE);
+        long remainder = fraction % SCALE;
+        if (remainder * 2 > SCALE || (remainder * 2 == SCALE && (minutes & 1) == 1)) {
+            minutes++;
+        }
+        if (minutes == 60) {
+            minutes = 0;
+            hour += 1;
+        }
+        if (hour == 24) {
+            hour = 0;
+        }
+        return hour * 60 + minutes;
+    }
+
+    private static double toRadians(double degrees) {
+        return setScale(degrees * DEGREES_TO_RADIANS);
+    }
+
+    private static double toDegrees(double radians) {
+        return setScale(radians * RADIANS_TO_DEGREES);
+    }
+
+    private static double setScale(double number) {
+        return Math.rint(number * SCALE) / SCALE;
+    }
+}
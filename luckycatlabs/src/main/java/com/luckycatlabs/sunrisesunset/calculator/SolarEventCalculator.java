@@ -23,11 +23,17 @@ import java.util.TimeZone;
 
 import com.luckycatlabs.sunrisesunset.Zenith;
 import com.luckycatlabs.sunrisesunset.dto.Location;
+import com.luckycatlabs.sunrisesunset.dto.SolarEvents;
 
 /**
  * Parent class of the Sunrise and Sunset calculator classes.
  */
 public class SolarEventCalculator {
+    /**
+     * Value returned by the <code>*Millis</code> methods when the event does not happen on the given date.
+     */
+    public static final long NO_EVENT = Long.MIN_VALUE;
+
     final private Location location;
     final private TimeZone timeZone;
 
@@ -112,6 +118,52 @@ public class SolarEventCalculator {
         return getLocalTimeAsCalendar(computeSolarEventTime(solarZenith, date, false), date);
     }
 
+    /**
+     * Computes the sunrise time for the given zenith at the given date.
+     * 
+     * @param solarZenith
+     *            <code>Zenith</code> enum corresponding to the type of sunrise to compute.
+     * @param date
+     *            <code>Calendar</code> object representing the date to compute the sunrise for.
+     * @return the sunrise time in milliseconds since the epoch, or <code>NO_EVENT</code> for no sunrise.
+     */
+    public long computeSunriseMillis(Zenith solarZenith, Calendar date) {
+        return getTimeInMillis(computeSunriseCalendar(solarZenith, date));
+    }
+
+    /**
+     * Computes the sunset time for the given zenith at the given date.
+     * 
+     * @param solarZenith
+     *            <code>Zenith</code> enum corresponding to the type of sunset to compute.
+     * @param date
+     *            <code>Calendar</code> object representing the date to compute the sunset for.
+     * @return the sunset time in milliseconds since the epoch, or <code>NO_EVENT</code> for no sunset.
+     */
+    public long computeSunsetMillis(Zenith solarZenith, Calendar date) {
+        return getTimeInMillis(computeSunsetCalendar(solarZenith, date));
+    }
+
+    /**
+     * Computes the sunrise and sunset of every zenith stored in <code>SolarEvents</code> at the given date.
+     * 
+     * @param date
+     *            <code>Calendar</code> object representing the date to compute the events for.
+     * @param events
+     *            object to store the events in, as milliseconds since the epoch.
+     */
+    public void computeAllEvents(Calendar date, SolarEvents events) {
+        for (int i = 0; i < SolarEvents.getZenithCount(); i++) {
+            Zenith zenith = SolarEvents.getZenith(i);
+            events.setSunrise(i, computeSunriseMillis(zenith, date));
+            events.setSunset(i, computeSunsetMillis(zenith, date));
+        }
+    }
+
+    private long getTimeInMillis(Calendar calendar) {
+        return calendar == null ? NO_EVENT : calendar.getTimeInMillis();
+    }
+
     private BigDecimal computeSolarEventTime(Zenith solarZenith, Calendar date, boolean isSunrise) {
         date.setTimeZone(this.timeZone);
         BigDecimal longitudeHour = getLongitudeHour(date, isSunrise);
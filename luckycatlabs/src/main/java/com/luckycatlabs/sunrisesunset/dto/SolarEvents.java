@@ -0,0 +1,153 @@
+/*
+ * Copyright 2008-2009 Mike Reedell / LuckyCatLabs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.luckycatlabs.sunrisesunset.dto;
+
+import com.luckycatlabs.sunrisesunset.Zenith;
+
+/**
+ * Simple VO class to store the sunrise and sunset of every standard zenith for one date. Times are in
+ * milliseconds since the epoch, <code>SolarEventCalculator.NO_EVENT</code> if the event does not happen.
+ */
+public class SolarEvents {
+    /** Index of the astronomical (108deg) events. */
+    public static final int ASTRONOMICAL = 0;
+
+    /** Index of the nautical (102deg) events. */
+    public static final int NAUTICAL = 1;
+
+    /** Index of the civil (96deg) events. */
+    public static final int CIVIL = 2;
+
+    /** Index of the official (90deg 50') events. */
+    public static final int OFFICIAL = 3;
+
+    private static final Zenith[] ZENITHS = { Zenith.ASTRONOMICAL, Zenith.NAUTICAL, Zenith.CIVIL, Zenith.OFFICIAL };
+
+    private final long[] sunrises = new long[ZENITHS.length];
+    private final long[] sunsets = new long[ZENITHS.length];
+
+    /**
+     * @return number of zeniths stored in this object.
+     */
+    public static int getZenithCount() {
+        return ZENITHS.length;
+    }
+
+    /**
+     * @param index
+     *            one of <code>ASTRONOMICAL</code>, <code>NAUTICAL</code>, <code>CIVIL</code> or
+     *            <code>OFFICIAL</code>.
+     * @return the <code>Zenith</code> stored under the given index.
+     */
+    public static Zenith getZenith(int index) {
+        return ZENITHS[index];
+    }
+
+    /**
+     * @param index
+     *            zenith index, see {@link #getZenith(int)}.
+     * @return the sunrise for the zenith.
+     */
+    public long getSunrise(int index) {
+        return sunrises[index];
+    }
+
+    /**
+     * @param index
+     *            zenith index, see {@link #getZenith(int)}.
+     * @return the sunset for the zenith.
+     */
+    public long getSunset(int index) {
+        return sunsets[index];
+    }
+
+    /**
+     * @param index
+     *            zenith index, see {@link #getZenith(int)}.
+     * @param sunrise
+     *            the sunrise for the zenith.
+     */
+    public void setSunrise(int index, long sunrise) {
+        sunrises[index] = sunrise;
+    }
+
+    /**
+     * @param index
+     *            zenith index, see {@link #getZenith(int)}.
+     * @param sunset
+     *            the sunset for the zenith.
+     */
+    public void setSunset(int index, long sunset) {
+        sunsets[index] = sunset;
+    }
+
+    /**
+     * @return the astronomical sunrise
+     */
+    public long getAstronomicalSunrise() {
+        return sunrises[ASTRONOMICAL];
+    }
+
+    /**
+     * @return the astronomical sunset
+     */
+    public long getAstronomicalSunset() {
+        return sunsets[ASTRONOMICAL];
+    }
+
+    /**
+     * @return the nautical sunrise
+     */
+    public long getNauticalSunrise() {
+        return sunrises[NAUTICAL];
+    }
+
+    /**
+     * @return the nautical sunset
+     */
+    public long getNauticalSunset() {
+        return sunsets[NAUTICAL];
+    }
+
+    /**
+     * @return the civil sunrise
+     */
+    public long getCivilSunrise() {
+        return sunrises[CIVIL];
+    }
+
+    /**
+     * @return the civil sunset
+     */
+    public long getCivilSunset() {
+        return sunsets[CIVIL];
+    }
+
+    /**
+     * @return the official sunrise
+     */
+    public long getOfficialSunrise() {
+        return sunrises[OFFICIAL];
+    }
+
+    /**
+     * @return the official sunset
+     */
+    public long getOfficialSunset() {
+        return sunsets[OFFICIAL];
+    }
+}
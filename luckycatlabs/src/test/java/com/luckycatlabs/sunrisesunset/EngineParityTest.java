@@ -0,0 +1,166 @@
+/*
+ * Copyright 2008-2009 Mike Reedell / LuckyCatLabs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.luckycatlabs.sunrisesunset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import com.luckycatlabs.sunrisesunset.calculator.SolarEventCalculator;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+import com.luckycatlabs.sunrisesunset.dto.SolarEvents;
+
+/**
+ * Checks that the <code>DOUBLE</code> engine gives exactly the results of the <code>BIG_DECIMAL</code> engine.
+ */
+public class EngineParityTest {
+    private static final String[] TIME_ZONES = { "UTC", "Europe/Moscow", "America/New_York", "Australia/Sydney",
+            "Asia/Kolkata", "Pacific/Auckland", "America/Sao_Paulo", "Asia/Tokyo" };
+    private static final double[] LATITUDES = { -55, -33.87, -10, 0, 12.5, 35.7, 48.85, 55.76, 64.1, 69.65, 78.22 };
+    private static final double[] LONGITUDES = { -74.0, 37.62, 151.21 };
+    private static final int YEAR = 2016;
+    /** Every fifth day of the year, with polar days and nights at the high latitudes. */
+    private static final int DAY_STEP = 5;
+
+    @Test
+    public void enginesGiveEqualEvents() {
+        int noEventCount = 0;
+
+        for (String timeZoneId : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+            for (double latitude : LATITUDES) {
+                for (double longitude : LONGITUDES) {
+                    Location location = new Location(latitude, longitude);
+                    SunriseSunsetCalculator bigDecimal = new SunriseSunsetCalculator(location, timeZone,
+                            SunriseSunsetCalculator.Engine.BIG_DECIMAL);
+                    SunriseSunsetCalculator primitive = new SunriseSunsetCalculator(location, timeZone,
+                            SunriseSunsetCalculator.Engine.DOUBLE);
+
+                    for (int day = 1; day <= 366; day += DAY_STEP) {
+                        Calendar date = Calendar.getInstance(timeZone);
+                        date.clear();
+                        date.set(Calendar.YEAR, YEAR);
+                        date.set(Calendar.DAY_OF_YEAR, day);
+                        String message = timeZoneId + " " + latitude + "," + longitude + " day " + day;
+
+                        noEventCount += assertSameEvents(message, bigDecimal, primitive, date);
+                    }
+                }
+            }
+        }
+
+        // polar days and nights are part of the sweep
+        assertTrue(noEventCount > 0);
+    }
+
+    @Test
+    public void polarDayHasNoEventInBothEngines() {
+        TimeZone timeZone = TimeZone.getTimeZone("Arctic/Longyearbyen");
+        Location location = new Location(78.22, 15.65);
+        Calendar date = Calendar.getInstance(timeZone);
+        date.clear();
+        date.set(YEAR, Calendar.JUNE, 21);
+
+        for (SunriseSunsetCalculator.Engine engine : SunriseSunsetCalculator.Engine.values()) {
+            SunriseSunsetCalculator calculator = new SunriseSunsetCalculator(location, timeZone, engine);
+            assertNull(calculator.getOfficialSunriseCalendarForDate(date));
+            assertNull(calculator.getOfficialSunsetCalendarForDate(date));
+            assertEquals(SolarEventCalculator.NO_EVENT, calculator.getOfficialSunriseMillisForDate(date));
+            assertEquals(SolarEventCalculator.NO_EVENT, calculator.getOfficialSunsetMillisForDate(date));
+
+            SolarEvents events = calculator.computeAllEvents(date);
+            for (int i = 0; i < SolarEvents.getZenithCount(); i++) {
+                assertEquals(SolarEventCalculator.NO_EVENT, events.getSunrise(i));
+                assertEquals(SolarEventCalculator.NO_EVENT, events.getSunset(i));
+            }
+        }
+    }
+
+    /**
+     * @return number of missing events found for the date
+     */
+    private static int assertSameEvents(String message, SunriseSunsetCalculator expected,
+            SunriseSunsetCalculator actual, Calendar date) {
+        int noEventCount = 0;
+
+        assertSameCalendar(message + " astronomical sunrise", expected.getAstronomicalSunriseCalendarForDate(date),
+                actual.getAstronomicalSunriseCalendarForDate(date));
+        assertSameCalendar(message + " astronomical sunset", expected.getAstronomicalSunsetCalendarForDate(date),
+                actual.getAstronomicalSunsetCalendarForDate(date));
+        assertSameCalendar(message + " nautical sunrise", expected.getNauticalSunriseCalendarForDate(date),
+                actual.getNauticalSunriseCalendarForDate(date));
+        assertSameCalendar(message + " nautical sunset", expected.getNauticalSunsetCalendarForDate(date),
+                actual.getNauticalSunsetCalendarForDate(date));
+        assertSameCalendar(message + " civil sunrise", expected.getCivilSunriseCalendarForDate(date),
+                actual.getCivilSunriseCalendarForDate(date));
+        assertSameCalendar(message + " civil sunset", expected.getCivilSunsetCalendarForDate(date),
+                actual.getCivilSunsetCalendarForDate(date));
+        assertSameCalendar(message + " official sunrise", expected.getOfficialSunriseCalendarForDate(date),
+                actual.getOfficialSunriseCalendarForDate(date));
+        assertSameCalendar(message + " official sunset", expected.getOfficialSunsetCalendarForDate(date),
+                actual.getOfficialSunsetCalendarForDate(date));
+
+        assertEquals(message + " official sunrise millis", expected.getOfficialSunriseMillisForDate(date),
+                actual.getOfficialSunriseMillisForDate(date));
+        assertEquals(message + " official sunset millis", expected.getOfficialSunsetMillisForDate(date),
+                actual.getOfficialSunsetMillisForDate(date));
+        assertEquals(message + " civil sunrise millis", expected.getCivilSunriseMillisForDate(date),
+                actual.getCivilSunriseMillisForDate(date));
+        assertEquals(message + " civil sunset millis", expected.getCivilSunsetMillisForDate(date),
+                actual.getCivilSunsetMillisForDate(date));
+
+        long[] sunrises = { expected.getAstronomicalSunriseMillisForDate(date),
+                expected.getNauticalSunriseMillisForDate(date), expected.getCivilSunriseMillisForDate(date),
+                expected.getOfficialSunriseMillisForDate(date) };
+        long[] sunsets = { expected.getAstronomicalSunsetMillisForDate(date),
+                expected.getNauticalSunsetMillisForDate(date), expected.getCivilSunsetMillisForDate(date),
+                expected.getOfficialSunsetMillisForDate(date) };
+
+        SolarEvents expectedEvents = expected.computeAllEvents(date);
+        SolarEvents actualEvents = actual.computeAllEvents(date);
+        for (int i = 0; i < SolarEvents.getZenithCount(); i++) {
+            String zenith = " zenith " + SolarEvents.getZenith(i).degrees();
+            assertEquals(message + zenith + " sunrise", expectedEvents.getSunrise(i), actualEvents.getSunrise(i));
+            assertEquals(message + zenith + " sunset", expectedEvents.getSunset(i), actualEvents.getSunset(i));
+            // all events of the date are the same as computed one by one
+            assertEquals(message + zenith + " single sunrise", sunrises[i], actualEvents.getSunrise(i));
+            assertEquals(message + zenith + " single sunset", sunsets[i], actualEvents.getSunset(i));
+            if (expectedEvents.getSunrise(i) == SolarEventCalculator.NO_EVENT) {
+                noEventCount++;
+            }
+            if (expectedEvents.getSunset(i) == SolarEventCalculator.NO_EVENT) {
+                noEventCount++;
+            }
+        }
+
+        return noEventCount;
+    }
+
+    private static void assertSameCalendar(String message, Calendar expected, Calendar actual) {
+        if (expected == null) {
+            assertNull(message, actual);
+        } else {
+            assertEquals(message, expected.getTimeInMillis(), actual.getTimeInMillis());
+            assertEquals(message, expected.getTimeZone().getID(), actual.getTimeZone().getID());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import ru.neverdark.phototools.azimuth.core.DatabaseSchema;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Upgrades databases of every earlier version and checks that no location is
+ * lost. Version 1 is the only released one, so its upgrade is the path of the
+ * users
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseHelperTest {
+    private static final String DATABASE_NAME = "migration_test";
+    private static final String[] UNIQUE_NAMES = {"Home", "Home (2)", "Lake", "Bridge", "Tower"};
+    private static final String[] DUPLICATED_NAMES = {"Home", "Lake", "Home", "Home (2)", "Home", "Lake", "Tower"};
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void upgradeFrom1RenamesDuplicates() {
+        createDatabase(1, DUPLICATED_NAMES);
+        checkUpgrade(DUPLICATED_NAMES.length,
+                "Home", "Lake", "Home (3)", "Home (2)", "Home (4)", "Lake (2)", "Tower");
+    }
+
+    @Test
+    public void upgradeFrom2RenamesDuplicates() {
+        createDatabase(2, DUPLICATED_NAMES);
+        checkUpgrade(DUPLICATED_NAMES.length,
+                "Home", "Lake", "Home (3)", "Home (2)", "Home (4)", "Lake (2)", "Tower");
+    }
+
+    @Test
+    public void upgradeFrom3RenamesDuplicates() {
+        createDatabase(3, DUPLICATED_NAMES);
+        checkUpgrade(DUPLICATED_NAMES.length,
+                "Home", "Lake", "Home (3)", "Home (2)", "Home (4)", "Lake (2)", "Tower");
+    }
+
+    @Test
+    public void upgradeFrom1() {
+        createDatabase(1, UNIQUE_NAMES);
+        checkUpgrade(UNIQUE_NAMES.length, UNIQUE_NAMES);
+    }
+
+    @Test
+    public void upgradeFrom2() {
+        createDatabase(2, UNIQUE_NAMES);
+        checkUpgrade(UNIQUE_NAMES.length, UNIQUE_NAMES);
+    }
+
+    @Test
+    public void upgradeFrom3() {
+        createDatabase(3, UNIQUE_NAMES);
+        checkUpgrade(UNIQUE_NAMES.length, UNIQUE_NAMES);
+    }
+
+    @Test
+    public void upgradeFrom4() {
+        createDatabase(4, UNIQUE_NAMES);
+        checkUpgrade(UNIQUE_NAMES.length, UNIQUE_NAMES);
+    }
+
+    @Test
+    public void upgradeFrom5() {
+        createDatabase(5, UNIQUE_NAMES);
+        checkUpgrade(UNIQUE_NAMES.length, UNIQUE_NAMES);
+    }
+
+    /**
+     * Creates database of the given version the way the older application
+     * did, the first schema migrated up to the version
+     *
+     * @param version schema version
+     * @param names   names of the locations, in the order of insertion
+     */
+    private void createDatabase(int version, String[] names) {
+        SQLiteDatabase db = mContext.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+        try {
+            db.execSQL(DatabaseSchema.CREATE_LOCATIONS_QUERY);
+            DatabaseHelper.migrate(db, 1, version);
+
+            for (int i = 0; i < names.length; i++) {
+                double latitude = 10 + i;
+                double longitude = 20 + i;
+                ContentValues values = new ContentValues();
+                values.put(LocationsDbAdapter.KEY_LOCATION_NAME, names[i]);
+                values.put(LocationsDbAdapter.KEY_LATITUDE, latitude);
+                values.put(LocationsDbAdapter.KEY_LONGITUDE, longitude);
+                values.put(LocationsDbAdapter.KEY_LAST_ACCESS, 1000 - i);
+                values.put(LocationsDbAdapter.KEY_MAP_TYPE, 1);
+                values.put(LocationsDbAdapter.KEY_CAMERA_ZOOM, 14f);
+                if (version >= 5) {
+                    values.put(LocationsDbAdapter.KEY_GEOHASH, DatabaseSchema.getGeohash(latitude, longitude));
+                }
+                db.insertOrThrow("locations", null, values);
+            }
+
+            db.setVersion(version);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Opens the database with the helper, which upgrades it, and checks the
+     * locations
+     *
+     * @param count number of locations before the upgrade
+     * @param names expected names by the order of insertion
+     */
+    private void checkUpgrade(int count, String... names) {
+        DatabaseHelper helper = new DatabaseHelper(mContext, DATABASE_NAME);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+            assertEquals(count, count(db, "select count(*) from locations;"));
+            assertEquals(count, count(db, "select count(*) from location_names;"));
+
+            Cursor cursor = db.rawQuery("select location_name from locations order by _id;", null);
+            try {
+                String[] actual = new String[cursor.getCount()];
+                for (int i = 0; cursor.moveToNext(); i++) {
+                    actual[i] = cursor.getString(0);
+                }
+                assertEquals(Arrays.asList(names), Arrays.asList(actual));
+
+                Set<String> unique = new HashSet<String>(Arrays.asList(actual));
+                assertEquals(count, unique.size());
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    private static long count(SQLiteDatabase db, String query) {
+        Cursor cursor = db.rawQuery(query, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
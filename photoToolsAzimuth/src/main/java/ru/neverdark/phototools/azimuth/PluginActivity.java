@@ -18,19 +18,25 @@ package ru.neverdark.phototools.azimuth;
 import android.app.SearchManager;
 import android.content.Context;
 import android.content.Intent;
+import android.database.MatrixCursor;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Environment;
 import android.support.v4.view.MenuItemCompat;
 import android.support.v4.widget.DrawerLayout;
+import android.support.v4.widget.SimpleCursorAdapter;
 import android.support.v7.app.ActionBarDrawerToggle;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.SearchView;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.ContextMenu;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.TextView;
 
@@ -38,7 +44,10 @@ import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 
@@ -46,6 +55,10 @@ import ru.neverdark.abs.OnCallback;
 import ru.neverdark.abs.UfoFragmentActivity;
 import ru.neverdark.phototools.azimuth.async.AsyncCalculator;
 import ru.neverdark.phototools.azimuth.async.AsyncGeoCoder;
+import ru.neverdark.phototools.azimuth.async.AsyncLocationTransfer;
+import ru.neverdark.phototools.azimuth.async.AsyncSuggestions;
+import ru.neverdark.phototools.azimuth.core.LocationFileFormat;
+import ru.neverdark.phototools.azimuth.core.Place;
 import ru.neverdark.phototools.azimuth.db.LocationRecord;
 import ru.neverdark.phototools.azimuth.db.LocationsAdapter;
 import ru.neverdark.phototools.azimuth.dialogs.ConfirmDialog;
@@ -59,13 +72,18 @@ import ru.neverdark.phototools.azimuth.utils.Common;
 import ru.neverdark.phototools.azimuth.utils.Constants;
 import ru.neverdark.phototools.azimuth.utils.Log;
 import ru.neverdark.phototools.azimuth.utils.Settings;
+import ru.neverdark.phototools.azimuth.utils.Trace;
 
 /**
  * Main application activity
  */
 public class PluginActivity extends UfoFragmentActivity {
     private static final int RESULT_SETTINGS = 101;
+    private static final int RESULT_IMPORT = 102;
+    private static final String EXPORT_FILE_NAME = "azimuth_locations.";
     private ListView mLocationList;
+    private View mLocationDrawer;
+    private EditText mLocationFilter;
     private Context mContext;
     private MenuItem mMenuItemSearch;
     private TimeZone mTimeZone;
@@ -73,6 +91,8 @@ public class PluginActivity extends UfoFragmentActivity {
     private MenuItem mMenuItemTZ;
     private MenuItem mMenuSave;
     private LocationsAdapter mAdapter;
+    private AsyncCalculator mCalculator;
+    private AsyncSuggestions mSuggestions;
     private LocationRecord mLocationRecord;
     private CardView mMapInfoCard;
     private TextView mSunInfoTv;
@@ -100,6 +120,8 @@ public class PluginActivity extends UfoFragmentActivity {
         setDrawerLayout((DrawerLayout) findViewById(R.id.drawer_layout));
         setDrawerToggle(new ActionBarDrawerToggle(this, getDrawerLayout(), R.string.open_drawer, R.string.close_drawer));
         mLocationList = (ListView) findViewById(R.id.location_list);
+        mLocationDrawer = findViewById(R.id.location_drawer);
+        mLocationFilter = (EditText) findViewById(R.id.location_filter);
 
         mMapInfoCard = (CardView) findViewById(R.id.map_info_card);
         mSunInfoTv = (TextView) findViewById(R.id.map_sun_tv);
@@ -118,6 +140,11 @@ public class PluginActivity extends UfoFragmentActivity {
     @Override
     public void onDestroy() {
         Log.enter();
+        mCalculator.shutdown();
+        if (mSuggestions != null) {
+            mSuggestions.shutdown();
+        }
+        mAdapter.release();
         MapApi.freeInstance();
         super.onDestroy();
     }
@@ -156,6 +183,7 @@ public class PluginActivity extends UfoFragmentActivity {
         getDrawerLayout().setDrawerListener(getDrawerToggle());
         mLocationList.setOnItemClickListener(new LocationListClickListener());
         registerForContextMenu(mLocationList);
+        mLocationFilter.addTextChangedListener(new LocationFilterWatcher());
         mMapInfoCard.setOnClickListener(new CardInfoClickListener());
     }
 
@@ -175,7 +203,13 @@ public class PluginActivity extends UfoFragmentActivity {
             searchView.setSearchableInfo(searchManager.getSearchableInfo(getComponentName()));
             searchView.setIconifiedByDefault(true);
             searchView.setQueryHint(getString(R.string.search_hint));
-            searchView.setOnQueryTextListener(new QueryTextListener());
+            QueryTextListener listener = new QueryTextListener(searchView);
+            searchView.setOnQueryTextListener(listener);
+            searchView.setOnSuggestionListener(listener);
+            if (mSuggestions != null) {
+                mSuggestions.shutdown();
+            }
+            mSuggestions = new AsyncSuggestions(mContext, listener);
         } else {
             MenuItemCompat.setActionView(mMenuItemSearch, null);
         }
@@ -194,10 +228,10 @@ public class PluginActivity extends UfoFragmentActivity {
         switch (item.getItemId()) {
             case android.R.id.home:
                 if (getDrawerToggle().isDrawerIndicatorEnabled()) {
-                    if (getDrawerLayout().isDrawerOpen(mLocationList)) {
-                        getDrawerLayout().closeDrawer(mLocationList);
+                    if (getDrawerLayout().isDrawerOpen(mLocationDrawer)) {
+                        getDrawerLayout().closeDrawer(mLocationDrawer);
                     } else {
-                        getDrawerLayout().openDrawer(mLocationList);
+                        getDrawerLayout().openDrawer(mLocationDrawer);
                     }
                 }
                 break;
@@ -238,6 +272,15 @@ public class PluginActivity extends UfoFragmentActivity {
             case R.id.item_saveLocation:
                 showSaveLocationDialog();
                 break;
+            case R.id.item_importLocations:
+                showImportFileChooser();
+                break;
+            case R.id.item_exportCsv:
+                exportLocations(LocationFileFormat.CSV);
+                break;
+            case R.id.item_exportGpx:
+                exportLocations(LocationFileFormat.GPX);
+                break;
         }
 
         return true;
@@ -261,6 +304,30 @@ public class PluginActivity extends UfoFragmentActivity {
         }
     }
 
+    private void showImportFileChooser() {
+        if (Constants.PAID) {
+            Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+            intent.setType("*/*");
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            startActivityForResult(Intent.createChooser(intent, getString(R.string.chooseLocationsFile)),
+                    RESULT_IMPORT);
+        } else {
+            gotoDonate();
+        }
+    }
+
+    private void exportLocations(LocationFileFormat format) {
+        if (Constants.PAID) {
+            File directory = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+            File file = new File(directory, EXPORT_FILE_NAME.concat(format.getExtension()));
+            AsyncLocationTransfer transfer = AsyncLocationTransfer.forExport(mContext, file, format);
+            transfer.setCallback(new LocationTransferListener(file));
+            transfer.execute();
+        } else {
+            gotoDonate();
+        }
+    }
+
     private void showZonePickerDialog() {
         ZonePickerDialog dialog = ZonePickerDialog.getInstance(mContext);
         dialog.setCallback(new ZonePickerListener());
@@ -294,6 +361,7 @@ public class PluginActivity extends UfoFragmentActivity {
         }
 
         mCalendar = Calendar.getInstance();
+        mCalculator = new AsyncCalculator(this, new CalculationResultListener());
         mAdapter = new LocationsAdapter(mContext);
         mLocationList.setAdapter(mAdapter);
         int title = Constants.PAID ? R.string.app_title : R.string.app_title_free;
@@ -308,14 +376,14 @@ public class PluginActivity extends UfoFragmentActivity {
     public void onResume() {
         Log.enter();
         super.onResume();
+        // settings of the lines may be changed by SettingsActivity
+        MapApi.getInstance(mContext).reloadSettings();
         if (!Constants.PAID) {
             getDrawerLayout().setDrawerLockMode(DrawerLayout.LOCK_MODE_LOCKED_CLOSED);
         }
         if (Settings.isShowTip(mContext)) {
             Common.showMessage(mContext, R.string.startupHint);
         }
-
-        mAdapter.openDb();
     }
 
     private void showErrorDialog(String errorText) {
@@ -330,7 +398,8 @@ public class PluginActivity extends UfoFragmentActivity {
             MapApi.getInstance(mContext).saveState();
         }
 
-        mAdapter.closeDb();
+        MapApi.getInstance(mContext).traceStats();
+        Trace.flush();
         super.onPause();
     }
 
@@ -340,12 +409,7 @@ public class PluginActivity extends UfoFragmentActivity {
 
     private void calculate(LatLng location) {
         boolean isInternetTimezone = Settings.isInternetTimeZone(mContext);
-        AsyncCalculator asyncCalc = new AsyncCalculator(this, new CalculationResultListener());
-        asyncCalc.setIsInternetTimeZone(isInternetTimezone);
-        asyncCalc.setTimeZone(mTimeZone);
-        asyncCalc.setLocation(location);
-        asyncCalc.setCalendar(mCalendar);
-        asyncCalc.execute();
+        mCalculator.calculate(location, mCalendar, mTimeZone, isInternetTimezone);
     }
 
     private void recalculate() {
@@ -363,13 +427,20 @@ public class PluginActivity extends UfoFragmentActivity {
             case RESULT_SETTINGS:
                 recalculate();
                 break;
+            case RESULT_IMPORT:
+                if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                    AsyncLocationTransfer transfer = AsyncLocationTransfer.forImport(mContext, data.getData());
+                    transfer.setCallback(new LocationTransferListener(null));
+                    transfer.execute();
+                }
+                break;
         }
     }
 
     private class LocationListClickListener implements android.widget.AdapterView.OnItemClickListener {
         @Override
         public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-            getDrawerLayout().closeDrawer(mLocationList);
+            getDrawerLayout().closeDrawer(mLocationDrawer);
             mLocationRecord = mAdapter.getItem(position);
             mAdapter.updateAccessTime(mLocationRecord);
             MapApi.getInstance(mContext).locationToMap(mLocationRecord);
@@ -379,7 +450,25 @@ public class PluginActivity extends UfoFragmentActivity {
         }
     }
 
-    private class QueryTextListener implements SearchView.OnQueryTextListener {
+    private class QueryTextListener implements SearchView.OnQueryTextListener, SearchView.OnSuggestionListener,
+            AsyncSuggestions.OnSuggestionsListener {
+        private final String[] mColumns = {"_id", "name", "coordinates"};
+        private final SimpleCursorAdapter mSuggestionsAdapter;
+        private List<Place> mPlaces = new ArrayList<Place>();
+
+        public QueryTextListener(SearchView searchView) {
+            mSuggestionsAdapter = new SimpleCursorAdapter(mContext, R.layout.location_row, null,
+                    new String[]{mColumns[1], mColumns[2]},
+                    new int[]{R.id.location_name, R.id.location_coordinates}, 0);
+            searchView.setSuggestionsAdapter(mSuggestionsAdapter);
+        }
+
+        private void showLocation(LatLng coordinates, String name) {
+            mLocationRecord = null;
+            getSupportActionBar().setSubtitle(name);
+            mMapInfoCard.setVisibility(View.GONE);
+            MapApi.getInstance(mContext).moveCamera(coordinates);
+        }
 
         private void startSearchProcess(String query) {
             AsyncGeoCoder geoCoder = new AsyncGeoCoder(mContext, query);
@@ -396,10 +485,35 @@ public class PluginActivity extends UfoFragmentActivity {
 
         @Override
         public boolean onQueryTextChange(String newText) {
+            mSuggestions.suggest(newText);
+            return false;
+        }
+
+        @Override
+        public void onSuggestions(String query, List<Place> places) {
+            mPlaces = places;
+            MatrixCursor cursor = new MatrixCursor(mColumns, places.size());
+            for (int i = 0; i < places.size(); i++) {
+                Place place = places.get(i);
+                String coord = String.format(Locale.US, "%f, %f", place.getLatitude(), place.getLongitude());
+                cursor.addRow(new Object[]{i, place.getName(), coord});
+            }
+            mSuggestionsAdapter.changeCursor(cursor);
+        }
 
+        @Override
+        public boolean onSuggestionSelect(int position) {
             return false;
         }
 
+        @Override
+        public boolean onSuggestionClick(int position) {
+            Place place = mPlaces.get(position);
+            MenuItemCompat.collapseActionView(mMenuItemSearch);
+            showLocation(new LatLng(place.getLatitude(), place.getLongitude()), place.getName());
+            return true;
+        }
+
         private class GeoCoderListener implements AsyncGeoCoder.OnGeoCoderListener {
             @Override
             public void onGetResultFail() {
@@ -409,10 +523,7 @@ public class PluginActivity extends UfoFragmentActivity {
             @Override
             public void onGetResultSuccess(LatLng coordinates, String searchString) {
                 if (coordinates != null) {
-                    mLocationRecord = null;
-                    getSupportActionBar().setSubtitle(searchString);
-                    mMapInfoCard.setVisibility(View.GONE);
-                    MapApi.getInstance(mContext).moveCamera(coordinates);
+                    showLocation(coordinates, searchString);
                 } else {
                     String error = String.format(getString(R.string.error_notFound), searchString);
                     showErrorDialog(error);
@@ -435,6 +546,11 @@ public class PluginActivity extends UfoFragmentActivity {
             showErrorDialog(getString(R.string.error_timeZoneIsNotDefined));
         }
 
+        @Override
+        public void onCalculationError() {
+            showErrorDialog(getString(R.string.error_calculation));
+        }
+
         @Override
         public void onGetResultSuccess(SunCalculator.CalculationResult calculationResult) {
             int color = 0;
@@ -445,6 +561,7 @@ public class PluginActivity extends UfoFragmentActivity {
             double sunriseAzimuth = calculationResult.getSunriseAzimuth();
 
             MapApi.getInstance(mContext).setAzimuthData(altitude, azimuth, sunsetAzimuth, sunriseAzimuth);
+            MapApi.getInstance(mContext).setSunPath(calculationResult.getSunPath());
             MapApi.getInstance(mContext).drawAzimuth(calculationResult.getLocation());
 
             if (altitude < 0) {
@@ -522,15 +639,7 @@ public class PluginActivity extends UfoFragmentActivity {
         @Override
         public void onPositiveClick(LocationRecord data) {
             getSupportActionBar().setSubtitle(data.getLocationName());
-            if (data.getId() == -1L) {
-                mAdapter.addItem(data);
-            } else {
-                if (mAdapter.isLocationExists(data)) {
-                    mAdapter.updateItem(data);
-                } else {
-                    mAdapter.addItem(data);
-                }
-            }
+            mAdapter.saveItem(data);
         }
     }
 
@@ -547,6 +656,48 @@ public class PluginActivity extends UfoFragmentActivity {
         }
     }
 
+    private class LocationTransferListener implements AsyncLocationTransfer.OnTransferListener {
+        private final File mExportFile;
+
+        /**
+         * Constructor
+         *
+         * @param exportFile destination file of export or null for import
+         */
+        public LocationTransferListener(File exportFile) {
+            mExportFile = exportFile;
+        }
+
+        @Override
+        public void onTransferFail() {
+            showErrorDialog(getString(R.string.error_locationTransfer));
+        }
+
+        @Override
+        public void onTransferSuccess(int count, long rowsPerSecond) {
+            if (mExportFile != null) {
+                Common.showMessage(mContext, getString(R.string.locationsExported, count, mExportFile.getPath()));
+            } else {
+                Common.showMessage(mContext, getString(R.string.locationsImported, count, rowsPerSecond));
+            }
+        }
+    }
+
+    private class LocationFilterWatcher implements TextWatcher {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            mAdapter.setFilter(s.toString());
+        }
+    }
+
     private class CardInfoClickListener implements View.OnClickListener {
         @Override
         public void onClick(View v) {
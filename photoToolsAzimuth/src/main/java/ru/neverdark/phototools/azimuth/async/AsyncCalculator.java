@@ -17,33 +17,54 @@ package ru.neverdark.phototools.azimuth.async;
 
 import android.app.ProgressDialog;
 import android.content.Context;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 
 import com.google.android.gms.maps.model.LatLng;
 
 import java.util.Calendar;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ru.neverdark.phototools.azimuth.R;
+import ru.neverdark.phototools.azimuth.core.SunPath;
 import ru.neverdark.phototools.azimuth.model.GoogleTimeZone;
 import ru.neverdark.phototools.azimuth.model.SunCalculator;
 import ru.neverdark.phototools.azimuth.utils.Constants;
+import ru.neverdark.phototools.azimuth.utils.Log;
+import ru.neverdark.phototools.azimuth.utils.Settings;
+import ru.neverdark.phototools.azimuth.utils.Trace;
 
 /**
- * Class provides an asynchronous computation azimuth
+ * Class provides an asynchronous computation azimuth. Only the latest
+ * requested calculation is delivered: a new request cancels the running one,
+ * including its time zone download, and calculations waiting in the queue are
+ * skipped. Methods must be called from the UI thread, results are delivered
+ * to the UI thread
  */
-public class AsyncCalculator extends AsyncTask<Void, Void, Integer> {
+public class AsyncCalculator {
+    private static final String TAG = "AsyncCalculator";
+    private static final int QUEUE_CAPACITY = 2;
+    private static final int KEEP_ALIVE_SECONDS = 30;
 
-    private SunCalculator.CalculationResult mCalcResult;
-    private Calendar mCalendar;
-    private OnCalculationResultListener mCallback;
-    private Context mContext;
+    private final Context mContext;
+    private final OnCalculationResultListener mCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor mExecutor;
+    // used by the worker only, sun paths come back to it from the UI thread
+    private final SunCalculator mSunCalculator = new SunCalculator();
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private final AtomicInteger mSupersededCount = new AtomicInteger();
+    private volatile Calculation mRunning;
     private ProgressDialog mDialog;
-    private GoogleTimeZone mGoogleTimeZone;
-    private boolean mIsIternetTimeZone;
-    private LatLng mLocaiton;
-    ;
-    private TimeZone mTimeZone;
+    private SunPath mShownPath;
+    private int mMaxQueueDepth;
+    private long mLastLatency;
 
     /**
      * Constructor
@@ -53,9 +74,11 @@ public class AsyncCalculator extends AsyncTask<Void, Void, Integer> {
      */
     public AsyncCalculator(Context context, OnCalculationResultListener callback) {
         mContext = context;
-        mGoogleTimeZone = new GoogleTimeZone(context);
         mCallback = callback;
-        mIsIternetTimeZone = false;
+        // one worker, the queue only holds calculations not yet known to be stale
+        mExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadPoolExecutor.DiscardOldestPolicy());
+        mExecutor.allowCoreThreadTimeOut(true);
     }
 
     /**
@@ -69,109 +92,106 @@ public class AsyncCalculator extends AsyncTask<Void, Void, Integer> {
         mDialog.show();
     }
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see android.os.AsyncTask#doInBackground(Params[])
-     */
-    @Override
-    protected Integer doInBackground(Void... params) {
-        int year = mCalendar.get(Calendar.YEAR);
-        int month = mCalendar.get(Calendar.MONTH);
-        int day = mCalendar.get(Calendar.DAY_OF_MONTH);
-        int hour = mCalendar.get(Calendar.HOUR_OF_DAY);
-        int minute = mCalendar.get(Calendar.MINUTE);
-
-        int requestStatus = Constants.STATUS_FAIL;
-
-        // "Internet time zone" settings enabled
-        if (mIsIternetTimeZone) {
-            mGoogleTimeZone.setCalendar(mCalendar);
-            mGoogleTimeZone.setLocation(mLocaiton);
-            // gets time zone from Google servers
-            requestStatus = mGoogleTimeZone.requestTimeZone();
-            if (requestStatus == Constants.STATUS_SUCCESS) {
-                mTimeZone = mGoogleTimeZone.getTimeZone();
-            }
-        } else {
-            // if user have selected time zone
-            if (mTimeZone != null) {
-                requestStatus = Constants.STATUS_SUCCESS;
-            }
-        }
-
-        if (requestStatus == Constants.STATUS_SUCCESS) {
-            Calendar calendar = Calendar.getInstance(mTimeZone);
-            calendar.set(year, month, day, hour, minute);
-
-            SunCalculator sunCalc = new SunCalculator();
-            mCalcResult = sunCalc.getPosition(calendar, mLocaiton);
+    private void dismissDialog() {
+        if (mDialog != null) {
+            mDialog.dismiss();
+            mDialog = null;
         }
-
-        return requestStatus;
     }
 
-    /*
-     * (non-Javadoc)
+    /**
+     * Starts calculation, previous calculations are cancelled
      *
-     * @see android.os.AsyncTask#onPostExecute(java.lang.Object)
+     * @param location           location for calculation
+     * @param calendar           calendar with date for calculation, copied
+     * @param timeZone           time zone selected by user, used if time zone
+     *                           from the Internet is not requested
+     * @param isInternetTimeZone true for use time zone from the Internet
      */
-    @Override
-    protected void onPostExecute(Integer result) {
-        mDialog.dismiss();
+    public void calculate(LatLng location, Calendar calendar, TimeZone timeZone, boolean isInternetTimeZone) {
+        Calculation calculation = new Calculation(mGeneration.incrementAndGet(), location,
+                (Calendar) calendar.clone(), timeZone, isInternetTimeZone, Settings.isSunPathShow(mContext));
 
-        if (result == Constants.STATUS_SUCCESS) {
-            mCallback.onGetResultSuccess(mCalcResult);
-        } else {
-            mCallback.onGetResultFail();
+        Calculation running = mRunning;
+        if (running != null) {
+            running.cancel();
+        }
+
+        int queueDepth = mExecutor.getQueue().size();
+        mMaxQueueDepth = Math.max(mMaxQueueDepth, queueDepth);
+        Trace.variable(TAG, "queueDepth", queueDepth);
+
+        if (mDialog == null) {
+            createDialog();
         }
+        mExecutor.execute(calculation);
     }
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see android.os.AsyncTask#onPreExecute()
+    /**
+     * Cancels all calculations and stops the worker. Must be called when the
+     * activity is destroyed
      */
-    @Override
-    protected void onPreExecute() {
-        createDialog();
+    public void shutdown() {
+        mGeneration.incrementAndGet();
+        Calculation running = mRunning;
+        if (running != null) {
+            running.cancel();
+        }
+        mExecutor.shutdownNow();
+        dismissDialog();
     }
 
     /**
-     * Sets calendar with date for calculation
-     *
-     * @param calendar calendar with date for calculation
+     * @return time from request to delivery of the last result in
+     * milliseconds
      */
-    public void setCalendar(Calendar calendar) {
-        mCalendar = calendar;
+    public long getLastLatency() {
+        return mLastLatency;
     }
 
     /**
-     * Notifies AsyncCalculator to use a time zone from the Internet
-     *
-     * @param isInternetTimezone true for use time zone from the Internet
+     * @return maximum number of calculations found waiting in the queue
      */
-    public void setIsInternetTimeZone(boolean isInternetTimezone) {
-        mIsIternetTimeZone = isInternetTimezone;
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth;
     }
 
     /**
-     * Sets location for calculation
-     *
-     * @param location location for calculation
+     * @return number of calculations skipped or cancelled by newer requests
      */
-    public void setLocation(LatLng location) {
-        mLocaiton = location;
+    public int getSupersededCount() {
+        return mSupersededCount.get();
     }
 
     /**
-     * Sets time zone for calculation. Must be called after notification
-     * AsyncCalculator to don't use a time zone from Internet
+     * Delivers result of the calculation, called on the UI thread
      *
-     * @param timeZone time zone calculation
+     * @param calculation finished calculation
      */
-    public void setTimeZone(TimeZone timeZone) {
-        mTimeZone = timeZone;
+    private void deliver(Calculation calculation) {
+        if (calculation.isStale()) {
+            mSupersededCount.incrementAndGet();
+            // never shown, so it is not read by the UI
+            if (calculation.mCalcResult != null) {
+                mSunCalculator.recycle(calculation.mCalcResult.getSunPath());
+            }
+            return;
+        }
+
+        dismissDialog();
+        mLastLatency = SystemClock.elapsedRealtime() - calculation.mRequestTime;
+        Trace.variable(TAG, "latencyMs", mLastLatency);
+
+        if (calculation.mError != null) {
+            mCallback.onCalculationError();
+        } else if (calculation.mStatus == Constants.STATUS_SUCCESS) {
+            mCallback.onGetResultSuccess(calculation.mCalcResult);
+            // the listener has replaced the shown path by the new one
+            mSunCalculator.recycle(mShownPath);
+            mShownPath = calculation.mCalcResult.getSunPath();
+        } else {
+            mCallback.onGetResultFail();
+        }
     }
 
     /**
@@ -184,12 +204,123 @@ public class AsyncCalculator extends AsyncTask<Void, Void, Integer> {
         public void onGetResultFail();
 
         /**
-         * Handler for successfully calculation
+         * Handler for successfully calculation. The sun path of the previous
+         * result must not be used after this call, it is reused by the next
+         * calculation
          *
          * @param calculationResult calculation result data
          */
         public void onGetResultSuccess(
                 SunCalculator.CalculationResult calculationResult);
+
+        /**
+         * Handler for calculation failed with an unexpected error
+         */
+        public void onCalculationError();
     }
 
+    /**
+     * One requested calculation
+     */
+    private class Calculation implements Runnable {
+        private final int mGenerationNumber;
+        private final LatLng mLocation;
+        private final Calendar mCalendar;
+        private final boolean mIsInternetTimeZone;
+        private final boolean mIsSunPathNeeded;
+        private final GoogleTimeZone mGoogleTimeZone;
+        private final long mRequestTime;
+        private TimeZone mTimeZone;
+        private int mStatus = Constants.STATUS_FAIL;
+        private SunCalculator.CalculationResult mCalcResult;
+        private RuntimeException mError;
+
+        private Calculation(int generation, LatLng location, Calendar calendar, TimeZone timeZone,
+                            boolean isInternetTimeZone, boolean isSunPathNeeded) {
+            mGenerationNumber = generation;
+            mLocation = location;
+            mCalendar = calendar;
+            mTimeZone = timeZone;
+            mIsInternetTimeZone = isInternetTimeZone;
+            mIsSunPathNeeded = isSunPathNeeded;
+            mGoogleTimeZone = new GoogleTimeZone(mContext);
+            mRequestTime = SystemClock.elapsedRealtime();
+        }
+
+        private boolean isStale() {
+            return mGenerationNumber != mGeneration.get();
+        }
+
+        /**
+         * Aborts time zone download, called from the UI thread
+         */
+        private void cancel() {
+            mGoogleTimeZone.cancel();
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            // published before the check, so a newer request either cancels it or is seen here
+            mRunning = this;
+            try {
+                if (isStale()) {
+                    mSupersededCount.incrementAndGet();
+                    return;
+                }
+                try {
+                    compute();
+                } catch (RuntimeException e) {
+                    // delivered as a failure, otherwise the progress dialog is never dismissed
+                    Log.message("Calculation failed: " + e);
+                    mError = e;
+                }
+            } finally {
+                mRunning = null;
+            }
+
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(Calculation.this);
+                }
+            });
+        }
+
+        private void compute() {
+            int year = mCalendar.get(Calendar.YEAR);
+            int month = mCalendar.get(Calendar.MONTH);
+            int day = mCalendar.get(Calendar.DAY_OF_MONTH);
+            int hour = mCalendar.get(Calendar.HOUR_OF_DAY);
+            int minute = mCalendar.get(Calendar.MINUTE);
+
+            int requestStatus = Constants.STATUS_FAIL;
+
+            // "Internet time zone" settings enabled
+            if (mIsInternetTimeZone) {
+                mGoogleTimeZone.setCalendar(mCalendar);
+                mGoogleTimeZone.setLocation(mLocation);
+                // gets time zone from Google servers
+                requestStatus = mGoogleTimeZone.requestTimeZone();
+                if (requestStatus == Constants.STATUS_SUCCESS) {
+                    mTimeZone = mGoogleTimeZone.getTimeZone();
+                }
+            } else {
+                // if user have selected time zone
+                if (mTimeZone != null) {
+                    requestStatus = Constants.STATUS_SUCCESS;
+                }
+            }
+
+            if (requestStatus == Constants.STATUS_SUCCESS && !isStale()) {
+                Calendar calendar = Calendar.getInstance(mTimeZone);
+                calendar.set(year, month, day, hour, minute);
+
+                mCalcResult = mSunCalculator.getPosition(calendar, mLocation, mIsSunPathNeeded);
+            }
+
+            mStatus = requestStatus;
+        }
+    }
 }
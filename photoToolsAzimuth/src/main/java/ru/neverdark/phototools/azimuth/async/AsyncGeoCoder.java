@@ -18,21 +18,37 @@ package ru.neverdark.phototools.azimuth.async;
 import android.app.ProgressDialog;
 import android.content.Context;
 import android.os.AsyncTask;
+import android.os.Handler;
 
 import com.google.android.gms.maps.model.LatLng;
 
 import ru.neverdark.phototools.azimuth.R;
+import ru.neverdark.phototools.azimuth.model.GeocodeCache;
 import ru.neverdark.phototools.azimuth.model.Geocoder;
 import ru.neverdark.phototools.azimuth.utils.Constants;
 import ru.neverdark.phototools.azimuth.utils.Log;
 
 /**
- * Class provides an asynchronous Geocoder functionality
+ * Class provides an asynchronous Geocoder functionality. Locations found
+ * before are taken from GeocodeCache, so repeated searches work without
+ * network
  */
 public class AsyncGeoCoder extends AsyncTask<Void, Void, Integer> {
+    /**
+     * Progress dialog is shown only if the search takes longer, so cached
+     * results do not blink it
+     */
+    private static final long DIALOG_DELAY = 300;
 
     private final Context mContext;
     private final String mSearchString;
+    private final Handler mHandler = new Handler();
+    private final Runnable mShowDialog = new Runnable() {
+        @Override
+        public void run() {
+            createDialog();
+        }
+    };
     private OnGeoCoderListener mCallback;
     private ProgressDialog mDialog;
     private LatLng mCoordinates;
@@ -64,20 +80,35 @@ public class AsyncGeoCoder extends AsyncTask<Void, Void, Integer> {
         Log.enter();
         int result = Constants.STATUS_FAIL;
 
-        Geocoder geocoder = new Geocoder(mContext);
-
-        if (geocoder.isOnline()) {
-            mCoordinates = geocoder.getFromLocation(mSearchString);
+        GeocodeCache cache = GeocodeCache.getInstance(mContext);
+        mCoordinates = cache.get(mSearchString);
+        if (mCoordinates != null) {
+            Log.message("Location from cache");
             result = Constants.STATUS_SUCCESS;
+        } else {
+            Geocoder geocoder = new Geocoder(mContext);
+
+            if (geocoder.isOnline()) {
+                mCoordinates = geocoder.getFromLocation(mSearchString);
+                if (mCoordinates != null) {
+                    cache.put(mSearchString, mCoordinates);
+                }
+                result = Constants.STATUS_SUCCESS;
+            }
         }
 
+        Log.variable("hitRatio", String.valueOf(cache.getHitRatio()));
+        Log.variable("evictions", String.valueOf(cache.getEvictions()));
         return result;
     }
 
     @Override
     protected void onPostExecute(Integer result) {
         Log.enter();
-        mDialog.dismiss();
+        mHandler.removeCallbacks(mShowDialog);
+        if (mDialog != null) {
+            mDialog.dismiss();
+        }
 
         if (mCallback != null) {
             if (result.equals(Constants.STATUS_SUCCESS)) {
@@ -91,7 +122,7 @@ public class AsyncGeoCoder extends AsyncTask<Void, Void, Integer> {
     @Override
     protected void onPreExecute() {
         Log.enter();
-        createDialog();
+        mHandler.postDelayed(mShowDialog, DIALOG_DELAY);
     }
 
     /**
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.async;
+
+import android.app.ProgressDialog;
+import android.content.Context;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+
+import ru.neverdark.phototools.azimuth.R;
+import ru.neverdark.phototools.azimuth.core.LocationFileFormat;
+import ru.neverdark.phototools.azimuth.core.LocationFileWriter;
+import ru.neverdark.phototools.azimuth.db.LocationsRepository;
+import ru.neverdark.phototools.azimuth.utils.Constants;
+import ru.neverdark.phototools.azimuth.utils.Log;
+
+/**
+ * Class provides an asynchronous import and export of the saved locations.
+ * The database is accessed through LocationsRepository, so the transfer is
+ * ordered with other changes and the list is reloaded after the import
+ */
+public class AsyncLocationTransfer extends AsyncTask<Void, Void, Integer> {
+    private final Context mContext;
+    private final Uri mSource;
+    private final File mDestination;
+    private final LocationFileFormat mFormat;
+    private OnTransferListener mCallback;
+    private ProgressDialog mDialog;
+    private int mCount;
+    private long mElapsedTime;
+
+    private AsyncLocationTransfer(Context context, Uri source, File destination, LocationFileFormat format) {
+        mContext = context;
+        mSource = source;
+        mDestination = destination;
+        mFormat = format;
+    }
+
+    /**
+     * Creates import of the locations
+     *
+     * @param context application context
+     * @param source  CSV, GPX or KML file
+     * @return transfer
+     */
+    public static AsyncLocationTransfer forImport(Context context, Uri source) {
+        return new AsyncLocationTransfer(context, source, null, null);
+    }
+
+    /**
+     * Creates export of the locations
+     *
+     * @param context     application context
+     * @param destination file for writing
+     * @param format      CSV or GPX
+     * @return transfer
+     */
+    public static AsyncLocationTransfer forExport(Context context, File destination, LocationFileFormat format) {
+        return new AsyncLocationTransfer(context, null, destination, format);
+    }
+
+    /**
+     * Creates and shows progress dialog
+     */
+    private void createDialog() {
+        Log.enter();
+        mDialog = new ProgressDialog(mContext);
+        mDialog.setCancelable(false);
+        mDialog.setTitle(R.string.locationTransfer_title);
+        mDialog.setMessage(mContext.getString(R.string.progress_dialog_message));
+        mDialog.show();
+    }
+
+    @Override
+    protected Integer doInBackground(Void... params) {
+        Log.enter();
+        int result = Constants.STATUS_FAIL;
+        long start = SystemClock.elapsedRealtime();
+
+        LocationsRepository repository = LocationsRepository.getInstance(mContext);
+        try {
+            int count = mSource != null ? importLocations(repository) : exportLocations(repository);
+            if (count >= 0) {
+                mCount = count;
+                result = Constants.STATUS_SUCCESS;
+            }
+        } catch (Exception e) {
+            Log.message("Transfer fail: " + e.getMessage());
+        }
+
+        mElapsedTime = SystemClock.elapsedRealtime() - start;
+        Log.variable("rowsPerSecond", String.valueOf(getRowsPerSecond()));
+        return result;
+    }
+
+    private int importLocations(LocationsRepository repository) throws IOException, InterruptedException {
+        InputStream input = mContext.getContentResolver().openInputStream(mSource);
+        if (input == null) {
+            throw new IOException("Cannot open " + mSource);
+        }
+
+        try {
+            return repository.importLocations(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    private int exportLocations(LocationsRepository repository) throws IOException, InterruptedException {
+        mDestination.getParentFile().mkdirs();
+        LocationFileWriter writer = LocationFileWriter.create(mFormat,
+                new OutputStreamWriter(new FileOutputStream(mDestination), "UTF-8"));
+        try {
+            return repository.exportLocations(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return number of transferred locations per second
+     */
+    private long getRowsPerSecond() {
+        return mCount * 1000L / Math.max(1, mElapsedTime);
+    }
+
+    @Override
+    protected void onPostExecute(Integer result) {
+        Log.enter();
+        mDialog.dismiss();
+
+        if (mCallback != null) {
+            if (result.equals(Constants.STATUS_SUCCESS)) {
+                mCallback.onTransferSuccess(mCount, getRowsPerSecond());
+            } else {
+                mCallback.onTransferFail();
+            }
+        }
+    }
+
+    @Override
+    protected void onPreExecute() {
+        Log.enter();
+        createDialog();
+    }
+
+    /**
+     * Sets object for calling callback function after completing transfer
+     *
+     * @param callback
+     */
+    public void setCallback(OnTransferListener callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * The interface provides callback methods for handle finishing transfer
+     */
+    public interface OnTransferListener {
+        /**
+         * Called when file cannot be read or written
+         */
+        public void onTransferFail();
+
+        /**
+         * Called when transfer is finished
+         *
+         * @param count         number of transferred locations
+         * @param rowsPerSecond transfer speed
+         */
+        public void onTransferSuccess(int count, long rowsPerSecond);
+    }
+}
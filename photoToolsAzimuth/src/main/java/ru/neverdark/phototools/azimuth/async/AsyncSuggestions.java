@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.async;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.neverdark.phototools.azimuth.core.Place;
+import ru.neverdark.phototools.azimuth.model.PlaceSearch;
+import ru.neverdark.phototools.azimuth.utils.Trace;
+
+/**
+ * Class provides search-as-you-type suggestions from PlaceSearch. Searches
+ * run on a background thread, only the suggestions for the latest query are
+ * delivered: queries waiting in the queue are replaced by newer ones and
+ * results of stale queries are dropped. Methods must be called from the UI
+ * thread, results are delivered to the UI thread
+ */
+public class AsyncSuggestions {
+    private static final String TAG = "AsyncSuggestions";
+    private static final int LIMIT = 10;
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private final Context mContext;
+    private final OnSuggestionsListener mCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor mExecutor;
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    /**
+     * Constructor
+     *
+     * @param context  application context
+     * @param callback callback object for suggestions
+     */
+    public AsyncSuggestions(Context context, OnSuggestionsListener callback) {
+        mContext = context;
+        mCallback = callback;
+        // one worker, the queue only holds the newest query
+        mExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(1), new ThreadPoolExecutor.DiscardOldestPolicy());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts search of suggestions, previous searches are cancelled
+     *
+     * @param query text typed by user
+     */
+    public void suggest(String query) {
+        mExecutor.execute(new Search(mGeneration.incrementAndGet(), query));
+    }
+
+    /**
+     * Cancels all searches and stops the worker. Must be called when the
+     * activity is destroyed
+     */
+    public void shutdown() {
+        mGeneration.incrementAndGet();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * The interface for suggestions handling
+     */
+    public interface OnSuggestionsListener {
+        /**
+         * Called with the suggestions for the latest query
+         *
+         * @param query  text typed by user
+         * @param places found places
+         */
+        public void onSuggestions(String query, List<Place> places);
+    }
+
+    /**
+     * One requested search
+     */
+    private class Search implements Runnable {
+        private final int mGenerationNumber;
+        private final String mQuery;
+        private List<Place> mPlaces;
+
+        private Search(int generation, String query) {
+            mGenerationNumber = generation;
+            mQuery = query;
+        }
+
+        private boolean isStale() {
+            return mGenerationNumber != mGeneration.get();
+        }
+
+        @Override
+        public void run() {
+            if (isStale()) {
+                return;
+            }
+
+            long begin = Trace.begin(TAG);
+            mPlaces = PlaceSearch.getInstance(mContext).find(mQuery, LIMIT);
+            Trace.end(TAG, begin);
+
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isStale()) {
+                        mCallback.onSuggestions(mQuery, mPlaces);
+                    }
+                }
+            });
+        }
+    }
+}
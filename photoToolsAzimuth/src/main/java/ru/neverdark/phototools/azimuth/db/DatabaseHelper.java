@@ -16,26 +16,81 @@
 package ru.neverdark.phototools.azimuth.db;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ru.neverdark.phototools.azimuth.core.DatabaseSchema;
 
 /**
  * Class takes care of opening the database if it exists, creating it if it does
  * not, and upgrading it as necessary.
+ * <p/>
+ * The schema is changed only by migrations. A new database is created with the
+ * first version of the schema and then migrated like an existing one, so every
+ * database goes through the same statements. For changing the schema add new
+ * migration to the end of the migrations of DatabaseSchema, existing migrations
+ * must never be changed.
+ * <p/>
+ * One helper is shared by the process, so all adapters use one connection,
+ * SQLiteDatabase serializes access of the threads to it.
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private final static String DATABASE_NAME = "appdata";
-    private final static int DATABASE_VERSION = 1;
-    private final static String CREATE_LOCATIONS_QUERY = "create table locations (_id integer primary key autoincrement, location_name text not null, latitude real not null, longitude real not null, last_access integer not null, map_type integer not null, camera_zoom real not null);";
+    /**
+     * Version which adds the unique index of the location names
+     */
+    private final static int UNIQUE_NAME_VERSION = 4;
+    /**
+     * Version which adds the geohash column
+     */
+    private final static int GEOHASH_VERSION = 5;
+    /**
+     * Version which adds the search name column
+     */
+    private final static int SEARCH_NAME_VERSION = 6;
+    final static int DATABASE_VERSION = DatabaseSchema.VERSION;
+    private static DatabaseHelper mInstance;
 
     /**
      * Constructor
      *
      * @param context application context
      */
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    private DatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructor for the database with the given name, used by tests
+     *
+     * @param context application context
+     * @param name    name of the database file
+     */
+    DatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Gets helper shared by the process, the database opened by it is never
+     * closed
+     *
+     * @param context application context
+     * @return helper
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new DatabaseHelper(context.getApplicationContext());
+        }
+
+        return mInstance;
     }
 
     /*
@@ -47,7 +102,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
-        db.execSQL(CREATE_LOCATIONS_QUERY);
+        db.execSQL(DatabaseSchema.CREATE_LOCATIONS_QUERY);
+        migrate(db, 1, DATABASE_VERSION);
     }
 
     /*
@@ -59,8 +115,125 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // TODO Auto-generated method stub
+        migrate(db, oldVersion, newVersion);
+    }
 
+    /**
+     * Applies migrations, called inside the transaction of SQLiteOpenHelper,
+     * so a failed migration leaves the database in the old version
+     *
+     * @param db         database
+     * @param oldVersion current schema version
+     * @param newVersion required schema version
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion; version < newVersion; version++) {
+            if (version + 1 == UNIQUE_NAME_VERSION) {
+                renameDuplicates(db);
+            }
+
+            for (String query : DatabaseSchema.getMigration(version + 1)) {
+                db.execSQL(query);
+            }
+
+            switch (version + 1) {
+                case GEOHASH_VERSION:
+                    fillGeohashes(db);
+                    break;
+                case SEARCH_NAME_VERSION:
+                    fillSearchNames(db);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Renames locations with the same name, so the unique index of the names
+     * can be created without losing saved locations. The oldest location
+     * keeps the name, the others get the first free suffix, like "Home (2)"
+     *
+     * @param db database
+     */
+    private static void renameDuplicates(SQLiteDatabase db) {
+        Set<String> names = new HashSet<String>();
+        List<Long> duplicateIds = new ArrayList<Long>();
+        List<String> duplicateNames = new ArrayList<String>();
+        Cursor cursor = db.rawQuery("select _id, location_name from locations order by _id;", null);
+        try {
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(1);
+                if (!names.add(name)) {
+                    duplicateIds.add(cursor.getLong(0));
+                    duplicateNames.add(name);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (duplicateIds.isEmpty()) {
+            return;
+        }
+
+        SQLiteStatement update = db.compileStatement("update locations set location_name = ? where _id = ?;");
+        try {
+            for (int i = 0; i < duplicateIds.size(); i++) {
+                String name;
+                int suffix = 2;
+                do {
+                    name = duplicateNames.get(i) + " (" + suffix + ")";
+                    suffix++;
+                } while (!names.add(name));
+
+                update.bindString(1, name);
+                update.bindLong(2, duplicateIds.get(i));
+                update.execute();
+            }
+        } finally {
+            update.close();
+        }
+    }
+
+    /**
+     * Computes geohashes of the existing locations, SQLite cannot compute
+     * them in the migration query
+     *
+     * @param db database
+     */
+    private static void fillGeohashes(SQLiteDatabase db) {
+        SQLiteStatement update = db.compileStatement("update locations set geohash = ? where _id = ?;");
+        Cursor cursor = db.rawQuery("select _id, latitude, longitude from locations;", null);
+        try {
+            while (cursor.moveToNext()) {
+                update.bindString(1, DatabaseSchema.getGeohash(cursor.getDouble(1), cursor.getDouble(2)));
+                update.bindLong(2, cursor.getLong(0));
+                update.execute();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+    }
+
+    /**
+     * Computes search names of the existing locations, the full-text index
+     * is filled by the update trigger
+     *
+     * @param db database
+     */
+    private static void fillSearchNames(SQLiteDatabase db) {
+        SQLiteStatement update = db.compileStatement("update locations set search_name = ? where _id = ?;");
+        Cursor cursor = db.rawQuery("select _id, location_name from locations;", null);
+        try {
+            while (cursor.moveToNext()) {
+                update.bindString(1, DatabaseSchema.getSearchName(cursor.getString(1)));
+                update.bindLong(2, cursor.getLong(0));
+                update.execute();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
     }
 
 }
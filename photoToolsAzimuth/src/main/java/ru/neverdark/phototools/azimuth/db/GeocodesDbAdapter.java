@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.google.android.gms.maps.model.LatLng;
+
+/**
+ * Class provides API for the geocoding results of the search queries
+ */
+public class GeocodesDbAdapter {
+    /**
+     * Name of field contains the normalized search query
+     */
+    public final static String KEY_QUERY = "query";
+    /**
+     * Name of field contains the latitude
+     */
+    public final static String KEY_LATITUDE = "latitude";
+    /**
+     * Name of field contains the longitude
+     */
+    public final static String KEY_LONGITUDE = "longitude";
+    /**
+     * Name of field contains the time the result was received
+     */
+    public final static String KEY_CREATED = "created";
+    /**
+     * Name of field contains the last access time
+     */
+    public final static String KEY_LAST_ACCESS = "last_access";
+    /**
+     * Name of the table contains a geocoding results
+     */
+    private final static String TABLE_NAME = "geocodes";
+
+    private Context mContext;
+    private SQLiteDatabase mDb;
+
+    /**
+     * Constructor
+     *
+     * @param context application context
+     */
+    public GeocodesDbAdapter(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Releases the database, the connection is shared by the process and
+     * stays open
+     */
+    public void close() {
+        mDb = null;
+    }
+
+    /**
+     * Opens database for read/write
+     *
+     * @return this object
+     * @throws SQLException If an error occurs when opening a database
+     */
+    public GeocodesDbAdapter open() throws SQLException {
+        mDb = DatabaseHelper.getInstance(mContext).getWritableDatabase();
+        return this;
+    }
+
+    /**
+     * Gets location of the query and updates its last access time
+     *
+     * @param query         normalized search query
+     * @param createdAfter  results received before this time (seconds since
+     *                      epoch) are not returned
+     * @return location or null if the query is not in the database
+     */
+    public LatLng fetchLocation(String query, long createdAfter) {
+        LatLng location = null;
+        String where = KEY_QUERY.concat(" = ? and ").concat(KEY_CREATED).concat(" > ?");
+        String[] whereArgs = {query, String.valueOf(createdAfter)};
+        String[] columns = {KEY_LATITUDE, KEY_LONGITUDE};
+        Cursor cursor = mDb.query(TABLE_NAME, columns, where, whereArgs, null, null, null);
+
+        if (cursor.moveToFirst()) {
+            location = new LatLng(cursor.getDouble(0), cursor.getDouble(1));
+        }
+        cursor.close();
+
+        if (location != null) {
+            ContentValues values = new ContentValues();
+            values.put(KEY_LAST_ACCESS, getTimeStamp());
+            mDb.update(TABLE_NAME, values, KEY_QUERY.concat(" = ?"), new String[]{query});
+        }
+
+        return location;
+    }
+
+    /**
+     * Saves location of the query, replaces previous value
+     *
+     * @param query    normalized search query
+     * @param location location
+     */
+    public void saveLocation(String query, LatLng location) {
+        long timeStamp = getTimeStamp();
+        ContentValues values = new ContentValues();
+        values.put(KEY_QUERY, query);
+        values.put(KEY_LATITUDE, location.latitude);
+        values.put(KEY_LONGITUDE, location.longitude);
+        values.put(KEY_CREATED, timeStamp);
+        values.put(KEY_LAST_ACCESS, timeStamp);
+        mDb.insertWithOnConflict(TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Deletes results received before the time
+     *
+     * @param createdBefore time in seconds since epoch
+     * @return number of deleted results
+     */
+    public int deleteExpired(long createdBefore) {
+        String where = KEY_CREATED.concat(" <= ?");
+        String[] whereArgs = {String.valueOf(createdBefore)};
+        return mDb.delete(TABLE_NAME, where, whereArgs);
+    }
+
+    /**
+     * Deletes least recently used results above the limit
+     *
+     * @param maxCount number of results to keep
+     * @return number of deleted results
+     */
+    public int trim(int maxCount) {
+        String where = String.format("%s not in (select %s from %s order by %s desc limit ?)",
+                KEY_QUERY, KEY_QUERY, TABLE_NAME, KEY_LAST_ACCESS);
+        String[] whereArgs = {String.valueOf(maxCount)};
+        return mDb.delete(TABLE_NAME, where, whereArgs);
+    }
+
+    /**
+     * Gets current timestamp in seconds
+     *
+     * @return timestamp
+     */
+    private long getTimeStamp() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
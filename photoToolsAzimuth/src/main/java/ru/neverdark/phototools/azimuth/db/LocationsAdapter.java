@@ -16,129 +16,157 @@
 package ru.neverdark.phototools.azimuth.db;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.support.v4.widget.CursorAdapter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
 
 import ru.neverdark.phototools.azimuth.R;
 import ru.neverdark.phototools.azimuth.utils.Log;
 
-public class LocationsAdapter extends ArrayAdapter<LocationRecord> {
-    private final List<LocationRecord> mObjects;
+/**
+ * Adapter of the saved locations list. The list is backed by a database
+ * cursor, so only rows of the visible items are read and records are created
+ * only for them. Changes and queries run in the background by
+ * LocationsRepository, the cursor is queried again after every change and the
+ * order of the list is kept by the database. The list may be filtered by the
+ * words of the location names
+ */
+public class LocationsAdapter extends CursorAdapter implements LocationsRepository.OnLocationsChangedListener {
     private final Context mContext;
-    private final int mResource;
-    private final LocationsDbAdapter mDb;
+    private final LocationsRepository mRepository;
+    private String mFilter = "";
+    /**
+     * Number of the latest load, results of older loads are dropped
+     */
+    private int mLoadGeneration;
+    private boolean mIsReleased;
 
     public LocationsAdapter(Context context) {
-        this(context, R.layout.location_row, new ArrayList<LocationRecord>());
-    }
-
-    private LocationsAdapter(Context context, int resource, List<LocationRecord> objects) {
-        super(context, resource, objects);
+        super(context, null, 0);
         mContext = context;
-        mResource = resource;
-        mObjects = objects;
-        mDb = new LocationsDbAdapter(mContext);
-        mDb.open();
-        mDb.fetchAllLocations(mObjects);
+        mRepository = LocationsRepository.getInstance(mContext);
+        mRepository.addListener(this);
+        reload();
     }
 
     @Override
-    public View getView(final int position, View convertView, ViewGroup parent) {
-        Log.enter();
-        View row = convertView;
-        RowHolder holder = null;
-
-        if (row == null) {
-            LayoutInflater inflater = (LayoutInflater) mContext
-                    .getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-            row = inflater.inflate(mResource, parent, false);
-            holder = new RowHolder();
-            holder.location_name = (TextView) row.findViewById(R.id.location_name);
-            holder.location_coordinates = (TextView) row.findViewById(R.id.location_coordinates);
-            row.setTag(holder);
-        } else {
-            holder = (RowHolder) row.getTag();
-        }
+    public View newView(Context context, Cursor cursor, ViewGroup parent) {
+        LayoutInflater inflater = (LayoutInflater) mContext
+                .getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        View row = inflater.inflate(R.layout.location_row, parent, false);
+        RowHolder holder = new RowHolder();
+        holder.location_name = (TextView) row.findViewById(R.id.location_name);
+        holder.location_coordinates = (TextView) row.findViewById(R.id.location_coordinates);
+        row.setTag(holder);
+        return row;
+    }
 
-        LocationRecord record = getItem(position);
+    @Override
+    public void bindView(View view, Context context, Cursor cursor) {
+        RowHolder holder = (RowHolder) view.getTag();
+        LocationRecord record = LocationsDbAdapter.readLocation(cursor);
         String coord = String.format(Locale.US, "%f, %f", record.getLatitude(), record.getLongitude());
         holder.location_coordinates.setText(coord);
         holder.location_name.setText(record.getLocationName());
-
-        return row;
     }
 
+    /**
+     * Gets location of the list item
+     *
+     * @param position item position
+     * @return location or null if position is out of the list
+     */
     @Override
-    public long getItemId(int position) {
-        return mObjects.get(position).getId();
-    }
-
-    public void openDb() {
-        if (!mDb.isOpen()) {
-            mDb.open();
+    public LocationRecord getItem(int position) {
+        Cursor cursor = getCursor();
+        if (cursor != null && cursor.moveToPosition(position)) {
+            return LocationsDbAdapter.readLocation(cursor);
         }
-    }
 
-    public void closeDb() {
-        if (mDb.isOpen()) {
-            mDb.close();
-        }
+        return null;
     }
 
-    public void removeItem(LocationRecord record) {
-        Log.enter();
-        mDb.deleteLocation(record.getId());
-        remove(record);
-        notifyDataSetChanged();
+    /**
+     * Stops loading and releases the cursor, must be called when the activity
+     * is destroyed
+     */
+    public void release() {
+        mIsReleased = true;
+        mLoadGeneration++;
+        mRepository.removeListener(this);
+        changeCursor(null);
     }
 
-    public void addItem(LocationRecord record) {
+    /**
+     * Reads locations from the database again
+     */
+    public void reload() {
         Log.enter();
-        long id = mDb.createLocation(record);
-        record.setId(id);
-        insert(record, 0);
-        notifyDataSetChanged();
+        final int generation = ++mLoadGeneration;
+        mRepository.loadLocations(mFilter, new LocationsRepository.Callback<Cursor>() {
+            @Override
+            public void onResult(Cursor cursor) {
+                if (cursor == null) {
+                    return;
+                }
+
+                if (generation == mLoadGeneration && !mIsReleased) {
+                    changeCursor(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+        });
     }
 
-    public void updateItem(LocationRecord record) {
-        Log.enter();
-        mDb.updateLocation(record);
-        moveItemToFirstPosition(record);
-        notifyDataSetChanged();
+    @Override
+    public void onLocationsChanged() {
+        reload();
     }
 
-    private void moveItemToFirstPosition(LocationRecord item) {
-        for (int i = mObjects.size() - 1; i >= 0; i--) {
-            if (mObjects.get(i).getId() == item.getId()) {
-                mObjects.remove(i);
-                break;
-            }
+    /**
+     * Shows only locations with the words starting with the words of the
+     * filter
+     *
+     * @param filter filter as typed by user, empty for all locations
+     */
+    public void setFilter(String filter) {
+        if (!mFilter.equals(filter)) {
+            mFilter = filter;
+            reload();
         }
-        insert(item, 0);
     }
 
-    public boolean isLocationExists(LocationRecord data) {
-        for (int i = mObjects.size() - 1; i >= 0; i--) {
-            if (mObjects.get(i).getId() == data.getId()) {
-                return true;
-            }
-        }
+    public void removeItem(LocationRecord record) {
+        Log.enter();
+        mRepository.removeLocation(record.getId());
+    }
 
-        return false;
+    /**
+     * Saves location, adds it if it was removed or not saved yet
+     *
+     * @param record location, id of the added location is set in it
+     */
+    public void saveItem(final LocationRecord record) {
+        Log.enter();
+        mRepository.saveLocation(record, new LocationsRepository.Callback<Long>() {
+            @Override
+            public void onResult(Long id) {
+                if (id != null) {
+                    record.setId(id);
+                }
+            }
+        });
     }
 
     public void updateAccessTime(LocationRecord record) {
         Log.enter();
-        mDb.udateLastAccessTime(record.getId());
-        moveItemToFirstPosition(record);
-        notifyDataSetChanged();
+        mRepository.touchLocation(record.getId());
     }
 
     private static class RowHolder {
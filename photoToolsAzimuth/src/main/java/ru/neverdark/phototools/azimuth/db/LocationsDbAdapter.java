@@ -18,13 +18,26 @@ package ru.neverdark.phototools.azimuth.db;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.List;
 import java.util.TimeZone;
 
+import ru.neverdark.phototools.azimuth.core.DatabaseSchema;
+import ru.neverdark.phototools.azimuth.core.LocationFileReader;
+import ru.neverdark.phototools.azimuth.core.LocationFileWriter;
+
 /**
  * Class provides API for interaction with database
  */
@@ -57,14 +70,27 @@ public class LocationsDbAdapter {
      * Name of field contains the camera zoom
      */
     public final static String KEY_CAMERA_ZOOM = "camera_zoom";
+    /**
+     * Name of field contains the geohash of the location, for the bounding
+     * box queries
+     */
+    public final static String KEY_GEOHASH = "geohash";
+    /**
+     * Name of field contains the location name prepared for the full-text
+     * search, see DatabaseSchema.getSearchName
+     */
+    public final static String KEY_SEARCH_NAME = "search_name";
     /**
      * Name of the table contains a locations
      */
     private final static String TABLE_NAME = "locations";
+    /**
+     * Camera zoom of the imported locations without zoom
+     */
+    private final static float IMPORT_CAMERA_ZOOM = 14f;
 
     private Context mContext;
     private SQLiteDatabase mDb;
-    private DatabaseHelper mDbHelper;
 
     /**
      * Constructor
@@ -76,10 +102,11 @@ public class LocationsDbAdapter {
     }
 
     /**
-     * Closes the database connection
+     * Releases the database, the connection is shared by the process and
+     * stays open
      */
     public void close() {
-        mDbHelper.close();
+        mDb = null;
     }
 
     /**
@@ -99,9 +126,11 @@ public class LocationsDbAdapter {
         values.put(KEY_LOCATION_NAME, locationName);
         values.put(KEY_LATITUDE, latitude);
         values.put(KEY_LONGITUDE, longitude);
-        values.put(KEY_LAST_ACCESS, getTimeStamp());
+        values.put(KEY_LAST_ACCESS, getNextAccessTime());
         values.put(KEY_MAP_TYPE, mapType);
         values.put(KEY_CAMERA_ZOOM, cameraZoom);
+        values.put(KEY_GEOHASH, DatabaseSchema.getGeohash(latitude, longitude));
+        values.put(KEY_SEARCH_NAME, DatabaseSchema.getSearchName(locationName));
 
         return values;
     }
@@ -151,38 +180,108 @@ public class LocationsDbAdapter {
      * @param list list to store data from a database
      */
     public void fetchAllLocations(List<LocationRecord> list) {
-        String order = KEY_LAST_ACCESS.concat(" DESC");
-
-        Cursor cursor = mDb.query(TABLE_NAME, null, null, null, null, null,
-                order);
+        Cursor cursor = fetchLocations();
 
         if (cursor.getCount() > 0) {
             list.clear();
 
-            int idColumn = cursor.getColumnIndex(KEY_ROWID);
-            int locationNameColumn = cursor.getColumnIndex(KEY_LOCATION_NAME);
-            int latitudeColumn = cursor.getColumnIndex(KEY_LATITUDE);
-            int longitudeColumn = cursor.getColumnIndex(KEY_LONGITUDE);
-            int lastAccessColumn = cursor.getColumnIndex(KEY_LAST_ACCESS);
-            int mapTypeColumn = cursor.getColumnIndex(KEY_MAP_TYPE);
-            int cameraZoomColumn = cursor.getColumnIndex(KEY_CAMERA_ZOOM);
-
             while (cursor.moveToNext()) {
-                LocationRecord record = new LocationRecord();
-                record.setId(cursor.getLong(idColumn));
-                record.setLocationName(cursor.getString(locationNameColumn));
-                record.setLatitude(cursor.getDouble(latitudeColumn));
-                record.setLongitude(cursor.getDouble(longitudeColumn));
-                record.setLastAccess(cursor.getLong(lastAccessColumn));
-                record.setMapType(cursor.getInt(mapTypeColumn));
-                record.setCameraZoom(cursor.getFloat(cameraZoomColumn));
-
-                list.add(record);
+                list.add(readLocation(cursor));
             }
         }
         cursor.close();
     }
 
+    /**
+     * Gets cursor over all locations, the most recently used first. Rows are
+     * read by the cursor window, so records are created only for the rows
+     * really used
+     *
+     * @return cursor with all columns of the locations, must be closed by
+     * caller
+     */
+    public Cursor fetchLocations() {
+        return mDb.rawQuery(DatabaseSchema.FETCH_LOCATIONS_QUERY, new String[]{"-1"});
+    }
+
+    /**
+     * Reads location from the current row of the cursor returned by
+     * fetchLocations
+     *
+     * @param cursor cursor positioned on the row
+     * @return location
+     */
+    public static LocationRecord readLocation(Cursor cursor) {
+        LocationRecord record = new LocationRecord();
+        record.setId(cursor.getLong(0));
+        record.setLocationName(cursor.getString(1));
+        record.setLatitude(cursor.getDouble(2));
+        record.setLongitude(cursor.getDouble(3));
+        record.setLastAccess(cursor.getLong(4));
+        record.setMapType(cursor.getInt(5));
+        record.setCameraZoom(cursor.getFloat(6));
+        return record;
+    }
+
+    /**
+     * Searches locations by the beginnings of the words of the name, every
+     * word of the query must be found
+     *
+     * @param query search query as typed by user
+     * @param limit maximum number of locations, negative for all
+     * @return cursor with the columns of fetchLocations, all locations if the
+     * query has no words, must be closed by caller
+     */
+    public Cursor searchLocations(String query, int limit) {
+        String searchName = DatabaseSchema.getSearchName(query);
+        String limitArg = String.valueOf(limit);
+        if (searchName.length() == 0) {
+            return mDb.rawQuery(DatabaseSchema.FETCH_LOCATIONS_QUERY, new String[]{limitArg});
+        }
+
+        String[] args = {DatabaseSchema.getMatch(searchName), searchName, String.valueOf(searchName.length()),
+                searchName, limitArg};
+        return mDb.rawQuery(DatabaseSchema.SEARCH_LOCATIONS_QUERY, args);
+    }
+
+    /**
+     * Gets locations inside the bounding box, the most recently used first.
+     * The box is covered by geohash cells, so only the locations of these
+     * cells are read by the geohash index
+     *
+     * @param bounds bounding box, may cross the 180th meridian
+     * @param limit  maximum number of locations
+     * @param list   list to store locations
+     */
+    public void fetchLocationsInBounds(LatLngBounds bounds, int limit, List<LocationRecord> list) {
+        list.clear();
+        List<String> args = new ArrayList<String>();
+        String query = DatabaseSchema.getBoundsQuery(bounds.southwest.latitude, bounds.southwest.longitude,
+                bounds.northeast.latitude, bounds.northeast.longitude, limit, args);
+
+        Cursor cursor = mDb.rawQuery(query, args.toArray(new String[args.size()]));
+        try {
+            while (cursor.moveToNext()) {
+                list.add(readLocation(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Gets access time for the changed record, it is greater than the time of
+     * all other records, so the record becomes the first in the list even if
+     * other record was used in the same second
+     *
+     * @return access time
+     */
+    private long getNextAccessTime() {
+        long lastAccess = DatabaseUtils.longForQuery(mDb,
+                String.format("select ifnull(max(%s), 0) from %s", KEY_LAST_ACCESS, TABLE_NAME), null);
+        return Math.max(getTimeStamp(), lastAccess + 1);
+    }
+
     /**
      * Gets current time stamp in Unix epoch
      *
@@ -201,19 +300,38 @@ public class LocationsDbAdapter {
      * @return true if location with the specified name exists
      */
     public boolean isLocationExists(String locationName) {
-        boolean exists = false;
-        String where = KEY_LOCATION_NAME.concat(" = ?");
-        String[] whereArgs = {locationName};
-        String[] columns = {KEY_ROWID};
-        Cursor cursor = mDb.query(TABLE_NAME, columns, where, whereArgs, null,
-                null, null);
+        return fetchLocationId(locationName) != -1L;
+    }
+
+    /**
+     * Verifies the existence of the location with the specified id
+     *
+     * @param recordId record id
+     * @return true if location exists
+     */
+    public boolean isLocationExists(long recordId) {
+        return DatabaseUtils.queryNumEntries(mDb, TABLE_NAME, KEY_ROWID.concat(" = ?"),
+                new String[]{String.valueOf(recordId)}) > 0;
+    }
+
+    /**
+     * Gets id of the location with the specified name, names are unique
+     *
+     * @param locationName location name
+     * @return record id or -1 if location with the specified name not exists
+     */
+    public long fetchLocationId(String locationName) {
+        long id = -1L;
+        Cursor cursor = mDb.rawQuery(DatabaseSchema.FETCH_LOCATION_ID_QUERY, new String[]{locationName});
 
         if (cursor != null) {
-            exists = cursor.getCount() > 0;
+            if (cursor.moveToFirst()) {
+                id = cursor.getLong(0);
+            }
             cursor.close();
         }
 
-        return exists;
+        return id;
     }
 
     /**
@@ -222,7 +340,7 @@ public class LocationsDbAdapter {
      * @return true if database connection is open
      */
     public boolean isOpen() {
-        return mDb.isOpen();
+        return mDb != null && mDb.isOpen();
     }
 
     /**
@@ -232,8 +350,7 @@ public class LocationsDbAdapter {
      * @throws SQLException If an error occurs when opening a database
      */
     public LocationsDbAdapter open() throws SQLException {
-        mDbHelper = new DatabaseHelper(mContext);
-        mDb = mDbHelper.getWritableDatabase();
+        mDb = DatabaseHelper.getInstance(mContext).getWritableDatabase();
         return this;
     }
 
@@ -246,10 +363,28 @@ public class LocationsDbAdapter {
         String where = KEY_ROWID.concat(" = ?");
         String[] whereArgs = {String.valueOf(recordId)};
         ContentValues values = new ContentValues();
-        values.put(KEY_LAST_ACCESS, getTimeStamp());
+        values.put(KEY_LAST_ACCESS, getNextAccessTime());
         mDb.update(TABLE_NAME, values, where, whereArgs);
     }
 
+    /**
+     * Updates last access time for records in one transaction, the last
+     * record becomes the most recently used
+     *
+     * @param recordIds record ids in the order of access
+     */
+    public void updateLastAccessTimes(Collection<Long> recordIds) {
+        mDb.beginTransaction();
+        try {
+            for (Long recordId : recordIds) {
+                udateLastAccessTime(recordId);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
     /**
      * Changes saved location in the database
      *
@@ -280,4 +415,81 @@ public class LocationsDbAdapter {
                 record.getCameraZoom()
         );
     }
+
+    /**
+     * Imports locations from CSV, GPX or KML file in one transaction.
+     * Locations with the name already in the database are replaced
+     *
+     * @param input file content, not closed
+     * @return number of imported locations
+     * @throws IOException if reading fails or the file is malformed, nothing
+     *                     is imported in this case
+     */
+    public int importLocations(InputStream input) throws IOException {
+        final SQLiteStatement update = mDb.compileStatement(String.format(
+                "update %s set %s = ?, %s = ?, %s = ?, %s = ?, %s = ?, %s = ? where %s = ?", TABLE_NAME,
+                KEY_LATITUDE, KEY_LONGITUDE, KEY_LAST_ACCESS, KEY_MAP_TYPE, KEY_CAMERA_ZOOM, KEY_GEOHASH,
+                KEY_LOCATION_NAME));
+        final SQLiteStatement insert = mDb.compileStatement(String.format(
+                "insert into %s (%s, %s, %s, %s, %s, %s, %s, %s) values (?, ?, ?, ?, ?, ?, ?, ?)", TABLE_NAME,
+                KEY_LATITUDE, KEY_LONGITUDE, KEY_LAST_ACCESS, KEY_MAP_TYPE, KEY_CAMERA_ZOOM, KEY_GEOHASH,
+                KEY_LOCATION_NAME, KEY_SEARCH_NAME));
+        final long timeStamp = getTimeStamp();
+
+        mDb.beginTransaction();
+        try {
+            int count = LocationFileReader.read(input, new LocationFileReader.OnLocationListener() {
+                @Override
+                public void onLocation(String name, double latitude, double longitude, int mapType,
+                                       float cameraZoom) {
+                    // both statements have the same first parameters, the name is not changed by update
+                    bind(update, name, latitude, longitude, timeStamp, mapType, cameraZoom);
+                    if (update.executeUpdateDelete() == 0) {
+                        bind(insert, name, latitude, longitude, timeStamp, mapType, cameraZoom);
+                        insert.bindString(8, DatabaseSchema.getSearchName(name));
+                        insert.executeInsert();
+                    }
+                }
+            });
+            mDb.setTransactionSuccessful();
+            return count;
+        } finally {
+            mDb.endTransaction();
+            update.close();
+            insert.close();
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, String name, double latitude, double longitude,
+                             long timeStamp, int mapType, float cameraZoom) {
+        statement.bindDouble(1, latitude);
+        statement.bindDouble(2, longitude);
+        statement.bindLong(3, timeStamp);
+        statement.bindLong(4, mapType != LocationFileReader.NO_MAP_TYPE ? mapType : GoogleMap.MAP_TYPE_NORMAL);
+        statement.bindDouble(5, !Float.isNaN(cameraZoom) ? cameraZoom : IMPORT_CAMERA_ZOOM);
+        statement.bindString(6, DatabaseSchema.getGeohash(latitude, longitude));
+        statement.bindString(7, name);
+    }
+
+    /**
+     * Exports all locations ordered by name
+     *
+     * @param writer writer of the file, not closed
+     * @return number of exported locations
+     * @throws IOException if writing fails
+     */
+    public int exportLocations(LocationFileWriter writer) throws IOException {
+        String[] columns = {KEY_LOCATION_NAME, KEY_LATITUDE, KEY_LONGITUDE, KEY_MAP_TYPE, KEY_CAMERA_ZOOM};
+        Cursor cursor = mDb.query(TABLE_NAME, columns, null, null, null, null, KEY_LOCATION_NAME);
+        try {
+            // the cursor reads rows by windows, so all rows are never in memory
+            while (cursor.moveToNext()) {
+                writer.write(cursor.getString(0), cursor.getDouble(1), cursor.getDouble(2), cursor.getInt(3),
+                        cursor.getFloat(4));
+            }
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
 }
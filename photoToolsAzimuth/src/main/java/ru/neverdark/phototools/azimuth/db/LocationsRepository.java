@@ -0,0 +1,483 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ru.neverdark.phototools.azimuth.core.DatabaseSchema;
+import ru.neverdark.phototools.azimuth.core.LocationFileWriter;
+import ru.neverdark.phototools.azimuth.utils.Log;
+
+/**
+ * Class provides asynchronous access to the saved locations. All queries run
+ * one by one on a single background thread, so writes never wait for each
+ * other and a query always sees the changes requested before it. Results are
+ * delivered to the UI thread. Only searchLocations runs on the calling
+ * thread, so the suggestions never wait for the queued writes.
+ * <p/>
+ * Access time updates are collected and written in one transaction a bit
+ * later, or before the next query. Methods delivering results to callbacks
+ * must be called from the UI thread, methods waiting for the result must be
+ * called from a background thread
+ */
+public class LocationsRepository {
+    /**
+     * Delay of writing the access times
+     */
+    private static final long TOUCH_DELAY_MS = 2000;
+    private static LocationsRepository mInstance;
+
+    private final LocationsDbAdapter mDbAdapter;
+    private final ScheduledThreadPoolExecutor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final List<OnLocationsChangedListener> mListeners = new ArrayList<OnLocationsChangedListener>();
+    /**
+     * Records used since the last write of the access times, in the order of
+     * access. Guarded by itself
+     */
+    private final Set<Long> mTouches = new LinkedHashSet<Long>();
+    private boolean mIsDbOpen;
+
+    private LocationsRepository(Context context) {
+        mDbAdapter = new LocationsDbAdapter(context);
+        // the only thread using the database for the locations
+        mExecutor = new ScheduledThreadPoolExecutor(1);
+    }
+
+    public static synchronized LocationsRepository getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new LocationsRepository(context.getApplicationContext());
+        }
+
+        return mInstance;
+    }
+
+    /**
+     * Adds listener of the changes
+     *
+     * @param listener listener
+     */
+    public void addListener(OnLocationsChangedListener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Removes listener of the changes
+     *
+     * @param listener listener
+     */
+    public void removeListener(OnLocationsChangedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Notifies listeners about changes made not by this repository, for
+     * example by import
+     */
+    public void notifyLocationsChanged() {
+        for (OnLocationsChangedListener listener : new ArrayList<OnLocationsChangedListener>(mListeners)) {
+            listener.onLocationsChanged();
+        }
+    }
+
+    /**
+     * Queries locations, the first window of the cursor is read in the
+     * background
+     *
+     * @param filter   words of the location names, all locations if it has no
+     *                 letters or digits
+     * @param callback receives the cursor, which must be closed by receiver, or
+     *                 null if the database is not available
+     */
+    public void loadLocations(final String filter, Callback<Cursor> callback) {
+        submit(new Query<Cursor>(callback) {
+            @Override
+            protected Cursor run(LocationsDbAdapter db) {
+                boolean hasWords = DatabaseSchema.getSearchName(filter).length() > 0;
+                Cursor cursor = hasWords ? db.searchLocations(filter, -1) : db.fetchLocations();
+                // the query runs on the first access, rows of the first window are read here
+                cursor.getCount();
+                return cursor;
+            }
+
+            @Override
+            protected void discard(Cursor result) {
+                result.close();
+            }
+        });
+    }
+
+    /**
+     * Searches locations by the beginnings of the words of the name. The
+     * search runs on the calling thread and does not wait for the queued
+     * tasks, so suggestions are not delayed by writes; the shared connection
+     * serializes it with the statement in progress. Changes still in the
+     * queue may be not seen yet. Must not be called from the UI thread
+     *
+     * @param query search query as typed by user
+     * @param limit maximum number of locations
+     * @return found locations, the most recently used first, or null if the
+     * database is not available
+     */
+    public List<LocationRecord> searchLocations(String query, int limit) {
+        if (!openDb()) {
+            return null;
+        }
+
+        try {
+            List<LocationRecord> list = new ArrayList<LocationRecord>();
+            Cursor cursor = mDbAdapter.searchLocations(query, limit);
+            try {
+                while (cursor.moveToNext()) {
+                    list.add(LocationsDbAdapter.readLocation(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+            return list;
+        } catch (RuntimeException e) {
+            Log.message("Locations search fail: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets id of the location with the name
+     *
+     * @param locationName location name
+     * @param callback     receives the id, -1 if location does not exist, or
+     *                     null if the database is not available
+     */
+    public void fetchLocationId(final String locationName, Callback<Long> callback) {
+        submit(new Query<Long>(callback) {
+            @Override
+            protected Long run(LocationsDbAdapter db) {
+                return db.fetchLocationId(locationName);
+            }
+        });
+    }
+
+    /**
+     * Saves location: adds new one or changes existing one
+     *
+     * @param record   location, not changed
+     * @param callback receives id of the saved location, may be null
+     */
+    public void saveLocation(LocationRecord record, Callback<Long> callback) {
+        final LocationRecord copy = copy(record);
+        submit(new Write<Long>(callback) {
+            @Override
+            protected Long run(LocationsDbAdapter db) {
+                if (copy.getId() != -1L && db.isLocationExists(copy.getId())) {
+                    db.updateLocation(copy);
+                    return copy.getId();
+                }
+
+                return db.createLocation(copy);
+            }
+        });
+    }
+
+    /**
+     * Removes location
+     *
+     * @param recordId record id
+     */
+    public void removeLocation(final long recordId) {
+        submit(new Write<Boolean>(null) {
+            @Override
+            protected Boolean run(LocationsDbAdapter db) {
+                return db.deleteLocation(recordId);
+            }
+        });
+    }
+
+    /**
+     * Imports locations from CSV, GPX or KML file, listeners are notified
+     * after it. Waits for the import, so must not be called from the UI
+     * thread
+     *
+     * @param input file content, not closed
+     * @return number of imported locations or -1 if the file cannot be read
+     * or the database is not available
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public int importLocations(final InputStream input) throws InterruptedException {
+        Write<Integer> task = new Write<Integer>(null) {
+            @Override
+            protected Integer run(LocationsDbAdapter db) {
+                try {
+                    return db.importLocations(input);
+                } catch (IOException e) {
+                    Log.message("Import fail: " + e.getMessage());
+                    return null;
+                }
+            }
+        };
+        submit(task);
+        Integer count = task.await();
+        return count != null ? count : -1;
+    }
+
+    /**
+     * Exports all locations ordered by name. Waits for the export, so must
+     * not be called from the UI thread
+     *
+     * @param writer writer of the file, not closed
+     * @return number of exported locations or -1 if writing fails or the
+     * database is not available
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public int exportLocations(final LocationFileWriter writer) throws InterruptedException {
+        Query<Integer> task = new Query<Integer>(null) {
+            @Override
+            protected Integer run(LocationsDbAdapter db) {
+                try {
+                    return db.exportLocations(writer);
+                } catch (IOException e) {
+                    Log.message("Export fail: " + e.getMessage());
+                    return null;
+                }
+            }
+        };
+        submit(task);
+        Integer count = task.await();
+        return count != null ? count : -1;
+    }
+
+    /**
+     * Marks location as the most recently used, the access time is written
+     * later
+     *
+     * @param recordId record id
+     */
+    public void touchLocation(long recordId) {
+        boolean isScheduled;
+        synchronized (mTouches) {
+            isScheduled = !mTouches.isEmpty();
+            // the set keeps the first position of the element, the last access must be the last
+            mTouches.remove(recordId);
+            mTouches.add(recordId);
+        }
+
+        if (!isScheduled) {
+            mExecutor.schedule(new Query<Void>(null) {
+                @Override
+                protected Void run(LocationsDbAdapter db) {
+                    // touches are written before every task, listeners are notified if there were any
+                    return null;
+                }
+            }, TOUCH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void submit(Runnable task) {
+        mExecutor.execute(task);
+    }
+
+    private static LocationRecord copy(LocationRecord record) {
+        LocationRecord copy = new LocationRecord();
+        copy.setId(record.getId());
+        copy.setLocationName(record.getLocationName());
+        copy.setLatitude(record.getLatitude());
+        copy.setLongitude(record.getLongitude());
+        copy.setLastAccess(record.getLastAccess());
+        copy.setMapType(record.getMapType());
+        copy.setCameraZoom(record.getCameraZoom());
+        return copy;
+    }
+
+    /**
+     * Opens database on the first use. The connection is kept open for the
+     * life of the process. Called on the background threads only
+     *
+     * @return true if database is available
+     */
+    private synchronized boolean openDb() {
+        if (!mIsDbOpen) {
+            try {
+                mDbAdapter.open();
+                mIsDbOpen = true;
+            } catch (SQLException e) {
+                Log.message("Cannot open locations database");
+            }
+        }
+
+        return mIsDbOpen;
+    }
+
+    /**
+     * Writes collected access times. Called on the background thread only
+     *
+     * @return true if access times were written
+     */
+    private boolean writeTouches() {
+        List<Long> touches;
+        synchronized (mTouches) {
+            if (mTouches.isEmpty()) {
+                return false;
+            }
+            touches = new ArrayList<Long>(mTouches);
+            mTouches.clear();
+        }
+
+        mDbAdapter.updateLastAccessTimes(touches);
+        return true;
+    }
+
+    /**
+     * Result of the asynchronous operation
+     *
+     * @param <T> type of the result
+     */
+    public interface Callback<T> {
+        /**
+         * Called on the UI thread
+         *
+         * @param result result or null if the database is not available
+         */
+        public void onResult(T result);
+    }
+
+    /**
+     * Listener of the changes of the saved locations
+     */
+    public interface OnLocationsChangedListener {
+        /**
+         * Called on the UI thread after locations are changed
+         */
+        public void onLocationsChanged();
+    }
+
+    /**
+     * Task reading the database
+     *
+     * @param <T> type of the result
+     */
+    private abstract class Query<T> implements Runnable {
+        private final Callback<T> mCallback;
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private T mResult;
+
+        public Query(Callback<T> callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void run() {
+            T result = null;
+            boolean isChanged = false;
+            try {
+                if (openDb()) {
+                    isChanged = writeTouches();
+                    result = run(mDbAdapter);
+                    isChanged |= isWrite();
+                }
+            } catch (RuntimeException e) {
+                // SQLException and any other failure of the task, receivers get null like without database
+                Log.message("Locations database fail: " + e);
+            } finally {
+                // the callback is called on every path, and notification of the listeners
+                // is posted before the waiting thread continues
+                mResult = result;
+                deliver(result, isChanged);
+                mDone.countDown();
+            }
+        }
+
+        /**
+         * Waits until the task is run, for tasks without callback
+         *
+         * @return result or null if the database is not available
+         * @throws InterruptedException if the thread is interrupted while
+         *                              waiting
+         */
+        public T await() throws InterruptedException {
+            mDone.await();
+            return mResult;
+        }
+
+        private void deliver(final T result, final boolean isChanged) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCallback != null) {
+                        mCallback.onResult(result);
+                    } else if (result != null) {
+                        discard(result);
+                    }
+
+                    if (isChanged) {
+                        notifyLocationsChanged();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Runs the task
+         *
+         * @param db opened adapter
+         * @return result
+         */
+        protected abstract T run(LocationsDbAdapter db);
+
+        /**
+         * Releases result without receiver
+         *
+         * @param result result
+         */
+        protected void discard(T result) {
+        }
+
+        /**
+         * @return true if the task changes locations
+         */
+        protected boolean isWrite() {
+            return false;
+        }
+    }
+
+    /**
+     * Task changing the locations, listeners are notified after it
+     *
+     * @param <T> type of the result
+     */
+    private abstract class Write<T> extends Query<T> {
+        public Write(Callback<T> callback) {
+            super(callback);
+        }
+
+        @Override
+        protected boolean isWrite() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.TimeZone;
+
+import ru.neverdark.phototools.azimuth.core.GoogleApiParser;
+
+/**
+ * Class provides API for the time zones resolved for the map cells
+ */
+public class TimeZonesDbAdapter {
+    /**
+     * Name of field contains the geohash of the cell
+     */
+    public final static String KEY_GEOHASH = "geohash";
+    /**
+     * Name of field contains the time zone id
+     */
+    public final static String KEY_TIME_ZONE_ID = "time_zone_id";
+    /**
+     * Name of field contains the last access time
+     */
+    public final static String KEY_LAST_ACCESS = "last_access";
+    /**
+     * Name of the table contains a time zones
+     */
+    private final static String TABLE_NAME = "time_zones";
+
+    private Context mContext;
+    private SQLiteDatabase mDb;
+
+    /**
+     * Constructor
+     *
+     * @param context application context
+     */
+    public TimeZonesDbAdapter(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Releases the database, the connection is shared by the process and
+     * stays open
+     */
+    public void close() {
+        mDb = null;
+    }
+
+    /**
+     * Opens database for read/write
+     *
+     * @return this object
+     * @throws SQLException If an error occurs when opening a database
+     */
+    public TimeZonesDbAdapter open() throws SQLException {
+        mDb = DatabaseHelper.getInstance(mContext).getWritableDatabase();
+        return this;
+    }
+
+    /**
+     * Gets time zone of the cell
+     *
+     * @param geohash geohash of the cell
+     * @return time zone or null if the cell is not in the database or the
+     * device does not know the saved time zone id
+     */
+    public TimeZone fetchTimeZone(String geohash) {
+        TimeZone timeZone = null;
+        String where = KEY_GEOHASH.concat(" = ?");
+        String[] whereArgs = {geohash};
+        String[] columns = {KEY_TIME_ZONE_ID};
+        Cursor cursor = mDb.query(TABLE_NAME, columns, where, whereArgs, null, null, null);
+
+        if (cursor.moveToFirst() && GoogleApiParser.isKnown(cursor.getString(0))) {
+            timeZone = TimeZone.getTimeZone(cursor.getString(0));
+        }
+        cursor.close();
+
+        return timeZone;
+    }
+
+    /**
+     * Saves time zone of the cell, replaces previous value
+     *
+     * @param geohash  geohash of the cell
+     * @param timeZone time zone
+     */
+    public void saveTimeZone(String geohash, TimeZone timeZone) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_GEOHASH, geohash);
+        values.put(KEY_TIME_ZONE_ID, timeZone.getID());
+        values.put(KEY_LAST_ACCESS, System.currentTimeMillis() / 1000);
+        mDb.insertWithOnConflict(TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -20,11 +20,13 @@ import android.content.DialogInterface;
 import android.support.v7.app.AlertDialog;
 import android.view.View;
 import android.widget.EditText;
+import android.widget.Toast;
 
 import ru.neverdark.abs.CancelClickListener;
 import ru.neverdark.abs.UfoDialogFragment;
 import ru.neverdark.phototools.azimuth.R;
 import ru.neverdark.phototools.azimuth.db.LocationRecord;
+import ru.neverdark.phototools.azimuth.db.LocationsRepository;
 import ru.neverdark.phototools.azimuth.utils.ToastException;
 
 public class SaveLocationDialog extends UfoDialogFragment {
@@ -79,23 +81,42 @@ public class SaveLocationDialog extends UfoDialogFragment {
                     throw new ToastException(R.string.error_empty_location_name);
                 }
 
-                OnPositiveClickListener callback = (OnPositiveClickListener) getCallback();
-                LocationRecord data = new LocationRecord();
-                data.setId(mData.getId());
-                data.setLocationName(mLocationName.getText().toString());
-                data.setCameraZoom(mData.getCameraZoom());
-                data.setMapType(mData.getMapType());
-                data.setLatitude(mData.getLatitude());
-                data.setLongitude(mData.getLongitude());
-
-                if (callback != null) {
-                    callback.onPositiveClick(data);
-                }
-
-                getDialog().dismiss();
+                // names are unique, the name may belong only to the edited location
+                LocationsRepository.getInstance(getContext()).fetchLocationId(mLocationName.getText().toString(),
+                        new LocationsRepository.Callback<Long>() {
+                            @Override
+                            public void onResult(Long id) {
+                                if (getDialog() != null && getDialog().isShowing()) {
+                                    onNameChecked(id == null || id == -1L || id == mData.getId());
+                                }
+                            }
+                        });
             } catch (ToastException e) {
                 e.show(getContext());
             }
         }
+
+        private void onNameChecked(boolean isNameFree) {
+            if (!isNameFree) {
+                mLocationName.requestFocus();
+                Toast.makeText(getContext(), R.string.error_location_exists, Toast.LENGTH_LONG).show();
+                return;
+            }
+
+            OnPositiveClickListener callback = (OnPositiveClickListener) getCallback();
+            LocationRecord data = new LocationRecord();
+            data.setId(mData.getId());
+            data.setLocationName(mLocationName.getText().toString());
+            data.setCameraZoom(mData.getCameraZoom());
+            data.setMapType(mData.getMapType());
+            data.setLatitude(mData.getLatitude());
+            data.setLongitude(mData.getLongitude());
+
+            if (callback != null) {
+                callback.onPositiveClick(data);
+            }
+
+            getDialog().dismiss();
+        }
     }
 }
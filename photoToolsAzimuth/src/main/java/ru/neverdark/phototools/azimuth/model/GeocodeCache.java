@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.model;
+
+import android.content.Context;
+import android.database.SQLException;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ru.neverdark.phototools.azimuth.core.PlaceNames;
+import ru.neverdark.phototools.azimuth.db.GeocodesDbAdapter;
+import ru.neverdark.phototools.azimuth.utils.Log;
+
+/**
+ * Cache of the locations found by Geocoder. Queries are normalized, so
+ * "Red  Square" and "red square" are the same query. Recently used results are
+ * kept in memory and results of the last 30 days are kept in the database,
+ * so repeated searches work without network.
+ * <p/>
+ * Methods may be called from any thread, but should not be called from the
+ * UI thread because of the database access
+ */
+public class GeocodeCache {
+    private static final int MEMORY_CAPACITY = 32;
+    private static final int DB_CAPACITY = 500;
+    private static final long TIME_TO_LIVE = 30L * 24 * 60 * 60;
+    private static GeocodeCache mInstance;
+
+    private final Map<String, Entry> mMemory;
+    private final GeocodesDbAdapter mDbAdapter;
+    private boolean mIsDbOpen;
+    private int mMemoryHits;
+    private int mDbHits;
+    private int mMisses;
+    private int mEvictions;
+
+    private GeocodeCache(Context context) {
+        mDbAdapter = new GeocodesDbAdapter(context);
+        mMemory = new LinkedHashMap<String, Entry>(MEMORY_CAPACITY + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > MEMORY_CAPACITY) {
+                    mEvictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static synchronized GeocodeCache getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new GeocodeCache(context.getApplicationContext());
+        }
+
+        return mInstance;
+    }
+
+    /**
+     * Normalizes search query: compatibility characters are replaced by their
+     * canonical forms, letters are lower cased and whitespaces are collapsed
+     *
+     * @param query search query
+     * @return normalized query
+     */
+    public static String normalize(String query) {
+        return PlaceNames.normalize(query);
+    }
+
+    /**
+     * Gets current time stamp in seconds
+     *
+     * @return time stamp
+     */
+    private static long getTimeStamp() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * Gets cached location of the query
+     *
+     * @param query search query
+     * @return location or null if the query is not cached
+     */
+    public synchronized LatLng get(String query) {
+        String key = normalize(query);
+        long expired = getTimeStamp() - TIME_TO_LIVE;
+        Entry entry = mMemory.get(key);
+
+        if (entry != null && entry.mCreated > expired) {
+            mMemoryHits++;
+            return entry.mLocation;
+        }
+
+        if (entry != null) {
+            mMemory.remove(key);
+            mEvictions++;
+        }
+
+        LatLng location = null;
+        if (openDb()) {
+            location = mDbAdapter.fetchLocation(key, expired);
+        }
+
+        if (location == null) {
+            mMisses++;
+            return null;
+        }
+
+        mDbHits++;
+        // memory lives only as long as the process, so the result is aged from now on
+        mMemory.put(key, new Entry(location, getTimeStamp()));
+        return location;
+    }
+
+    /**
+     * Saves location of the query
+     *
+     * @param query    search query
+     * @param location found location
+     */
+    public synchronized void put(String query, LatLng location) {
+        String key = normalize(query);
+        mMemory.put(key, new Entry(location, getTimeStamp()));
+
+        if (openDb()) {
+            mDbAdapter.saveLocation(key, location);
+        }
+    }
+
+    /**
+     * Opens database on the first access and deletes expired and least
+     * recently used results. The connection is kept open for the life of the
+     * process
+     *
+     * @return true if database is available
+     */
+    private boolean openDb() {
+        if (!mIsDbOpen) {
+            try {
+                mDbAdapter.open();
+                mIsDbOpen = true;
+                mEvictions += mDbAdapter.deleteExpired(getTimeStamp() - TIME_TO_LIVE);
+                mEvictions += mDbAdapter.trim(DB_CAPACITY);
+            } catch (SQLException e) {
+                Log.message("Cannot open geocodes database");
+            }
+        }
+
+        return mIsDbOpen;
+    }
+
+    /**
+     * @return number of lookups answered from memory
+     */
+    public synchronized int getMemoryHits() {
+        return mMemoryHits;
+    }
+
+    /**
+     * @return number of lookups answered from the database
+     */
+    public synchronized int getDbHits() {
+        return mDbHits;
+    }
+
+    /**
+     * @return number of lookups not found in the cache
+     */
+    public synchronized int getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return part of lookups answered from the cache, from 0 to 1
+     */
+    public synchronized double getHitRatio() {
+        int hits = mMemoryHits + mDbHits;
+        int lookups = hits + mMisses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return number of results dropped from memory or database because of
+     * the capacity or age
+     */
+    public synchronized int getEvictions() {
+        return mEvictions;
+    }
+
+    /**
+     * Cached location with the time it was received
+     */
+    private static class Entry {
+        private final LatLng mLocation;
+        private final long mCreated;
+
+        private Entry(LatLng location, long created) {
+            mLocation = location;
+            mCreated = created;
+        }
+    }
+}
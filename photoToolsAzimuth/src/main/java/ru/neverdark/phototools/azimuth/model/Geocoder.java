@@ -21,29 +21,24 @@ import android.net.NetworkInfo;
 
 import com.google.android.gms.maps.model.LatLng;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.StatusLine;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpConnectionParams;
-import org.apache.http.params.HttpParams;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 
+import ru.neverdark.phototools.azimuth.core.GoogleApiParser;
+import ru.neverdark.phototools.azimuth.core.SingleFlight;
 import ru.neverdark.phototools.azimuth.utils.Log;
 
 public class Geocoder {
+    /**
+     * Searches in progress by the normalized query, concurrent searches for
+     * one query share one download
+     */
+    private static final SingleFlight<String, LatLng> mSearches = new SingleFlight<String, LatLng>();
+
     private Context mContext;
 
     /**
@@ -62,34 +57,6 @@ public class Geocoder {
      * @return coordinates for founded location or null if not found
      */
     public LatLng getFromLocation(String searchString) {
-        LatLng coords = null;
-        String locationInfo = getLocationInfo(searchString);
-
-        if (locationInfo.length() > 0) {
-            try {
-                JSONObject jsonObject = new JSONObject(locationInfo);
-                JSONArray jsonArray = (JSONArray) jsonObject.get("results");
-                JSONObject jsonLocation = jsonArray.getJSONObject(0)
-                        .getJSONObject("geometry").getJSONObject("location");
-                Double longitude = jsonLocation.getDouble("lng");
-                Double latitude = jsonLocation.getDouble("lat");
-
-                coords = new LatLng(latitude, longitude);
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-        }
-
-        return coords;
-    }
-
-    /**
-     * Gets json for location
-     *
-     * @param searchString location for search
-     * @return json for location or empty string if connection problem
-     */
-    private String getLocationInfo(String searchString) {
         String query = null;
         try {
             query = URLEncoder.encode(searchString, "UTF-8");
@@ -101,39 +68,36 @@ public class Geocoder {
         String url = String
                 .format("http://maps.google.com/maps/api/geocode/json?address=%s&sensor=false",
                         query);
-        StringBuilder builder = new StringBuilder();
-
-        HttpParams params = new BasicHttpParams();
-        HttpConnectionParams.setConnectionTimeout(params, 4000); // 4 sec
-        HttpConnectionParams.setSoTimeout(params, 1000); // 1 sec
 
-        HttpClient client = new DefaultHttpClient(params);
-        HttpGet httpGet = new HttpGet(url);
-        httpGet.setParams(params);
+        final HttpGet httpGet = new HttpGet(url);
+        SingleFlight<String, LatLng>.Ticket search = mSearches.join(GeocodeCache.normalize(searchString),
+                new SingleFlight.Call<LatLng>() {
+                    @Override
+                    public LatLng execute() throws Exception {
+                        double[] location = NetworkClient.getInstance().get(NetworkClient.GEOCODE, httpGet,
+                                new NetworkClient.ResponseParser<double[]>() {
+                                    @Override
+                                    public double[] parse(Reader reader) throws IOException {
+                                        return GoogleApiParser.readGeocodeLocation(reader);
+                                    }
+                                });
+                        return location != null ? new LatLng(location[0], location[1]) : null;
+                    }
+
+                    @Override
+                    public void abort() {
+                        httpGet.abort();
+                    }
+                });
 
+        LatLng coords = null;
         try {
-            HttpResponse response = client.execute(httpGet);
-            StatusLine statusLine = response.getStatusLine();
-            int statusCode = statusLine.getStatusCode();
-            if (statusCode == HttpStatus.SC_OK) {
-                HttpEntity entity = response.getEntity();
-                InputStream content = entity.getContent();
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(content));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    builder.append(line);
-                }
-            } else {
-                Log.message("Download fail");
-            }
+            coords = search.get();
         } catch (Exception e) {
-            // request new address for object
-            // creating new object is a faster then setLength(0)
-            builder = new StringBuilder();
+            Log.message("Download fail");
         }
 
-        return builder.toString();
+        return coords;
     }
 
     /**
@@ -21,26 +21,17 @@ import android.net.NetworkInfo;
 
 import com.google.android.gms.maps.model.LatLng;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.StatusLine;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpConnectionParams;
-import org.apache.http.params.HttpParams;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Calendar;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.CancellationException;
 
+import ru.neverdark.phototools.azimuth.core.GoogleApiParser;
+import ru.neverdark.phototools.azimuth.core.SingleFlight;
 import ru.neverdark.phototools.azimuth.utils.Constants;
 import ru.neverdark.phototools.azimuth.utils.Log;
 
@@ -48,10 +39,20 @@ import ru.neverdark.phototools.azimuth.utils.Log;
  * Class for gets a time zone from the Google
  */
 public class GoogleTimeZone {
+    /**
+     * Downloads in progress by the time zone cell and the requested time,
+     * concurrent requests for one cell and time share one download. The time
+     * is a part of the key because a time zone unknown to the device comes
+     * with the offset for the requested time only
+     */
+    private static final SingleFlight<String, TimeZone> mDownloads = new SingleFlight<String, TimeZone>();
+
     private TimeZone mTimeZone;
     private Context mContext;
     private LatLng mLocation;
     private Calendar mCalendar;
+    private volatile SingleFlight<String, TimeZone>.Ticket mDownload;
+    private volatile boolean mIsCancelled;
 
     /**
      * Constructor
@@ -89,10 +90,9 @@ public class GoogleTimeZone {
     /**
      * Reads TimeZone from Google Json
      *
-     * @return TimeZone JSON from Google Json or empty if cannot determine
+     * @return TimeZone from Google Json or null if cannot determine
      */
-    private String readTimeZoneJson() {
-        StringBuilder builder = new StringBuilder();
+    private TimeZone readTimeZone() {
         int year = mCalendar.get(Calendar.YEAR);
         int month = mCalendar.get(Calendar.MONTH);
         int day = mCalendar.get(Calendar.DAY_OF_MONTH);
@@ -100,6 +100,7 @@ public class GoogleTimeZone {
         int minute = mCalendar.get(Calendar.MINUTE);
 
         Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        calendar.clear();
         calendar.set(year, month, day, hour, minute);
 
         /* Gets desired time as seconds since midnight, January 1, 1970 UTC */
@@ -109,67 +110,72 @@ public class GoogleTimeZone {
         String url = String.format(Locale.US, url_format, mLocation.latitude,
                 mLocation.longitude, timestamp);
 
-        HttpParams params = new BasicHttpParams();
-        HttpConnectionParams.setConnectionTimeout(params, 4000); // 4 sec
-        HttpConnectionParams.setSoTimeout(params, 1000); // 1 sec
-
-        HttpClient client = new DefaultHttpClient(params);
-        HttpGet httpGet = new HttpGet(url);
-        httpGet.setParams(params);
+        final HttpGet httpGet = new HttpGet(url);
+        String key = TimeZoneCache.getKey(mLocation) + "@" + timestamp;
+        SingleFlight<String, TimeZone>.Ticket download = mDownloads.join(key,
+                new SingleFlight.Call<TimeZone>() {
+                    @Override
+                    public TimeZone execute() throws Exception {
+                        return NetworkClient.getInstance().get(NetworkClient.TIME_ZONE, httpGet,
+                                new NetworkClient.ResponseParser<TimeZone>() {
+                                    @Override
+                                    public TimeZone parse(Reader reader) throws IOException {
+                                        return GoogleApiParser.readTimeZone(reader);
+                                    }
+                                });
+                    }
+
+                    @Override
+                    public void abort() {
+                        httpGet.abort();
+                    }
+                });
+
+        // published before the check, so cancel either sees the download or is seen here
+        mDownload = download;
+        if (mIsCancelled) {
+            download.leave();
+        }
 
+        TimeZone timeZone = null;
         try {
-            HttpResponse response = client.execute(httpGet);
-            StatusLine statusLine = response.getStatusLine();
-            int statusCode = statusLine.getStatusCode();
-            if (statusCode == HttpStatus.SC_OK) {
-                HttpEntity entity = response.getEntity();
-                InputStream content = entity.getContent();
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(content));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    builder.append(line);
-                }
-            } else {
-                Log.message("Download fail");
-            }
+            timeZone = download.get();
+        } catch (CancellationException e) {
+            Log.message("Download cancelled");
         } catch (Exception e) {
-            // request new address for object
-            // creating new object is a faster then setLength(0)
-            builder = new StringBuilder();
+            Log.message("Download fail");
         }
-        return builder.toString();
+
+        // the downloaded object is shared with other requests for the cell and time
+        return timeZone != null ? (TimeZone) timeZone.clone() : null;
     }
 
     /**
-     * Request time zone from google
+     * Request time zone from the cache, the offline index or from google
      *
      * @return STATUS_SUCCESS if time zone was gets successfully, STATUS_FAIL in
      * other case
      */
     public int requestTimeZone() {
         int requestStatus = Constants.STATUS_FAIL;
+        TimeZoneCache cache = TimeZoneCache.getInstance(mContext);
 
-        /* we have internet, download json from timeZone google service */
-        if (isOnline()) {
+        /* time zone of this place is already known or in the offline index, network is not needed */
+        mTimeZone = cache.get(mLocation);
+        if (mTimeZone == null) {
+            mTimeZone = OfflineTimeZone.getInstance(mContext).getTimeZone(mLocation);
+        }
+        if (mTimeZone != null) {
+            requestStatus = Constants.STATUS_SUCCESS;
+        } else if (isOnline()) {
+            /* we have internet, download json from timeZone google service */
             Log.message("Get Time Zone from Google");
-            String json = readTimeZoneJson();
-            Log.variable("json", json);
-
-            /* JSON data not empty, parse it */
-            if (json.length() != 0) {
-                try {
-                    JSONObject jsonObject = new JSONObject(json);
-                    String timeZoneId = jsonObject.getString("timeZoneId");
-                    String rawOffset = jsonObject.getString("rawOffset");
-                    Log.variable("timeZoneId", timeZoneId);
-                    Log.variable("rawOffset", rawOffset);
-                    mTimeZone = TimeZone.getTimeZone(timeZoneId);
-                    mTimeZone.setRawOffset(Integer.valueOf(rawOffset) * 1000);
-                    requestStatus = Constants.STATUS_SUCCESS;
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
+            mTimeZone = readTimeZone();
+
+            if (mTimeZone != null) {
+                Log.variable("timeZoneId", mTimeZone.getID());
+                cache.put(mLocation, mTimeZone);
+                requestStatus = Constants.STATUS_SUCCESS;
             }
         } else {
             Log.message("Device offline.");
@@ -178,6 +184,19 @@ public class GoogleTimeZone {
         return requestStatus;
     }
 
+    /**
+     * Cancels the request, aborts the download if it is in progress and no
+     * other request for the same cell waits for it. May be called from any
+     * thread
+     */
+    public void cancel() {
+        mIsCancelled = true;
+        SingleFlight<String, TimeZone>.Ticket download = mDownload;
+        if (download != null) {
+            download.leave();
+        }
+    }
+
     /**
      * Sets calendar
      *
@@ -16,6 +16,8 @@
 package ru.neverdark.phototools.azimuth.model;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.google.android.gms.maps.CameraUpdate;
 import com.google.android.gms.maps.CameraUpdateFactory;
@@ -25,27 +27,59 @@ import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
-import com.google.android.gms.maps.model.Polyline;
-import com.google.android.gms.maps.model.PolylineOptions;
+import com.google.android.gms.maps.model.VisibleRegion;
 
 import ru.neverdark.phototools.azimuth.R;
+import ru.neverdark.phototools.azimuth.core.SunPath;
 import ru.neverdark.phototools.azimuth.db.LocationRecord;
 import ru.neverdark.phototools.azimuth.utils.Common;
 import ru.neverdark.phototools.azimuth.utils.Constants;
 import ru.neverdark.phototools.azimuth.utils.Settings;
-
+import ru.neverdark.phototools.azimuth.utils.Trace;
+
+/**
+ * Class for the map. The sun lines are drawn by SunOverlay. Camera changes
+ * are debounced, and the lines are redrawn only if the visible extent
+ * changes by more than EXTENT_THRESHOLD, so panning does not redraw them.
+ * Time of the overlay updates is measured separately for pans and zooms
+ */
 public class MapApi implements OnMapReadyCallback, GoogleMap.OnMapLongClickListener, GoogleMap.OnCameraChangeListener {
+    private static final String TAG = "MapApi.onCameraChange";
     private static final float FIND_ZOOM = 14f;
     private static final float MINIMUM_ZOOM = 5.0f;
+    private static final long CAMERA_DEBOUNCE_MS = 50;
+    /**
+     * Relative change of the visible extent which redraws the lines
+     */
+    private static final double EXTENT_THRESHOLD = 0.1;
     private static MapApi mInstance;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mCameraUpdate = new Runnable() {
+        @Override
+        public void run() {
+            updateOverlay();
+        }
+    };
+    private final FrameStats mPanStats = new FrameStats();
+    private final FrameStats mZoomStats = new FrameStats();
+    private boolean mIsCameraUpdatePending;
+    private boolean mIsZoomChanged;
+    /**
+     * true if the lines for the marker were requested by drawAzimuth
+     */
+    private boolean mIsOverlayRequested;
+    private int mCoalescedCount;
     private float mOldZoom = -1;
+    /**
+     * Visible extent used for the drawn lines, 0 if nothing is drawn
+     */
+    private double mDrawnSize;
     private double mAzimuth;
     private double mSunsetAzimuth;
     private double mSunriseAzimuth;
     private double mAltitude;
-    private Polyline mAzimuthLine;
-    private Polyline mSunsetAzimuthLine;
-    private Polyline mSunriseAzimuthLine;
+    private SunPath mSunPath;
+    private SunOverlay mOverlay;
     private LatLng mLocation;
     private GoogleMap mGoogleMap;
     private Marker mMarker;
@@ -63,6 +97,7 @@ public class MapApi implements OnMapReadyCallback, GoogleMap.OnMapLongClickListe
 
     public static void freeInstance() {
         if (mInstance != null) {
+            mInstance.mHandler.removeCallbacks(mInstance.mCameraUpdate);
             mInstance = null;
         }
     }
@@ -77,6 +112,8 @@ public class MapApi implements OnMapReadyCallback, GoogleMap.OnMapLongClickListe
         mGoogleMap.setMyLocationEnabled(true);
         mGoogleMap.setOnMapLongClickListener(this);
         mGoogleMap.setOnCameraChangeListener(this);
+        mOverlay = new SunOverlay(mGoogleMap);
+        mOverlay.loadSettings(mContext);
         if (Constants.PAID) {
             loadState();
         }
@@ -93,22 +130,114 @@ public class MapApi implements OnMapReadyCallback, GoogleMap.OnMapLongClickListe
 
     @Override
     public void onCameraChange(CameraPosition cameraPosition) {
+        if (mOldZoom != cameraPosition.zoom) {
+            mOldZoom = cameraPosition.zoom;
+            mIsZoomChanged = true;
+        }
+
         if (mMarker != null) {
-            if (mOldZoom != cameraPosition.zoom) {
-                mOldZoom = cameraPosition.zoom;
-                drawAzimuth(mLocation);
+            // only the last change of a burst is processed
+            if (mIsCameraUpdatePending) {
+                mHandler.removeCallbacks(mCameraUpdate);
+                mCoalescedCount++;
             }
+            mIsCameraUpdatePending = true;
+            mHandler.postDelayed(mCameraUpdate, CAMERA_DEBOUNCE_MS);
         }
     }
 
+    /**
+     * Updates the lines after the camera change, redraws them only if the
+     * visible extent changed enough
+     */
+    private void updateOverlay() {
+        long start = System.nanoTime();
+        boolean isZoom = mIsZoomChanged;
+        mIsCameraUpdatePending = false;
+        mIsZoomChanged = false;
+        if (mMarker == null || !mIsOverlayRequested) {
+            return;
+        }
+
+        if (getCameraZoom() >= MINIMUM_ZOOM) {
+            double size = getVisibleSize();
+            if (mDrawnSize == 0 || Math.abs(size - mDrawnSize) > mDrawnSize * EXTENT_THRESHOLD) {
+                drawOverlay(mLocation, size);
+            }
+        } else if (isZoom) {
+            Common.showMessage(mContext, R.string.error_zoomToSmall);
+        }
+
+        long time = System.nanoTime() - start;
+        if (isZoom) {
+            mZoomStats.add(time);
+            Trace.variable(TAG, "zoomFrameUs", time / 1000);
+        } else {
+            mPanStats.add(time);
+            Trace.variable(TAG, "panFrameUs", time / 1000);
+        }
+    }
+
+    /**
+     * Reads settings of the lines again and redraws the drawn lines, called
+     * when the user may have changed the settings
+     */
+    public void reloadSettings() {
+        if (mOverlay != null) {
+            mOverlay.loadSettings(mContext);
+            if (mMarker != null && mDrawnSize != 0) {
+                drawOverlay(mLocation, mDrawnSize);
+            }
+        }
+    }
+
+    /**
+     * Writes the overlay update statistics to the trace, so the pans and the
+     * zooms of the session can be compared in the trace dump
+     */
+    public void traceStats() {
+        Trace.variable(TAG, "panFrames", mPanStats.getCount());
+        Trace.variable(TAG, "panFrameAverageMs", mPanStats.getAverageMs());
+        Trace.variable(TAG, "panFrameMaxMs", mPanStats.getMaxMs());
+        Trace.variable(TAG, "zoomFrames", mZoomStats.getCount());
+        Trace.variable(TAG, "zoomFrameAverageMs", mZoomStats.getAverageMs());
+        Trace.variable(TAG, "zoomFrameMaxMs", mZoomStats.getMaxMs());
+        Trace.variable(TAG, "coalescedChanges", mCoalescedCount);
+    }
+
+    /**
+     * @return time of the overlay updates after the camera pans
+     */
+    public FrameStats getPanStats() {
+        return mPanStats;
+    }
+
+    /**
+     * @return time of the overlay updates after the camera zooms
+     */
+    public FrameStats getZoomStats() {
+        return mZoomStats;
+    }
+
+    /**
+     * @return number of camera changes skipped by the debouncing
+     */
+    public int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
     public void setMapType(int mapType) {
         mGoogleMap.setMapType(mapType);
     }
 
     public void clearMap() {
         if (mMarker != null) {
-            mGoogleMap.clear();
+            mMarker.remove();
             mMarker = null;
+            // lines are hidden and kept for the next marker
+            mOverlay.hide();
+            mIsOverlayRequested = false;
+            mDrawnSize = 0;
         }
     }
 
@@ -168,81 +297,37 @@ public class MapApi implements OnMapReadyCallback, GoogleMap.OnMapLongClickListe
         mAltitude = altitude;
     }
 
+    /**
+     * Sets sun path for drawing
+     *
+     * @param sunPath sun path for the date of calculation
+     */
+    public void setSunPath(SunPath sunPath) {
+        mSunPath = sunPath;
+    }
+
     public void drawAzimuth(LatLng latLng) {
+        mIsOverlayRequested = true;
         if (getCameraZoom() >= MINIMUM_ZOOM) {
-            double size = mGoogleMap.getProjection().getVisibleRegion().farLeft.longitude -
-                    mGoogleMap.getProjection().getVisibleRegion().nearRight.longitude;
-            size = Math.abs(size);
-
-            if (mAzimuthLine != null) {
-                mAzimuthLine.remove();
-            }
-
-            if (mSunsetAzimuthLine != null) {
-                mSunsetAzimuthLine.remove();
-            }
-
-            if (mSunriseAzimuthLine != null) {
-                mSunriseAzimuthLine.remove();
-            }
-
-            if (mAltitude > 0) {
-                PolylineOptions options = polylineDraw(
-                        latLng,
-                        mAzimuth,
-                        size,
-                        Settings.getSunLineColor(mContext),
-                        5
-                );
-                mAzimuthLine = mGoogleMap.addPolyline(options);
-            }
-
-            if (Settings.isSunsetShow(mContext)) {
-                PolylineOptions sunsetAzimuth = polylineDraw(
-                        latLng,
-                        mSunsetAzimuth,
-                        size,
-                        Settings.getSunsetLineColor(mContext),
-                        5
-                );
-                mSunsetAzimuthLine = mGoogleMap.addPolyline(sunsetAzimuth);
-            }
-
-            if (Settings.isSunriseShow(mContext)) {
-                PolylineOptions sunriseAzimuth = polylineDraw(
-                        latLng,
-                        mSunriseAzimuth,
-                        size,
-                        Settings.getSunriseLineColor(mContext),
-                        5
-                );
-
-                mSunriseAzimuthLine = mGoogleMap.addPolyline(sunriseAzimuth);
-            }
+            drawOverlay(latLng, getVisibleSize());
         } else {
             Common.showMessage(mContext, R.string.error_zoomToSmall);
         }
     }
 
+    private void drawOverlay(LatLng location, double size) {
+        mOverlay.draw(location, size, mAltitude, mAzimuth, mSunsetAzimuth, mSunriseAzimuth, mSunPath);
+        mDrawnSize = size;
+    }
+
     /**
-     * Creates polyline object for drawing azimuth
+     * Gets line length for drawing
      *
-     * @param location start point
-     * @param azimuth  solar azimuth angle
-     * @param size     line length for drawing
-     * @param color    line color
-     * @param width    line width
-     * @return polyline object for drawing azimuth
+     * @return width of the visible region in degrees of longitude
      */
-    private PolylineOptions polylineDraw(LatLng location, double azimuth, double size, int color,
-                                         int width) {
-        PolylineOptions options = new PolylineOptions();
-        options.add(location);
-        options.add(SunCalculator.getDestLatLng(location, azimuth, size));
-        options.width(width);
-        options.color(color);
-
-        return options;
+    private double getVisibleSize() {
+        VisibleRegion region = mGoogleMap.getProjection().getVisibleRegion();
+        return Math.abs(region.farLeft.longitude - region.nearRight.longitude);
     }
 
     public boolean isHaveMarkder() {
@@ -270,4 +355,40 @@ public class MapApi implements OnMapReadyCallback, GoogleMap.OnMapLongClickListe
     public interface OnMapListener {
         public void onMapLongClick(LatLng latLng);
     }
+
+    /**
+     * Statistics of the overlay update times
+     */
+    public static class FrameStats {
+        private int mCount;
+        private long mTotalTime;
+        private long mMaxTime;
+
+        private void add(long time) {
+            mCount++;
+            mTotalTime += time;
+            mMaxTime = Math.max(mMaxTime, time);
+        }
+
+        /**
+         * @return number of updates
+         */
+        public int getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return average update time in milliseconds
+         */
+        public double getAverageMs() {
+            return mCount == 0 ? 0 : mTotalTime / 1e6 / mCount;
+        }
+
+        /**
+         * @return maximum update time in milliseconds
+         */
+        public double getMaxMs() {
+            return mMaxTime / 1e6;
+        }
+    }
 }
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.model;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import ru.neverdark.phototools.azimuth.utils.Trace;
+
+/**
+ * HTTP client shared by all network requests of the application. Connections
+ * are pooled and kept alive between requests, responses are requested
+ * compressed and parsed while they are downloaded. Timeouts and latency
+ * statistics are kept per endpoint
+ */
+public class NetworkClient {
+    /**
+     * Google geocoding API
+     */
+    public static final Endpoint GEOCODE = new Endpoint("geocode", 4000, 1000);
+    /**
+     * Google time zone API
+     */
+    public static final Endpoint TIME_ZONE = new Endpoint("timeZone", 4000, 1000);
+
+    private static final String TAG = "NetworkClient";
+    private static final int IDLE_TIMEOUT_SECONDS = 30;
+    private static NetworkClient mInstance;
+
+    private final ClientConnectionManager mConnectionManager;
+    private final HttpClient mClient;
+
+    private NetworkClient() {
+        HttpParams params = new BasicHttpParams();
+        HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+        HttpProtocolParams.setContentCharset(params, "UTF-8");
+        // small requests on a kept alive connection must not wait for delayed ACK
+        HttpConnectionParams.setTcpNoDelay(params, true);
+        // the check costs a blocking read on every request, a connection closed by the server is retried instead
+        HttpConnectionParams.setStaleCheckingEnabled(params, false);
+
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+        registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+        mConnectionManager = new ThreadSafeClientConnManager(params, registry);
+        mClient = new DefaultHttpClient(mConnectionManager, params);
+    }
+
+    public static synchronized NetworkClient getInstance() {
+        if (mInstance == null) {
+            mInstance = new NetworkClient();
+        }
+
+        return mInstance;
+    }
+
+    /**
+     * Executes request and parses response while it is downloaded. The
+     * request may be aborted from another thread, in this case IOException is
+     * thrown
+     *
+     * @param endpoint endpoint of the request
+     * @param request  request
+     * @param parser   parser of the response body
+     * @param <T>      type of the parse result
+     * @return parse result
+     * @throws IOException if request fails, status is not 200 or response
+     *                     cannot be parsed
+     */
+    public <T> T get(Endpoint endpoint, HttpGet request, ResponseParser<T> parser) throws IOException {
+        HttpConnectionParams.setConnectionTimeout(request.getParams(), endpoint.mConnectionTimeout);
+        HttpConnectionParams.setSoTimeout(request.getParams(), endpoint.mReadTimeout);
+        request.setHeader("Accept-Encoding", "gzip");
+        mConnectionManager.closeIdleConnections(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        boolean isSuccess = false;
+        try {
+            HttpResponse response = mClient.execute(request);
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                throw new IOException("Empty response");
+            }
+
+            // closing the content skips the rest of the body, so the connection goes back to the pool
+            InputStream content = entity.getContent();
+            try {
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode != HttpStatus.SC_OK) {
+                    throw new IOException("HTTP status " + statusCode);
+                }
+
+                Header encoding = entity.getContentEncoding();
+                if (encoding != null && "gzip".equalsIgnoreCase(encoding.getValue())) {
+                    content = new GZIPInputStream(content);
+                }
+
+                T result = parser.parse(new InputStreamReader(content, "UTF-8"));
+                isSuccess = true;
+                return result;
+            } finally {
+                content.close();
+            }
+        } finally {
+            long latency = (System.nanoTime() - start) / 1000000;
+            endpoint.addRequest(latency, isSuccess);
+            Trace.variable(TAG, endpoint.mName, latency);
+        }
+    }
+
+    /**
+     * Parser of the response body
+     *
+     * @param <T> type of the parse result
+     */
+    public interface ResponseParser<T> {
+        /**
+         * Parses response, may return without reading the whole body
+         *
+         * @param reader response body
+         * @return parse result
+         * @throws IOException if reading fails or response cannot be parsed
+         */
+        T parse(Reader reader) throws IOException;
+    }
+
+    /**
+     * Remote service with its timeouts and request statistics
+     */
+    public static class Endpoint {
+        private final String mName;
+        private final int mConnectionTimeout;
+        private final int mReadTimeout;
+        private int mRequestCount;
+        private int mFailureCount;
+        private long mTotalLatency;
+        private long mMaxLatency;
+
+        /**
+         * Constructor
+         *
+         * @param name              name for statistics
+         * @param connectionTimeout connection timeout in milliseconds
+         * @param readTimeout       read timeout in milliseconds
+         */
+        public Endpoint(String name, int connectionTimeout, int readTimeout) {
+            mName = name;
+            mConnectionTimeout = connectionTimeout;
+            mReadTimeout = readTimeout;
+        }
+
+        private synchronized void addRequest(long latency, boolean isSuccess) {
+            mRequestCount++;
+            if (!isSuccess) {
+                mFailureCount++;
+            }
+            mTotalLatency += latency;
+            mMaxLatency = Math.max(mMaxLatency, latency);
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return number of requests including failed
+         */
+        public synchronized int getRequestCount() {
+            return mRequestCount;
+        }
+
+        /**
+         * @return number of failed requests
+         */
+        public synchronized int getFailureCount() {
+            return mFailureCount;
+        }
+
+        /**
+         * @return average request latency in milliseconds
+         */
+        public synchronized long getAverageLatency() {
+            return mRequestCount > 0 ? mTotalLatency / mRequestCount : 0;
+        }
+
+        /**
+         * @return maximum request latency in milliseconds
+         */
+        public synchronized long getMaxLatency() {
+            return mMaxLatency;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.model;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.TimeZone;
+
+import ru.neverdark.phototools.azimuth.core.TimeZoneIndex;
+import ru.neverdark.phototools.azimuth.utils.Log;
+
+/**
+ * Determines time zone of the location without network using the time zone
+ * index from the application assets. The index is memory mapped, so only
+ * pages touched by lookups are read
+ */
+public class OfflineTimeZone {
+    private static final String INDEX_ASSET = "timezones.tzi";
+    private static OfflineTimeZone mInstance;
+
+    private final TimeZoneIndex mIndex;
+
+    private OfflineTimeZone(Context context) {
+        mIndex = openIndex(context);
+    }
+
+    /**
+     * Gets instance, the index is opened on the first call, so it should not
+     * be called from the UI thread
+     *
+     * @param context application context
+     * @return instance
+     */
+    public static synchronized OfflineTimeZone getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new OfflineTimeZone(context.getApplicationContext());
+        }
+
+        return mInstance;
+    }
+
+    /**
+     * Maps index from the assets
+     *
+     * @param context application context
+     * @return index or null if the application has no index
+     */
+    private static TimeZoneIndex openIndex(Context context) {
+        try {
+            AssetFileDescriptor descriptor = context.getAssets().openFd(INDEX_ASSET);
+            FileInputStream stream = descriptor.createInputStream();
+            try {
+                // mapping stays valid after closing the file
+                FileChannel channel = stream.getChannel();
+                return TimeZoneIndex.read(channel.map(FileChannel.MapMode.READ_ONLY,
+                        descriptor.getStartOffset(), descriptor.getLength()));
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            Log.message("Offline time zone index is not available");
+            return null;
+        }
+    }
+
+    /**
+     * Checks that the index is available
+     *
+     * @return true if the application has the index
+     */
+    public boolean isAvailable() {
+        return mIndex != null;
+    }
+
+    /**
+     * Gets time zone of the location
+     *
+     * @param location location
+     * @return time zone or null if the index is not available, has no zone
+     * for the location or the zone is unknown to the device
+     */
+    public TimeZone getTimeZone(LatLng location) {
+        if (mIndex == null) {
+            return null;
+        }
+
+        String timeZoneId = mIndex.getTimeZoneId(location.latitude, location.longitude);
+        if (timeZoneId == null) {
+            return null;
+        }
+
+        // unknown ids give GMT, zones newer than the device time zone data must be requested from Google
+        TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+        if (!timeZoneId.equals(timeZone.getID())) {
+            Log.variable("unknownTimeZoneId", timeZoneId);
+            return null;
+        }
+
+        return timeZone;
+    }
+}
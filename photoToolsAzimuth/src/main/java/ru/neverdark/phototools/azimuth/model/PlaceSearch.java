@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.model;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.neverdark.phototools.azimuth.core.Gazetteer;
+import ru.neverdark.phototools.azimuth.core.Place;
+import ru.neverdark.phototools.azimuth.core.PlaceNames;
+import ru.neverdark.phototools.azimuth.db.LocationRecord;
+import ru.neverdark.phototools.azimuth.db.LocationsRepository;
+import ru.neverdark.phototools.azimuth.utils.Log;
+
+/**
+ * Finds places by the beginning of the name without network. Saved
+ * locations are found first by LocationsRepository, then places of the
+ * gazetteer from the application assets. The gazetteer is memory mapped, so
+ * only pages touched by searches are read.
+ * <p/>
+ * find must not be called from the UI thread, it waits for the search of the
+ * saved locations and opens the gazetteer on the first search
+ */
+public class PlaceSearch {
+    private static final String GAZETTEER_ASSET = "places.gaz";
+    private static PlaceSearch mInstance;
+
+    private final Context mContext;
+    private final LocationsRepository mRepository;
+    private Gazetteer mGazetteer;
+    private boolean mIsGazetteerOpen;
+
+    private PlaceSearch(Context context) {
+        mContext = context;
+        mRepository = LocationsRepository.getInstance(context);
+    }
+
+    public static synchronized PlaceSearch getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new PlaceSearch(context.getApplicationContext());
+        }
+
+        return mInstance;
+    }
+
+    /**
+     * Maps gazetteer from the assets
+     *
+     * @param context application context
+     * @return gazetteer or null if the application has no gazetteer
+     */
+    private static Gazetteer openGazetteer(Context context) {
+        try {
+            AssetFileDescriptor descriptor = context.getAssets().openFd(GAZETTEER_ASSET);
+            FileInputStream stream = descriptor.createInputStream();
+            try {
+                // mapping stays valid after closing the file
+                FileChannel channel = stream.getChannel();
+                return Gazetteer.read(channel.map(FileChannel.MapMode.READ_ONLY,
+                        descriptor.getStartOffset(), descriptor.getLength()));
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            Log.message("Gazetteer is not available");
+            return null;
+        }
+    }
+
+    /**
+     * Finds saved locations by the full-text index of the names
+     *
+     * @param query  search query
+     * @param limit  maximum number of locations
+     * @param result list for found locations
+     */
+    private void findSavedLocations(String query, int limit, List<Place> result) {
+        List<LocationRecord> records = mRepository.searchLocations(query, limit);
+        if (records == null) {
+            return;
+        }
+        for (LocationRecord record : records) {
+            result.add(new Place(record.getLocationName(), record.getLatitude(), record.getLongitude(), 0));
+        }
+    }
+
+    /**
+     * Finds places with the name starting with the query
+     *
+     * @param query beginning of the name as typed by user
+     * @param limit maximum number of places
+     * @return found places, saved locations first
+     */
+    public synchronized List<Place> find(String query, int limit) {
+        List<Place> result = new ArrayList<Place>(limit);
+        String prefix = PlaceNames.normalize(query);
+        if (prefix.length() == 0) {
+            return result;
+        }
+
+        findSavedLocations(prefix, limit, result);
+
+        if (!mIsGazetteerOpen) {
+            mGazetteer = openGazetteer(mContext);
+            mIsGazetteerOpen = true;
+        }
+        if (mGazetteer != null && result.size() < limit) {
+            mGazetteer.find(prefix, limit - result.size(), result);
+        }
+
+        return result;
+    }
+}
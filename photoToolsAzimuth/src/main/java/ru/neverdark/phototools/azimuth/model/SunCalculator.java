@@ -16,24 +16,32 @@
 package ru.neverdark.phototools.azimuth.model;
 
 import com.google.android.gms.maps.model.LatLng;
-import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
-import com.luckycatlabs.sunrisesunset.dto.Location;
+import com.luckycatlabs.sunrisesunset.calculator.SolarEventCalculator;
 
 import java.util.Calendar;
 import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
 
-import ru.neverdark.phototools.azimuth.utils.Log;
+import ru.neverdark.phototools.azimuth.core.PreparedSunCalculator;
+import ru.neverdark.phototools.azimuth.core.SunPath;
+import ru.neverdark.phototools.azimuth.core.SunPosition;
+import ru.neverdark.phototools.azimuth.core.SunPositionCalculator;
+import ru.neverdark.phototools.azimuth.utils.Trace;
 
 /**
- * Class for calculation sun azimuth and sun altitude
+ * Class for calculation sun azimuth and sun altitude. Adapts the calculations
+ * from the azimuthCore module to the Google Maps types.
+ * <p/>
+ * getPosition must not be called from several threads at once. The sun path
+ * of a result is read by the UI thread, so it is reused only after it is
+ * returned by recycle
  */
 public class SunCalculator {
+    private static final String TAG = "SunCalculator.getPosition";
 
-    private static final double rad = Math.PI / 180;
-    private static final double e = rad * 23.4397;
-    private static final long dayMs = 1000 * 60 * 60 * 24;
-    private static final int J1970 = 2440588;
-    private static final int J2000 = 2451545;
+    private final SunPositionCalculator mCalculator = new SunPositionCalculator();
+    private final AtomicReference<SunPath> mSparePath = new AtomicReference<SunPath>();
 
     /**
      * Gets second point for drawing azimuth
@@ -51,181 +59,80 @@ public class SunCalculator {
         return new LatLng(lat2, lng2);
     }
 
-    private double asin(double d) {
-        return Math.asin(d);
-    }
-
-    private double atan(double x, double y) {
-        return Math.atan2(x, y);
-    }
-
-    private double cos(double d) {
-        return Math.cos(d);
-    }
-
-    private double getAltitude(double H, double phi, double dec) {
-        return asin(sin(phi) * sin(dec) + cos(phi) * cos(dec) * cos(H));
-    }
-
-    private double getAzimuth(double H, double phi, double dec) {
-        return atan(sin(H), cos(H) * sin(phi) - tan(dec) * cos(phi));
-    }
-
-    private double getDeclination(double l, double b) {
-        return asin(sin(b) * cos(e) + cos(b) * sin(e) * sin(l));
-    }
-
-    private double getEclipticLongitude(double M, double C) {
-        double P = rad * 102.9372;
-        return M + C + P + Math.PI;
-    }
-
-    private double getEquationOfCenter(double M) {
-        return rad
-                * (1.9148 * sin(M) + 0.02 * sin(2 * M) + 0.0003 * sin(3 * M));
-    }
-
     /**
-     * Gets sun azimuth and altitude for specified date and location
+     * Gets sun azimuth and altitude for specified date and location, and the
+     * sun path for the whole date
      *
-     * @param date     date for calculation
-     * @param location location for calculation
+     * @param date            date for calculation
+     * @param location        location for calculation
+     * @param isSunPathNeeded false for skip the sun path, it is not shown
      * @return object contains calculation result
      */
-    public CalculationResult getPosition(Calendar date, LatLng location) {
-        long start = Log.enter();
-
-        Log.variable("rad", String.valueOf(rad));
-        Log.variable("latitude", String.valueOf(location.latitude));
-        Log.variable("longitude", String.valueOf(location.longitude));
-
-        double lw = rad * -location.longitude;
-        double phi = rad * location.latitude;
-
-        Log.variable("lw", String.valueOf(lw));
-        Log.variable("phi", String.valueOf(phi));
+    public CalculationResult getPosition(Calendar date, LatLng location, boolean isSunPathNeeded) {
+        long start = Trace.begin(TAG);
 
-        ////
-        double d = toDays(date);
-        Log.variable("d", String.valueOf(d));
-
-        DecRa c = getSunCoords(d);
-        Log.variable("c.ra", String.valueOf(c.ra));
-        Log.variable("c.dec", String.valueOf(c.dec));
-
-        double H = getSiderealTime(d, lw) - c.ra;
-        Log.variable("H", String.valueOf(H));
-        /////
+        PreparedSunCalculator calculator = mCalculator.prepare(location.latitude, location.longitude,
+                date.getTimeZone());
+        SunPosition position = calculator.getPosition(date.getTimeInMillis());
 
         CalculationResult result = new CalculationResult();
         result.location = location;
-        result.azimuth = getAzimuth(H, phi, c.dec) + Math.PI;
-
-        //////////
-        // workaround for fix difference between azimuth and photo tools sunset module
-        Location loc = new Location(location.latitude, location.longitude);
-        SunriseSunsetCalculator calc = new SunriseSunsetCalculator(loc, date.getTimeZone());
-        String sunset = calc.getOfficialSunsetForDate(date);
-        String sunrise = calc.getOfficialSunriseForDate(date);
-        result.sunsetTime = sunset;
-        result.sunriseTime = sunrise;
-        result.time = String.format(Locale.US, "%02d:%02d", date.get(Calendar.HOUR_OF_DAY), date.get(Calendar.MINUTE));
-        String givenDate = String.format(Locale.US, "%02d%02d", date.get(Calendar.HOUR_OF_DAY), date.get(Calendar.MINUTE));
-        String[] sunsets = sunset.split(":");
-        String[] sunrises = sunrise.split(":");
-        sunset = sunsets[0].concat(sunsets[1]);
-        sunrise = sunrises[0].concat(sunrises[1]);
-        int sunsetInt = Integer.valueOf(sunset);
-        int sunriseInt = Integer.valueOf(sunrise);
-        int givenDateInt = Integer.valueOf(givenDate);
-        Log.variable("sunsetInt", sunset);
-        Log.variable("sunriseInt", sunrise);
-        Log.variable("givenDateInt", givenDate);
-
-        if (givenDateInt >= sunriseInt && givenDateInt <= sunsetInt) {
-            result.altitude = getAltitude(H, phi, c.dec) * 180 / Math.PI;
-        } else {
-            result.altitude = -1;
+        result.azimuth = position.getAzimuth();
+        result.altitude = position.getAltitude();
+        result.sunsetAzimuth = position.getSunsetAzimuth();
+        result.sunriseAzimuth = position.getSunriseAzimuth();
+        result.timeZone = date.getTimeZone();
+        result.time = date.getTimeInMillis();
+        result.sunsetTime = position.getSunsetTime();
+        result.sunriseTime = position.getSunriseTime();
+        if (isSunPathNeeded) {
+            result.sunPath = getSunPath(calculator, date);
         }
 
-        ////////////
-        int sunsetHour = Integer.valueOf(sunsets[0]);
-        int sunsetMinute = Integer.valueOf(sunsets[1]);
-        int sunriseHour = Integer.valueOf(sunrises[0]);
-        int sunriseMinute = Integer.valueOf(sunrises[1]);
-
-        Calendar sunsetCalendar = Calendar.getInstance(date.getTimeZone());
-        sunsetCalendar.set(Calendar.HOUR_OF_DAY, sunsetHour);
-        sunsetCalendar.set(Calendar.MINUTE, sunsetMinute);
-        double dSunset = toDays(sunsetCalendar);
-        DecRa cSunset = getSunCoords(dSunset);
-        double HSunset = getSiderealTime(dSunset, lw) - cSunset.ra;
-        result.sunsetAzimuth = getAzimuth(HSunset, phi, cSunset.dec) + Math.PI;
-
-        Calendar sunriseCalendar = Calendar.getInstance(date.getTimeZone());
-        sunriseCalendar.set(Calendar.HOUR_OF_DAY, sunriseHour);
-        sunriseCalendar.set(Calendar.MINUTE, sunriseMinute);
-        double dSunrise = toDays(sunriseCalendar);
-        DecRa cSunrise = getSunCoords(dSunrise);
-        double HSunrise = getSiderealTime(dSunrise, lw) - cSunrise.ra;
-        result.sunriseAzimuth = getAzimuth(HSunrise, phi, cSunrise.dec) + Math.PI;
-        ////////////
-
-        //result.altitude = getAltitude(H, phi, c.dec);
-
-        Log.variable("azimuth", String.valueOf(result.azimuth));
-        Log.variable("sunsetAzimuth", String.valueOf(result.sunsetAzimuth));
-        Log.variable("sunriseAzimuth", String.valueOf(result.sunriseAzimuth));
-        Log.variable("altitude", String.valueOf(result.altitude));
-
-        Log.exit(start);
+        Trace.variable(TAG, "azimuth", result.azimuth);
+        Trace.variable(TAG, "altitude", result.altitude);
+        if (result.sunPath != null) {
+            Trace.variable(TAG, "pathSamples", result.sunPath.getCount());
+        }
+        Trace.end(TAG, start);
 
         return result;
     }
 
-    private double getRightAscension(double l, double b) {
-        return atan(sin(l) * cos(e) - tan(b) * sin(e), cos(l));
-    }
-
-    private double getSiderealTime(double d, double lw) {
-        return rad * (280.16 + 360.9856235 * d) - lw;
-    }
-
-    private double getSolarMeanAnomaly(double d) {
-        return rad * (357.5291 + 0.98560028 * d);
-    }
-
-    private DecRa getSunCoords(double d) {
-        DecRa decRa = new DecRa();
-        double M = getSolarMeanAnomaly(d);
-        double C = getEquationOfCenter(M);
-        double L = getEclipticLongitude(M, C);
-
-        decRa.dec = getDeclination(L, 0);
-        decRa.ra = getRightAscension(L, 0);
-
-        return decRa;
-    }
-
-    private double sin(double d) {
-        return Math.sin(d);
-    }
-
-    private double tan(double d) {
-        return Math.tan(d);
-    }
-
-    private double toDays(Calendar date) {
-        return toJulian(date) - J2000;
+    /**
+     * Returns the sun path of a result for reuse by the next calculation. Must
+     * be called when the path is no longer read, may be called from any thread
+     *
+     * @param path sun path of a result or null
+     */
+    public void recycle(SunPath path) {
+        if (path != null) {
+            // one spare path is enough, the UI thread holds only the shown one
+            mSparePath.compareAndSet(null, path);
+        }
     }
 
-    private double toJulian(Calendar date) {
-        Log.enter();
-        double first = (double) date.getTimeInMillis() / dayMs;
-        double second = J1970 - 0.5;
-        Log.variable("first", String.valueOf(first));
-        Log.variable("second", String.valueOf(second));
-        return first + second;
+    /**
+     * Computes sun path from the midnight to the next midnight of the date,
+     * the recycled path is reused if there is one
+     *
+     * @param calculator calculator prepared for the location
+     * @param date       date for calculation
+     * @return sun path
+     */
+    private SunPath getSunPath(PreparedSunCalculator calculator, Calendar date) {
+        Calendar day = Calendar.getInstance(date.getTimeZone());
+        day.clear();
+        day.set(date.get(Calendar.YEAR), date.get(Calendar.MONTH), date.get(Calendar.DAY_OF_MONTH));
+        long dayStart = day.getTimeInMillis();
+        day.add(Calendar.DAY_OF_MONTH, 1);
+
+        SunPath path = mSparePath.getAndSet(null);
+        if (path == null) {
+            path = new SunPath();
+        }
+        path.compute(calculator, dayStart, day.getTimeInMillis());
+        return path;
     }
 
     /**
@@ -237,9 +144,11 @@ public class SunCalculator {
         private double sunsetAzimuth;
         private double sunriseAzimuth;
         private LatLng location;
-        private String time;
-        private String sunsetTime;
-        private String sunriseTime;
+        private TimeZone timeZone;
+        private long time;
+        private long sunsetTime;
+        private long sunriseTime;
+        private SunPath sunPath;
 
         /**
          * Gets sun altitude
@@ -271,7 +180,7 @@ public class SunCalculator {
         /**
          * Gets azimuth for sunset time
          *
-         * @return sun azimuth for sunset time
+         * @return sun azimuth for sunset time or Double.NaN if the sun does not set
          */
         public double getSunsetAzimuth() {
             return sunsetAzimuth;
@@ -280,32 +189,71 @@ public class SunCalculator {
         /**
          * Gets azimuth for sunrise time
          *
-         * @return sun azimuth for sunrise time
+         * @return sun azimuth for sunrise time or Double.NaN if the sun does not rise
          */
         public double getSunriseAzimuth() {
             return sunriseAzimuth;
         }
 
+        /**
+         * Gets sun path for the whole date
+         *
+         * @return sun path or null if it is not shown
+         */
+        public SunPath getSunPath() {
+            return sunPath;
+        }
+
         public LatLng getLocation() {
             return location;
         }
 
         public String getTime() {
-            return time;
+            return formatTime(time);
         }
 
         public String getSunsetTime() {
-            return sunsetTime;
+            return formatTime(sunsetTime);
         }
 
         public String getSunriseTime() {
+            return formatTime(sunriseTime);
+        }
+
+        /**
+         * Gets sunset time
+         *
+         * @return sunset time in milliseconds or SolarEventCalculator.NO_EVENT
+         */
+        public long getSunsetTimeInMillis() {
+            return sunsetTime;
+        }
+
+        /**
+         * Gets sunrise time
+         *
+         * @return sunrise time in milliseconds or SolarEventCalculator.NO_EVENT
+         */
+        public long getSunriseTimeInMillis() {
             return sunriseTime;
         }
-    }
 
-    private class DecRa {
-        private double dec;
-        private double ra;
+        /**
+         * Formats time to HH:mm in the time zone of calculation
+         *
+         * @param time time in milliseconds or SolarEventCalculator.NO_EVENT
+         * @return formatted time or 99:99 for SolarEventCalculator.NO_EVENT
+         */
+        private String formatTime(long time) {
+            if (time == SolarEventCalculator.NO_EVENT) {
+                return "99:99";
+            }
+
+            Calendar calendar = Calendar.getInstance(timeZone);
+            calendar.setTimeInMillis(time);
+            return String.format(Locale.US, "%02d:%02d", calendar.get(Calendar.HOUR_OF_DAY),
+                    calendar.get(Calendar.MINUTE));
+        }
     }
 
 }
@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.model;
+
+import android.content.Context;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.neverdark.phototools.azimuth.core.SunPath;
+import ru.neverdark.phototools.azimuth.utils.Settings;
+
+/**
+ * Layer of the sun lines and the sun path on the map. Polylines are added to
+ * the map once and then updated in place, hidden polylines are kept for the
+ * next drawing. Colors and visibility of the lines are read from the settings
+ * by loadSettings only, not on every drawing.
+ * <p/>
+ * Methods must be called from the UI thread
+ */
+class SunOverlay {
+    private static final int LINE_WIDTH = 5;
+    private static final int SUN_PATH_WIDTH = 3;
+    /**
+     * Half length of the hour marks of the sun path, part of the line length
+     */
+    private static final double HOUR_MARK_SIZE = 0.03;
+
+    private final GoogleMap mMap;
+    private Polyline mAzimuthLine;
+    private Polyline mSunsetLine;
+    private Polyline mSunriseLine;
+    /**
+     * Parts of the sun path and hour marks, the first mPathLinesUsed are shown
+     */
+    private final List<Polyline> mPathLines = new ArrayList<Polyline>();
+    private int mPathLinesUsed;
+    /**
+     * Points of the line being updated, the list is reused
+     */
+    private final List<LatLng> mPoints = new ArrayList<LatLng>();
+
+    private int mSunColor;
+    private int mSunsetColor;
+    private int mSunriseColor;
+    private boolean mIsSunsetShow;
+    private boolean mIsSunriseShow;
+    private boolean mIsSunPathShow;
+
+    /**
+     * Constructor
+     *
+     * @param map map for drawing
+     */
+    SunOverlay(GoogleMap map) {
+        mMap = map;
+    }
+
+    /**
+     * Reads colors and visibility of the lines from the settings, the colors
+     * of the existing lines are changed at once, visibility on the next
+     * drawing
+     *
+     * @param context application context
+     */
+    void loadSettings(Context context) {
+        mSunColor = Settings.getSunLineColor(context);
+        mSunsetColor = Settings.getSunsetLineColor(context);
+        mSunriseColor = Settings.getSunriseLineColor(context);
+        mIsSunsetShow = Settings.isSunsetShow(context);
+        mIsSunriseShow = Settings.isSunriseShow(context);
+        mIsSunPathShow = Settings.isSunPathShow(context);
+
+        setColor(mAzimuthLine, mSunColor);
+        setColor(mSunsetLine, mSunsetColor);
+        setColor(mSunriseLine, mSunriseColor);
+        for (Polyline line : mPathLines) {
+            line.setColor(mSunColor);
+        }
+    }
+
+    /**
+     * Draws the lines
+     *
+     * @param location       location of calculation
+     * @param size           line length for drawing
+     * @param altitude       sun altitude in degrees
+     * @param azimuth        sun azimuth in radians
+     * @param sunsetAzimuth  sunset azimuth in radians or Double.NaN
+     * @param sunriseAzimuth sunrise azimuth in radians or Double.NaN
+     * @param path           sun path or null
+     */
+    void draw(LatLng location, double size, double altitude, double azimuth, double sunsetAzimuth,
+              double sunriseAzimuth, SunPath path) {
+        mAzimuthLine = updateAzimuthLine(mAzimuthLine, location, azimuth, size, mSunColor, altitude > 0);
+        mSunsetLine = updateAzimuthLine(mSunsetLine, location, sunsetAzimuth, size, mSunsetColor,
+                mIsSunsetShow && !Double.isNaN(sunsetAzimuth));
+        mSunriseLine = updateAzimuthLine(mSunriseLine, location, sunriseAzimuth, size, mSunriseColor,
+                mIsSunriseShow && !Double.isNaN(sunriseAzimuth));
+
+        mPathLinesUsed = 0;
+        if (mIsSunPathShow && path != null) {
+            drawSunPath(location, path, size);
+        }
+        for (int i = mPathLinesUsed; i < mPathLines.size(); i++) {
+            mPathLines.get(i).setVisible(false);
+        }
+    }
+
+    /**
+     * Hides all lines
+     */
+    void hide() {
+        hide(mAzimuthLine);
+        hide(mSunsetLine);
+        hide(mSunriseLine);
+        for (Polyline line : mPathLines) {
+            line.setVisible(false);
+        }
+        mPathLinesUsed = 0;
+    }
+
+    private static void hide(Polyline line) {
+        if (line != null) {
+            line.setVisible(false);
+        }
+    }
+
+    private static void setColor(Polyline line, int color) {
+        if (line != null) {
+            line.setColor(color);
+        }
+    }
+
+    /**
+     * Updates line from the location to the azimuth
+     *
+     * @param line      existing line or null
+     * @param location  start point
+     * @param azimuth   solar azimuth angle
+     * @param size      line length for drawing
+     * @param color     line color, used if the line is added
+     * @param isVisible true if the line is shown
+     * @return updated line, null if it is not added yet and hidden
+     */
+    private Polyline updateAzimuthLine(Polyline line, LatLng location, double azimuth, double size,
+                                       int color, boolean isVisible) {
+        if (!isVisible) {
+            hide(line);
+            return line;
+        }
+
+        mPoints.clear();
+        mPoints.add(location);
+        mPoints.add(SunCalculator.getDestLatLng(location, azimuth, size));
+        return updateLine(line, LINE_WIDTH, color);
+    }
+
+    /**
+     * Sets mPoints to the line, adds the line to the map if it does not exist
+     *
+     * @param line  existing line or null
+     * @param width line width, used if the line is added
+     * @param color line color, used if the line is added
+     * @return updated line
+     */
+    private Polyline updateLine(Polyline line, int width, int color) {
+        if (line == null) {
+            return mMap.addPolyline(new PolylineOptions().addAll(mPoints).width(width).color(color));
+        }
+
+        line.setPoints(mPoints);
+        line.setVisible(true);
+        return line;
+    }
+
+    /**
+     * Shows mPoints by the next unused line of the sun path
+     */
+    private void addPathLine() {
+        if (mPathLinesUsed < mPathLines.size()) {
+            updateLine(mPathLines.get(mPathLinesUsed), SUN_PATH_WIDTH, mSunColor);
+        } else {
+            mPathLines.add(updateLine(null, SUN_PATH_WIDTH, mSunColor));
+        }
+        mPathLinesUsed++;
+    }
+
+    /**
+     * Draws part of the sun path above the horizon with marks of the hours.
+     * The sky is projected around the location: the horizon is on the circle
+     * with the radius of azimuth line, the zenith is in the location
+     *
+     * @param location location of calculation
+     * @param path     sun path
+     * @param size     line length for drawing
+     */
+    private void drawSunPath(LatLng location, SunPath path, double size) {
+        mPoints.clear();
+        for (int i = 0; i < path.getCount(); i++) {
+            double altitude = path.getAltitude(i);
+            if (altitude >= 0) {
+                if (mPoints.isEmpty() && i > 0) {
+                    mPoints.add(getHorizonPoint(location, path, i - 1, size));
+                }
+                mPoints.add(getSkyPoint(location, path.getAzimuth(i), altitude, size));
+            } else if (!mPoints.isEmpty()) {
+                mPoints.add(getHorizonPoint(location, path, i - 1, size));
+                addPathLine();
+                mPoints.clear();
+            }
+        }
+        if (!mPoints.isEmpty()) {
+            addPathLine();
+        }
+
+        for (int i = 0; i < path.getHourCount(); i++) {
+            double altitude = path.getHourAltitude(i);
+            if (altitude >= 0) {
+                double distance = getSkyDistance(altitude, size);
+                double azimuth = path.getHourAzimuth(i);
+                mPoints.clear();
+                mPoints.add(SunCalculator.getDestLatLng(location, azimuth, distance - size * HOUR_MARK_SIZE));
+                mPoints.add(SunCalculator.getDestLatLng(location, azimuth, distance + size * HOUR_MARK_SIZE));
+                addPathLine();
+            }
+        }
+    }
+
+    /**
+     * Gets point of the sky projection
+     *
+     * @param location location of calculation
+     * @param azimuth  sun azimuth in radians
+     * @param altitude sun altitude in degrees
+     * @param size     line length for drawing
+     * @return point on the map
+     */
+    private static LatLng getSkyPoint(LatLng location, double azimuth, double altitude, double size) {
+        return SunCalculator.getDestLatLng(location, azimuth, getSkyDistance(altitude, size));
+    }
+
+    private static double getSkyDistance(double altitude, double size) {
+        return size * (90 - altitude) / 90;
+    }
+
+    /**
+     * Gets point where the sun path crosses the horizon, interpolated between
+     * two samples on the different sides of the horizon
+     *
+     * @param location location of calculation
+     * @param path     sun path
+     * @param index    index of the first sample
+     * @param size     line length for drawing
+     * @return point on the map
+     */
+    private static LatLng getHorizonPoint(LatLng location, SunPath path, int index, double size) {
+        double altitude1 = path.getAltitude(index);
+        double altitude2 = path.getAltitude(index + 1);
+        double azimuth1 = path.getAzimuth(index);
+        double change = path.getAzimuth(index + 1) - azimuth1;
+        // the shortest way around north
+        if (change > Math.PI) {
+            change -= 2 * Math.PI;
+        } else if (change < -Math.PI) {
+            change += 2 * Math.PI;
+        }
+
+        double fraction = altitude1 / (altitude1 - altitude2);
+        return getSkyPoint(location, azimuth1 + change * fraction, 0, size);
+    }
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.model;
+
+import android.content.Context;
+import android.database.SQLException;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import ru.neverdark.phototools.azimuth.core.GeoHash;
+import ru.neverdark.phototools.azimuth.core.GoogleApiParser;
+import ru.neverdark.phototools.azimuth.db.TimeZonesDbAdapter;
+import ru.neverdark.phototools.azimuth.utils.Log;
+
+/**
+ * Cache of the time zones resolved by GoogleTimeZone. Locations are grouped
+ * by geohash cells of about 1.2 x 0.6 km, recently used cells are kept in
+ * memory and all cells are kept in the database, so repeated lookups work
+ * without network. Only time zone ids are kept, offsets are computed by the
+ * time zone database for every requested date, and time zones unknown to the
+ * device are not cached at all since their offset is valid only for the
+ * requested date.
+ * <p/>
+ * Methods may be called from any thread, but should not be called from the
+ * UI thread because of the database access
+ */
+public class TimeZoneCache {
+    private static final int GEOHASH_PRECISION = 6;
+    private static final int MEMORY_CAPACITY = 64;
+    private static TimeZoneCache mInstance;
+
+    private final Map<String, String> mMemory;
+    private final TimeZonesDbAdapter mDbAdapter;
+    private boolean mIsDbOpen;
+    private int mMemoryHits;
+    private int mDbHits;
+    private int mMisses;
+
+    private TimeZoneCache(Context context) {
+        mDbAdapter = new TimeZonesDbAdapter(context);
+        mMemory = new LinkedHashMap<String, String>(MEMORY_CAPACITY + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MEMORY_CAPACITY;
+            }
+        };
+    }
+
+    public static synchronized TimeZoneCache getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new TimeZoneCache(context.getApplicationContext());
+        }
+
+        return mInstance;
+    }
+
+    /**
+     * Gets cell key of the location, locations with the same key share the
+     * time zone
+     *
+     * @param location location
+     * @return geohash of the cell
+     */
+    static String getKey(LatLng location) {
+        return GeoHash.encode(location.latitude, location.longitude, GEOHASH_PRECISION);
+    }
+
+    /**
+     * Gets cached time zone of the location
+     *
+     * @param location location
+     * @return time zone or null if the cell of the location is not cached
+     */
+    public synchronized TimeZone get(LatLng location) {
+        String key = getKey(location);
+        String timeZoneId = mMemory.get(key);
+
+        if (timeZoneId != null) {
+            mMemoryHits++;
+        } else {
+            TimeZone timeZone = null;
+            if (openDb()) {
+                timeZone = mDbAdapter.fetchTimeZone(key);
+            }
+
+            if (timeZone != null) {
+                mDbHits++;
+                timeZoneId = timeZone.getID();
+                mMemory.put(key, timeZoneId);
+            } else {
+                mMisses++;
+                return null;
+            }
+        }
+
+        // a new object for every call, callers may change the time zone
+        return TimeZone.getTimeZone(timeZoneId);
+    }
+
+    /**
+     * Saves time zone of the location. Time zones unknown to the device are
+     * skipped
+     *
+     * @param location location
+     * @param timeZone time zone of the location
+     */
+    public synchronized void put(LatLng location, TimeZone timeZone) {
+        if (!GoogleApiParser.isKnown(timeZone.getID())) {
+            Log.variable("uncachedTimeZoneId", timeZone.getID());
+            return;
+        }
+
+        String key = getKey(location);
+        mMemory.put(key, timeZone.getID());
+
+        if (openDb()) {
+            mDbAdapter.saveTimeZone(key, timeZone);
+        }
+    }
+
+    /**
+     * Opens database on the first access. The connection is kept open for the
+     * life of the process
+     *
+     * @return true if database is available
+     */
+    private boolean openDb() {
+        if (!mIsDbOpen) {
+            try {
+                mDbAdapter.open();
+                mIsDbOpen = true;
+            } catch (SQLException e) {
+                Log.message("Cannot open time zones database");
+            }
+        }
+
+        return mIsDbOpen;
+    }
+
+    /**
+     * @return number of lookups answered from memory
+     */
+    public synchronized int getMemoryHits() {
+        return mMemoryHits;
+    }
+
+    /**
+     * @return number of lookups answered from the database
+     */
+    public synchronized int getDbHits() {
+        return mDbHits;
+    }
+
+    /**
+     * @return number of lookups not found in the cache
+     */
+    public synchronized int getMisses() {
+        return mMisses;
+    }
+}
@@ -99,6 +99,19 @@ public class Settings {
                 true);
     }
 
+    /**
+     * Checks value for "Sun path"
+     *
+     * @param context application context
+     * @return true for enabled "Sun path"
+     */
+    public static boolean isSunPathShow(Context context) {
+        SharedPreferences sharedPref = PreferenceManager
+                .getDefaultSharedPreferences(context);
+        return sharedPref.getBoolean(context.getString(R.string.pref_showSunPath),
+                true);
+    }
+
     public static boolean isMapSaved(Context context) {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
         return prefs.getBoolean(IS_MAP_SAVED, false);
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.utils;
+
+import ru.neverdark.phototools.azimuth.BuildConfig;
+
+/**
+ * Tracing for hot paths. Unlike Log it takes a static tag from the caller
+ * instead of walking the stack, has primitive overloads so values are not
+ * formatted while recording, and keeps records in a ring buffer in memory
+ * instead of writing them to LogCat. Records are formatted only by flush.
+ * <p/>
+ * In release builds every method returns at once. Callers building
+ * arguments in a hot path may check ENABLED themselves
+ */
+public final class Trace {
+    /**
+     * true if records are kept
+     */
+    public static final boolean ENABLED = BuildConfig.DEBUG;
+
+    private static final int CAPACITY = 1024;
+    private static final String LOG_TAG = "Trace";
+
+    private static final byte BEGIN = 0;
+    private static final byte END = 1;
+    private static final byte MESSAGE = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte OBJECT = 5;
+
+    private static final Object mLock = new Object();
+    private static final byte[] mKinds = new byte[CAPACITY];
+    private static final long[] mTimes = new long[CAPACITY];
+    private static final String[] mTags = new String[CAPACITY];
+    private static final String[] mNames = new String[CAPACITY];
+    private static final long[] mLongs = new long[CAPACITY];
+    private static final double[] mDoubles = new double[CAPACITY];
+    private static final Object[] mObjects = new Object[CAPACITY];
+
+    /**
+     * Index of the next record
+     */
+    private static int mNext;
+    /**
+     * Number of records in the buffer
+     */
+    private static int mCount;
+
+    private Trace() {
+    }
+
+    /**
+     * Records enter to the traced block
+     *
+     * @param tag static tag of the block, for example "SunCalculator.getPosition"
+     * @return enter time in nanoseconds for passing to end, zero if disabled
+     */
+    public static long begin(String tag) {
+        if (!ENABLED) {
+            return 0;
+        }
+
+        long time = System.nanoTime();
+        record(BEGIN, time, tag, null, 0, 0, null);
+        return time;
+    }
+
+    /**
+     * Records exit from the traced block with its duration
+     *
+     * @param tag       static tag of the block
+     * @param beginTime value returned by begin
+     */
+    public static void end(String tag, long beginTime) {
+        if (!ENABLED) {
+            return;
+        }
+
+        long time = System.nanoTime();
+        record(END, time, tag, null, time - beginTime, 0, null);
+    }
+
+    /**
+     * Records message
+     *
+     * @param tag     static tag
+     * @param message message, should be a constant
+     */
+    public static void message(String tag, String message) {
+        if (!ENABLED) {
+            return;
+        }
+
+        record(MESSAGE, System.nanoTime(), tag, message, 0, 0, null);
+    }
+
+    /**
+     * Records value of the variable
+     *
+     * @param tag   static tag
+     * @param name  variable name
+     * @param value value of the variable
+     */
+    public static void variable(String tag, String name, long value) {
+        if (!ENABLED) {
+            return;
+        }
+
+        record(LONG, System.nanoTime(), tag, name, value, 0, null);
+    }
+
+    /**
+     * Records value of the variable
+     *
+     * @param tag   static tag
+     * @param name  variable name
+     * @param value value of the variable
+     */
+    public static void variable(String tag, String name, double value) {
+        if (!ENABLED) {
+            return;
+        }
+
+        record(DOUBLE, System.nanoTime(), tag, name, 0, value, null);
+    }
+
+    /**
+     * Records value of the variable. The object is kept as is and converted
+     * to string by flush, so it should not be changed after the call
+     *
+     * @param tag   static tag
+     * @param name  variable name
+     * @param value value of the variable
+     */
+    public static void variable(String tag, String name, Object value) {
+        if (!ENABLED) {
+            return;
+        }
+
+        record(OBJECT, System.nanoTime(), tag, name, 0, 0, value);
+    }
+
+    private static void record(byte kind, long time, String tag, String name, long longValue,
+                               double doubleValue, Object objectValue) {
+        synchronized (mLock) {
+            int i = mNext;
+            mKinds[i] = kind;
+            mTimes[i] = time;
+            mTags[i] = tag;
+            mNames[i] = name;
+            mLongs[i] = longValue;
+            mDoubles[i] = doubleValue;
+            mObjects[i] = objectValue;
+
+            mNext = (i + 1) % CAPACITY;
+            if (mCount < CAPACITY) {
+                mCount++;
+            }
+        }
+    }
+
+    /**
+     * Writes buffered records to the LogCat from the oldest to the newest and
+     * clears the buffer
+     */
+    public static void flush() {
+        if (!ENABLED) {
+            return;
+        }
+
+        synchronized (mLock) {
+            int first = (mNext - mCount + CAPACITY) % CAPACITY;
+            for (int n = 0; n < mCount; n++) {
+                int i = (first + n) % CAPACITY;
+                android.util.Log.i(LOG_TAG, format(i));
+                mObjects[i] = null;
+            }
+            mCount = 0;
+        }
+    }
+
+    /**
+     * Formats the record
+     *
+     * @param i index of the record
+     * @return record as string
+     */
+    private static String format(int i) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(mTimes[i] / 1000).append("us ").append(mTags[i]).append(' ');
+
+        switch (mKinds[i]) {
+            case BEGIN:
+                builder.append("Enter");
+                break;
+            case END:
+                builder.append("Exit, time: ").append(mLongs[i] / 1000).append("us");
+                break;
+            case MESSAGE:
+                builder.append(mNames[i]);
+                break;
+            case LONG:
+                builder.append(mNames[i]).append(" = ").append(mLongs[i]);
+                break;
+            case DOUBLE:
+                builder.append(mNames[i]).append(" = ").append(mDoubles[i]);
+                break;
+            case OBJECT:
+                builder.append(mNames[i]).append(" = ").append(mObjects[i]);
+                break;
+        }
+
+        return builder.toString();
+    }
+}
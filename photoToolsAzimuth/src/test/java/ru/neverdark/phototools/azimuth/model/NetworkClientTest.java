@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright (C) 2014-2015 Artem Yankovskiy (artemyankovskiy@gmail.com).
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package ru.neverdark.phototools.azimuth.model;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import ru.neverdark.phototools.azimuth.core.SingleFlight;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks NetworkClient against a local HTTP server standing in for the
+ * Google APIs
+ */
+public class NetworkClientTest {
+    private static final int SLOW_RESPONSE_MS = 1000;
+    private static final int CALLERS_COUNT = 8;
+    private static final long WAIT_MS = 5000;
+
+    private static final NetworkClient.ResponseParser<String> READ_ALL = new NetworkClient.ResponseParser<String>() {
+        @Override
+        public String parse(Reader reader) throws IOException {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[1024];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, count);
+            }
+            return builder.toString();
+        }
+    };
+
+    private static final NetworkClient.ResponseParser<String> READ_FIRST = new NetworkClient.ResponseParser<String>() {
+        @Override
+        public String parse(Reader reader) throws IOException {
+            return String.valueOf((char) reader.read());
+        }
+    };
+
+    private final List<Integer> mClientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+    private HttpServer mServer;
+    private ExecutorService mServerExecutor;
+    private String mUrl;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/ok", new Responder(200, "{\"status\":\"OK\"}", false, 0));
+        mServer.createContext("/gzip", new Responder(200, "{\"status\":\"ZIPPED\"}", true, 0));
+        mServer.createContext("/error", new Responder(500, "{\"status\":\"ERROR\"}", false, 0));
+        mServer.createContext("/large", new Responder(200, repeat('x', 256 * 1024), false, 0));
+        mServer.createContext("/slow", new Responder(200, "{}", false, SLOW_RESPONSE_MS));
+        mServerExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mServerExecutor);
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+        mServerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void keptAliveConnectionIsReused() throws IOException {
+        NetworkClient.Endpoint endpoint = new NetworkClient.Endpoint("test", 1000, 1000);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("{\"status\":\"OK\"}", get(endpoint, "/ok", READ_ALL));
+        }
+
+        assertEquals(5, mClientPorts.size());
+        assertEquals("all requests on one connection", 1, countDistinctPorts());
+        assertEquals(5, endpoint.getRequestCount());
+        assertEquals(0, endpoint.getFailureCount());
+    }
+
+    @Test
+    public void connectionIsReusedAfterPartlyReadBody() throws IOException {
+        NetworkClient.Endpoint endpoint = new NetworkClient.Endpoint("test", 1000, 1000);
+        assertEquals("x", get(endpoint, "/large", READ_FIRST));
+        assertEquals("{\"status\":\"OK\"}", get(endpoint, "/ok", READ_ALL));
+
+        assertEquals(1, countDistinctPorts());
+    }
+
+    @Test
+    public void gzipResponseIsDecoded() throws IOException {
+        NetworkClient.Endpoint endpoint = new NetworkClient.Endpoint("test", 1000, 1000);
+        assertEquals("{\"status\":\"ZIPPED\"}", get(endpoint, "/gzip", READ_ALL));
+    }
+
+    @Test
+    public void errorStatusFailsAndKeepsConnection() throws IOException {
+        NetworkClient.Endpoint endpoint = new NetworkClient.Endpoint("test", 1000, 1000);
+        try {
+            get(endpoint, "/error", READ_ALL);
+            fail("HTTP 500 must fail");
+        } catch (IOException e) {
+            assertEquals("HTTP status 500", e.getMessage());
+        }
+        assertEquals(1, endpoint.getRequestCount());
+        assertEquals(1, endpoint.getFailureCount());
+
+        // body of the error is skipped, the connection goes back to the pool
+        assertEquals("{\"status\":\"OK\"}", get(endpoint, "/ok", READ_ALL));
+        assertEquals(1, countDistinctPorts());
+        assertEquals(1, endpoint.getFailureCount());
+    }
+
+    @Test
+    public void slowResponseTimesOut() {
+        NetworkClient.Endpoint endpoint = new NetworkClient.Endpoint("test", 1000, SLOW_RESPONSE_MS / 5);
+        long start = System.nanoTime();
+        try {
+            get(endpoint, "/slow", READ_ALL);
+            fail("Slow response must time out");
+        } catch (IOException e) {
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            assertTrue("timed out after " + elapsed + " ms", elapsed < SLOW_RESPONSE_MS);
+        }
+        assertEquals(1, endpoint.getFailureCount());
+    }
+
+    @Test
+    public void refusedConnectionFails() throws IOException {
+        NetworkClient.Endpoint endpoint = new NetworkClient.Endpoint("test", 1000, 1000);
+        String url = mUrl;
+        mServer.stop(0);
+        try {
+            NetworkClient.getInstance().get(endpoint, new HttpGet(url + "/ok"), READ_ALL);
+            fail("Stopped server must not answer");
+        } catch (IOException e) {
+            assertEquals(1, endpoint.getFailureCount());
+        }
+    }
+
+    @Test
+    public void concurrentRequestsShareOneDownload() throws Exception {
+        GatedResponder responder = new GatedResponder("{\"status\":\"SHARED\"}");
+        mServer.createContext("/shared", responder);
+        final NetworkClient.Endpoint endpoint = new NetworkClient.Endpoint("test", 1000, (int) WAIT_MS);
+        final SingleFlight<String, String> downloads = new SingleFlight<String, String>();
+
+        // the way GoogleTimeZone downloads, every caller brings its own request
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS_COUNT);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < CALLERS_COUNT; i++) {
+            results.add(callers.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    final HttpGet httpGet = new HttpGet(mUrl + "/shared");
+                    return downloads.join("shared", new SingleFlight.Call<String>() {
+                        @Override
+                        public String execute() throws Exception {
+                            return NetworkClient.getInstance().get(endpoint, httpGet, READ_ALL);
+                        }
+
+                        @Override
+                        public void abort() {
+                            httpGet.abort();
+                        }
+                    }).get();
+                }
+            }));
+        }
+
+        try {
+            // the server holds the answer until every caller has joined
+            long deadline = System.currentTimeMillis() + WAIT_MS;
+            while (downloads.getExecutionCount() + downloads.getSharedCount() < CALLERS_COUNT) {
+                assertTrue("callers have not joined", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            responder.open();
+
+            for (Future<String> result : results) {
+                assertEquals("{\"status\":\"SHARED\"}", result.get(WAIT_MS, TimeUnit.MILLISECONDS));
+            }
+        } finally {
+            responder.open();
+            callers.shutdownNow();
+        }
+
+        assertEquals("one upstream request", 1, responder.getHitCount());
+        assertEquals(1, downloads.getExecutionCount());
+        assertEquals(CALLERS_COUNT - 1, downloads.getSharedCount());
+        assertEquals(1, endpoint.getRequestCount());
+    }
+
+    private <T> T get(NetworkClient.Endpoint endpoint, String path, NetworkClient.ResponseParser<T> parser)
+            throws IOException {
+        return NetworkClient.getInstance().get(endpoint, new HttpGet(mUrl + path), parser);
+    }
+
+    private int countDistinctPorts() {
+        synchronized (mClientPorts) {
+            return new java.util.HashSet<Integer>(mClientPorts).size();
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        java.util.Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * Answers with the fixed response and records the client port
+     */
+    private class Responder implements HttpHandler {
+        private final int mStatus;
+        private final byte[] mBody;
+        private final boolean mIsGzip;
+        private final int mDelay;
+
+        private Responder(int status, String body, boolean isGzip, int delay) throws IOException {
+            mStatus = status;
+            mIsGzip = isGzip;
+            mDelay = delay;
+            if (isGzip) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+                gzip.write(body.getBytes("UTF-8"));
+                gzip.close();
+                mBody = bytes.toByteArray();
+            } else {
+                mBody = body.getBytes("UTF-8");
+            }
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            mClientPorts.add(exchange.getRemoteAddress().getPort());
+            try {
+                if (mDelay > 0) {
+                    Thread.sleep(mDelay);
+                }
+            } catch (InterruptedException e) {
+                exchange.close();
+                return;
+            }
+
+            if (mIsGzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(mStatus, mBody.length);
+            OutputStream body = exchange.getResponseBody();
+            body.write(mBody);
+            body.close();
+        }
+    }
+
+    /**
+     * Counts the requests and holds the answers until the gate is opened
+     */
+    private static class GatedResponder implements HttpHandler {
+        private final byte[] mBody;
+        private final AtomicInteger mHitCount = new AtomicInteger();
+        private final CountDownLatch mGate = new CountDownLatch(1);
+
+        private GatedResponder(String body) throws IOException {
+            mBody = body.getBytes("UTF-8");
+        }
+
+        private void open() {
+            mGate.countDown();
+        }
+
+        private int getHitCount() {
+            return mHitCount.get();
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            mHitCount.incrementAndGet();
+            try {
+                mGate.await();
+            } catch (InterruptedException e) {
+                exchange.close();
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(200, mBody.length);
+            OutputStream body = exchange.getResponseBody();
+            body.write(mBody);
+            body.close();
+        }
+    }
+}